@@ -14,61 +14,181 @@ package org.artofsolving.jodconverter;
 
 import static org.artofsolving.jodconverter.office.OfficeUtils.SERVICE_DESKTOP;
 import static org.artofsolving.jodconverter.office.OfficeUtils.cast;
+import static org.artofsolving.jodconverter.office.OfficeUtils.property;
 import static org.artofsolving.jodconverter.office.OfficeUtils.toUnoProperties;
 import static org.artofsolving.jodconverter.office.OfficeUtils.toUrl;
 
 import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.OutputStream;
 import java.util.Map;
 
+import org.apache.commons.io.FilenameUtils;
+import org.artofsolving.jodconverter.ConversionTrace.Phase;
+import org.artofsolving.jodconverter.office.DocumentTask;
 import org.artofsolving.jodconverter.office.OfficeContext;
 import org.artofsolving.jodconverter.office.OfficeException;
-import org.artofsolving.jodconverter.office.OfficeTask;
 
+import com.sun.star.beans.PropertyValue;
 import com.sun.star.frame.XComponentLoader;
 import com.sun.star.frame.XStorable;
 import com.sun.star.io.IOException;
 import com.sun.star.lang.IllegalArgumentException;
 import com.sun.star.lang.XComponent;
+import com.sun.star.lib.uno.adapter.OutputStreamToXOutputStreamAdapter;
 import com.sun.star.task.ErrorCodeIOException;
-import com.sun.star.util.CloseVetoException;
-import com.sun.star.util.XCloseable;
 
-public abstract class AbstractConversionTask implements OfficeTask {
+public abstract class AbstractConversionTask implements DocumentTask {
 
     private final File inputFile;
     private final File outputFile;
+    private final OutputStream outputStream;
+
+    private String pageRange;
+    private ConversionTrace trace;
+    private volatile long executionTime = -1L;
 
     public AbstractConversionTask(File inputFile, File outputFile) {
         this.inputFile = inputFile;
         this.outputFile = outputFile;
+        this.outputStream = null;
+    }
+
+    /**
+     * Creates a task that writes its output to a stream rather than a file.
+     * <p>
+     * Office hands over the output in chunks as the export filter produces it, so the
+     * output never needs to be held in memory or on disk; the flip side is that the
+     * office process stays busy for as long as it takes to write to the stream. The
+     * stream is flushed but not closed. <code>null</code> is passed as the outputFile
+     * to {@link #getStoreProperties(File, XComponent)}.
+     */
+    public AbstractConversionTask(File inputFile, OutputStream outputStream) {
+        this.inputFile = inputFile;
+        this.outputFile = null;
+        this.outputStream = outputStream;
+    }
+
+    public File getInputFile() {
+        return inputFile;
+    }
+
+    /**
+     * A task writing to a file simply overwrites it when run again, but bytes already
+     * written to an output stream cannot be taken back.
+     */
+    public boolean isRetryable() {
+        return outputStream == null;
+    }
+
+    public String getConversionType() {
+        if (outputFile == null) {
+            return null;
+        }
+        return getExtension(inputFile) + ">" + getExtension(outputFile);
+    }
+
+    protected static String getExtension(File file) {
+        return FilenameUtils.getExtension(file.getName()).toLowerCase();
+    }
+
+    public ConversionTrace getTrace() {
+        return trace;
+    }
+
+    /**
+     * @param trace to record the duration of each phase into, or <code>null</code>
+     */
+    public void setTrace(ConversionTrace trace) {
+        this.trace = trace;
+    }
+
+    /**
+     * @return the current time if tracing, to be passed to {@link #traceEnd(Phase, long)}
+     */
+    protected final long traceStart() {
+        return trace != null ? System.nanoTime() : 0L;
+    }
+
+    protected final void traceEnd(Phase phase, long startTime) {
+        if (trace != null) {
+            trace.add(phase, System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * @return how long the last successful execution took in milliseconds, not counting
+     *   any time spent waiting for an office process; -1 if it has not completed
+     */
+    public long getExecutionTime() {
+        return executionTime;
+    }
+
+    public String getPageRange() {
+        return pageRange;
+    }
+
+    /**
+     * Restricts the output to the given pages, e.g. "1-100" or "3,5,7-9", which lets
+     * a large document be exported in several parts. The range is passed to the
+     * export filter as the <em>PageRange</em> item of its <em>FilterData</em>, which
+     * is honoured by the PDF export filters of all document families; for spreadsheets
+     * pages are the printed pages of the selected sheets.
+     *
+     * @param pageRange the pages to export, or <code>null</code> for all pages
+     */
+    public void setPageRange(String pageRange) {
+        this.pageRange = pageRange;
     }
 
     protected abstract Map<String,?> getLoadProperties(File inputFile);
 
     protected abstract Map<String,?> getStoreProperties(File outputFile, XComponent document);
 
+    /**
+     * Returns the load properties as UNO {@link PropertyValue}s.
+     * <p>
+     * Converts {@link #getLoadProperties(File)} by default; override to supply
+     * properties that have already been converted.
+     */
+    protected PropertyValue[] getUnoLoadProperties(File inputFile) {
+        return toUnoProperties(getLoadProperties(inputFile));
+    }
+
+    /**
+     * Returns the store properties as UNO {@link PropertyValue}s, or <code>null</code>
+     * if the conversion is not supported.
+     * <p>
+     * Converts {@link #getStoreProperties(File, XComponent)} by default; override to
+     * supply properties that have already been converted.
+     */
+    protected PropertyValue[] getUnoStoreProperties(File outputFile, XComponent document) {
+        Map<String,?> storeProperties = getStoreProperties(outputFile, document);
+        return storeProperties != null ? toUnoProperties(storeProperties) : null;
+    }
+
     public void execute(OfficeContext context) throws OfficeException {
+        if (trace != null) {
+            trace.taskStarted();
+        }
+        long executionStartTime = System.currentTimeMillis();
         XComponent document = null;
         try {
             document = loadDocument(context, inputFile);
+            long startTime = traceStart();
             modifyDocument(document);
+            traceEnd(Phase.MODIFY, startTime);
             storeDocument(document, outputFile);
+            executionTime = System.currentTimeMillis() - executionStartTime;
         } catch (OfficeException officeException) {
             throw officeException;
         } catch (Exception exception) {
             throw new OfficeException("conversion failed", exception);
         } finally {
             if (document != null) {
-                XCloseable closeable = cast(XCloseable.class, document);
-                if (closeable != null) {
-                    try {
-                        closeable.close(true);
-                    } catch (CloseVetoException closeVetoException) {
-                        // whoever raised the veto should close the document
-                    }
-                } else {
-                    document.dispose();
-                }
+                long startTime = traceStart();
+                OfficeDocumentUtils.closeDocument(document);
+                traceEnd(Phase.CLOSE, startTime);
             }
         }
     }
@@ -77,11 +197,15 @@ public abstract class AbstractConversionTask implements OfficeTask {
         if (!inputFile.exists()) {
             throw new OfficeException("input document not found");
         }
+        long startTime = traceStart();
         XComponentLoader loader = cast(XComponentLoader.class, context.getService(SERVICE_DESKTOP));
-        Map<String,?> loadProperties = getLoadProperties(inputFile);
+        traceEnd(Phase.GET_SERVICE, startTime);
+        PropertyValue[] loadProperties = getUnoLoadProperties(inputFile);
         XComponent document = null;
         try {
-            document = loader.loadComponentFromURL(toUrl(inputFile), "_blank", 0, toUnoProperties(loadProperties));
+            startTime = traceStart();
+            document = loader.loadComponentFromURL(toUrl(inputFile), "_blank", 0, loadProperties);
+            traceEnd(Phase.LOAD, startTime);
         } catch (IllegalArgumentException illegalArgumentException) {
             throw new OfficeException("could not load document: " + inputFile.getName(), illegalArgumentException);
         } catch (ErrorCodeIOException errorCodeIOException) {
@@ -109,17 +233,82 @@ public abstract class AbstractConversionTask implements OfficeTask {
     }
 
     private void storeDocument(XComponent document, File outputFile) throws OfficeException {
-        Map<String,?> storeProperties = getStoreProperties(outputFile, document);
+        PropertyValue[] storeProperties = getUnoStoreProperties(outputFile, document);
         if (storeProperties == null) {
             throw new OfficeException("unsupported conversion");
         }
+        if (pageRange != null) {
+            storeProperties = withFilterData(storeProperties, property("PageRange", pageRange));
+        }
+        String outputUrl;
+        String outputName;
+        if (outputStream != null) {
+            outputUrl = "private:stream";
+            outputName = "output stream";
+            storeProperties = withProperty(storeProperties, property("OutputStream", new OutputStreamToXOutputStreamAdapter(new NonClosingOutputStream(outputStream))));
+        } else {
+            outputUrl = toUrl(outputFile);
+            outputName = outputFile.getName();
+        }
         try {
-            cast(XStorable.class, document).storeToURL(toUrl(outputFile), toUnoProperties(storeProperties));
+            long startTime = traceStart();
+            cast(XStorable.class, document).storeToURL(outputUrl, storeProperties);
+            if (outputStream != null) {
+                outputStream.flush();
+            }
+            traceEnd(Phase.STORE, startTime);
         } catch (ErrorCodeIOException errorCodeIOException) {
-            throw new OfficeException("could not store document: " + outputFile.getName() + "; errorCode: " + errorCodeIOException.ErrCode, errorCodeIOException);
+            throw new OfficeException("could not store document: " + outputName + "; errorCode: " + errorCodeIOException.ErrCode, errorCodeIOException);
         } catch (IOException ioException) {
-            throw new OfficeException("could not store document: " + outputFile.getName(), ioException);
+            throw new OfficeException("could not store document: " + outputName, ioException);
+        } catch (java.io.IOException ioException) {
+            throw new OfficeException("could not store document: " + outputName, ioException);
         }
     }
 
+    private static PropertyValue[] withProperty(PropertyValue[] properties, PropertyValue property) {
+        PropertyValue[] result = new PropertyValue[properties.length + 1];
+        System.arraycopy(properties, 0, result, 0, properties.length);
+        result[properties.length] = property;
+        return result;
+    }
+
+    /**
+     * Returns a copy of the store properties with an item added to the <em>FilterData</em>;
+     * the properties passed in may be shared so they are never modified.
+     */
+    private static PropertyValue[] withFilterData(PropertyValue[] storeProperties, PropertyValue filterDataItem) {
+        for (int i = 0; i < storeProperties.length; i++) {
+            if ("FilterData".equals(storeProperties[i].Name) && storeProperties[i].Value instanceof PropertyValue[]) {
+                PropertyValue[] filterData = (PropertyValue[]) storeProperties[i].Value;
+                PropertyValue[] copy = storeProperties.clone();
+                copy[i] = property("FilterData", withProperty(filterData, filterDataItem));
+                return copy;
+            }
+        }
+        return withProperty(storeProperties, property("FilterData", new PropertyValue[] { filterDataItem }));
+    }
+
+    /**
+     * Office closes the output stream once it is done storing; keep the caller's
+     * stream open so that it can still be used, e.g. by a servlet container.
+     */
+    private static class NonClosingOutputStream extends FilterOutputStream {
+
+        public NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws java.io.IOException {
+            out.write(bytes, offset, length);
+        }
+
+        @Override
+        public void close() throws java.io.IOException {
+            out.flush();
+        }
+
+    }
+
 }
@@ -0,0 +1,180 @@
+//
+// JODConverter - Java OpenDocument Converter
+// Copyright 2004-2012 Mirko Nasato and contributors
+//
+// JODConverter is Open Source software, you can redistribute it and/or
+// modify it under either (at your option) of the following licenses
+//
+// 1. The GNU Lesser General Public License v3 (or later)
+//    -> http://www.gnu.org/licenses/lgpl-3.0.txt
+// 2. The Apache License, Version 2.0
+//    -> http://www.apache.org/licenses/LICENSE-2.0.txt
+//
+package org.artofsolving.jodconverter;
+
+import static org.artofsolving.jodconverter.office.OfficeUtils.SERVICE_DESKTOP;
+import static org.artofsolving.jodconverter.office.OfficeUtils.cast;
+import static org.artofsolving.jodconverter.office.OfficeUtils.property;
+import static org.artofsolving.jodconverter.office.OfficeUtils.toUrl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.List;
+
+import org.artofsolving.jodconverter.document.DocumentFamily;
+import org.artofsolving.jodconverter.document.DocumentFormat;
+import org.artofsolving.jodconverter.office.DocumentTask;
+import org.artofsolving.jodconverter.office.OfficeContext;
+import org.artofsolving.jodconverter.office.OfficeException;
+
+import com.sun.star.beans.PropertyValue;
+import com.sun.star.frame.XComponentLoader;
+import com.sun.star.frame.XStorable;
+import com.sun.star.lang.XComponent;
+import com.sun.star.lib.uno.adapter.ByteArrayToXInputStreamAdapter;
+import com.sun.star.lib.uno.adapter.OutputStreamToXOutputStreamAdapter;
+
+/**
+ * Converts a document through one or more intermediate formats, e.g. csv to ods to
+ * pdf, all on the office process the task was given.
+ * <p>
+ * Intermediate documents are passed from one hop to the next in memory, stored to and
+ * loaded from <em>private:stream</em>, unless the input is larger than
+ * {@link #MAX_IN_MEMORY_INPUT_SIZE}, in which case they go through temporary files
+ * next to the output.
+ */
+class ChainedConversionTask implements DocumentTask {
+
+    static final long MAX_IN_MEMORY_INPUT_SIZE = 16L * 1024 * 1024;
+
+    private final File inputFile;
+    private final File outputFile;
+    private final List<DocumentFormat> route;
+    private final List<PropertyPlan> propertyPlans;
+    private final long[] hopDurations;
+
+    /**
+     * @param route the formats to go through, starting with the input format
+     * @param propertyPlans the plan for each hop, one fewer than there are formats
+     */
+    public ChainedConversionTask(File inputFile, File outputFile, List<DocumentFormat> route, List<PropertyPlan> propertyPlans) {
+        if (route.size() < 2 || propertyPlans.size() != route.size() - 1) {
+            throw new IllegalArgumentException("need a plan for each of the hops");
+        }
+        this.inputFile = inputFile;
+        this.outputFile = outputFile;
+        this.route = route;
+        this.propertyPlans = propertyPlans;
+        this.hopDurations = new long[route.size() - 1];
+    }
+
+    public File getInputFile() {
+        return inputFile;
+    }
+
+    public boolean isRetryable() {
+        return true;
+    }
+
+    public String getConversionType() {
+        StringBuilder conversionType = new StringBuilder();
+        for (DocumentFormat format : route) {
+            if (conversionType.length() > 0) {
+                conversionType.append('>');
+            }
+            conversionType.append(format.getExtension());
+        }
+        return conversionType.toString();
+    }
+
+    /**
+     * @return how long each hop took in milliseconds, once the task has completed
+     */
+    public long[] getHopDurations() {
+        return hopDurations.clone();
+    }
+
+    public void execute(OfficeContext context) throws OfficeException {
+        if (!inputFile.exists()) {
+            throw new OfficeException("input document not found");
+        }
+        XComponentLoader loader = cast(XComponentLoader.class, context.getService(SERVICE_DESKTOP));
+        boolean inMemory = inputFile.length() <= MAX_IN_MEMORY_INPUT_SIZE;
+        byte[] intermediateBytes = null;
+        File intermediateFile = null;
+        try {
+            for (int hop = 0; hop < hopDurations.length; hop++) {
+                long startTime = System.currentTimeMillis();
+                DocumentFormat fromFormat = route.get(hop);
+                DocumentFormat toFormat = route.get(hop + 1);
+                PropertyPlan plan = propertyPlans.get(hop);
+                boolean lastHop = hop == hopDurations.length - 1;
+
+                XComponent document;
+                if (hop == 0) {
+                    document = load(loader, toUrl(inputFile), plan.getLoadProperties(), inputFile.getName());
+                } else if (inMemory) {
+                    document = load(loader, "private:stream", withProperty(plan.getLoadProperties(),
+                            property("InputStream", new ByteArrayToXInputStreamAdapter(intermediateBytes))), "intermediate " + fromFormat.getExtension());
+                } else {
+                    document = load(loader, toUrl(intermediateFile), plan.getLoadProperties(), intermediateFile.getName());
+                }
+                File previousIntermediateFile = intermediateFile;
+                try {
+                    DocumentFamily family = OfficeDocumentUtils.getDocumentFamily(document, fromFormat.getInputFamily());
+                    PropertyValue[] storeProperties = plan.getStoreProperties(family);
+                    if (storeProperties == null) {
+                        throw new OfficeException("unsupported conversion: " + fromFormat.getExtension() + ">" + toFormat.getExtension());
+                    }
+                    XStorable storable = cast(XStorable.class, document);
+                    if (lastHop) {
+                        storable.storeToURL(toUrl(outputFile), storeProperties);
+                    } else if (inMemory) {
+                        ByteArrayOutputStream intermediateStream = new ByteArrayOutputStream();
+                        storable.storeToURL("private:stream", withProperty(storeProperties,
+                                property("OutputStream", new OutputStreamToXOutputStreamAdapter(intermediateStream))));
+                        intermediateBytes = intermediateStream.toByteArray();
+                    } else {
+                        intermediateFile = File.createTempFile(".chain-", "." + toFormat.getExtension(), outputFile.getAbsoluteFile().getParentFile());
+                        storable.storeToURL(toUrl(intermediateFile), storeProperties);
+                    }
+                } catch (OfficeException officeException) {
+                    throw officeException;
+                } catch (Exception exception) {
+                    throw new OfficeException("could not convert to " + toFormat.getExtension() + " on the way to " + route.get(route.size() - 1).getExtension(), exception);
+                } finally {
+                    OfficeDocumentUtils.closeDocument(document);
+                    if (previousIntermediateFile != null) {
+                        previousIntermediateFile.delete();
+                    }
+                }
+                hopDurations[hop] = System.currentTimeMillis() - startTime;
+            }
+        } finally {
+            if (intermediateFile != null) {
+                intermediateFile.delete();
+            }
+        }
+    }
+
+    private static XComponent load(XComponentLoader loader, String url, PropertyValue[] loadProperties, String name) throws OfficeException {
+        XComponent document;
+        try {
+            document = loader.loadComponentFromURL(url, "_blank", 0, loadProperties);
+        } catch (Exception exception) {
+            throw new OfficeException("could not load document: " + name, exception);
+        }
+        if (document == null) {
+            throw new OfficeException("could not load document: " + name);
+        }
+        return document;
+    }
+
+    private static PropertyValue[] withProperty(PropertyValue[] properties, PropertyValue property) {
+        PropertyValue[] result = new PropertyValue[properties.length + 1];
+        System.arraycopy(properties, 0, result, 0, properties.length);
+        result[properties.length] = property;
+        return result;
+    }
+
+}
@@ -0,0 +1,97 @@
+//
+// JODConverter - Java OpenDocument Converter
+// Copyright 2004-2012 Mirko Nasato and contributors
+//
+// JODConverter is Open Source software, you can redistribute it and/or
+// modify it under either (at your option) of the following licenses
+//
+// 1. The GNU Lesser General Public License v3 (or later)
+//    -> http://www.gnu.org/licenses/lgpl-3.0.txt
+// 2. The Apache License, Version 2.0
+//    -> http://www.apache.org/licenses/LICENSE-2.0.txt
+//
+package org.artofsolving.jodconverter;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Where the time went in a single conversion, phase by phase.
+ * <p>
+ * Pass a new instance to
+ * {@link OfficeDocumentConverter#convert(java.io.File, java.io.File, org.artofsolving.jodconverter.document.DocumentFormat, long, ConversionTrace)}
+ * to have it filled in, or enable tracing on the converter to collect
+ * {@link TraceStatistics} for all conversions. Tasks that are not traced only pay for a
+ * <code>null</code> check per phase.
+ */
+public class ConversionTrace {
+
+    public enum Phase {
+        /** waiting for an office process */
+        QUEUE,
+        /** obtaining the desktop service over the bridge */
+        GET_SERVICE,
+        /** loadComponentFromURL */
+        LOAD,
+        /** e.g. refreshing indexes */
+        MODIFY,
+        /** finding out the document family, to choose the store properties */
+        DETECT_FAMILY,
+        /** storeToURL */
+        STORE,
+        /** closing the document */
+        CLOSE,
+        /** from submitting the task to its completion */
+        TOTAL
+    }
+
+    private final long[] durations = new long[Phase.values().length];
+    private String conversionType;
+    private long startTime;
+
+    void start(String conversionType) {
+        this.conversionType = conversionType;
+        startTime = System.nanoTime();
+    }
+
+    /**
+     * Called at the start of each attempt; a retried task starts over, so only the
+     * attempt that completed is accounted for, besides the time spent queueing.
+     */
+    void taskStarted() {
+        Arrays.fill(durations, 0L);
+        if (startTime != 0L) {
+            durations[Phase.QUEUE.ordinal()] = System.nanoTime() - startTime;
+        }
+    }
+
+    void finish() {
+        durations[Phase.TOTAL.ordinal()] = System.nanoTime() - startTime;
+    }
+
+    void add(Phase phase, long duration) {
+        durations[phase.ordinal()] += duration;
+    }
+
+    /**
+     * @return what was converted, e.g. "doc&gt;pdf"
+     */
+    public String getConversionType() {
+        return conversionType;
+    }
+
+    public long getDuration(Phase phase, TimeUnit unit) {
+        return unit.convert(durations[phase.ordinal()], TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder string = new StringBuilder(String.valueOf(conversionType));
+        for (Phase phase : Phase.values()) {
+            string.append(phase.ordinal() == 0 ? ": " : ", ").append(phase.name().toLowerCase()).append(' ')
+                .append(getDuration(phase, TimeUnit.MILLISECONDS)).append("ms");
+        }
+        return string.toString();
+    }
+
+}
@@ -0,0 +1,326 @@
+//
+// JODConverter - Java OpenDocument Converter
+// Copyright 2004-2012 Mirko Nasato and contributors
+//
+// JODConverter is Open Source software, you can redistribute it and/or
+// modify it under either (at your option) of the following licenses
+//
+// 1. The GNU Lesser General Public License v3 (or later)
+//    -> http://www.gnu.org/licenses/lgpl-3.0.txt
+// 2. The Apache License, Version 2.0
+//    -> http://www.apache.org/licenses/LICENSE-2.0.txt
+//
+package org.artofsolving.jodconverter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.IOUtils;
+import org.artofsolving.jodconverter.document.DocumentFormat;
+import org.artofsolving.jodconverter.document.DocumentFormatRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Checks input documents in Java before they are handed to office.
+ * <p>
+ * A document that is missing, empty, too large, structurally broken (a ZIP
+ * without a readable central directory, an OLE compound file with an invalid
+ * header) or whose binary content does not match its extension is rejected with
+ * an {@link InvalidInputException}, instead of tying up an office process that
+ * would most likely fail, hang or crash on it.
+ * <p>
+ * The check looks at magic bytes and, for ZIP and OLE containers, at the names
+ * of the entries inside, so it also tells e.g. an ODT from a DOCX or a DOC from
+ * an XLS. When the content identifies a different format than the extension the
+ * detected format is used instead. A document is only rejected for its content
+ * when it contradicts its extension, e.g. a .doc without the OLE magic bytes;
+ * containers whose content cannot be identified, such as very large OLE files or
+ * ZIP packages of an unknown type, are passed through as their declared format,
+ * as is anything that is plain text or matches no known signature.
+ */
+public class InputPreflight {
+
+    private enum Signature { ZIP, OLE, RTF, PDF, WPD }
+
+    private static final Map<String,Signature> EXPECTED_SIGNATURES = new HashMap<String,Signature>();
+    static {
+        for (String extension : new String[] { "odt", "ods", "odp", "odg", "sxw", "sxc", "sxi", "docx", "xlsx", "pptx" }) {
+            EXPECTED_SIGNATURES.put(extension, Signature.ZIP);
+        }
+        for (String extension : new String[] { "doc", "xls", "ppt" }) {
+            EXPECTED_SIGNATURES.put(extension, Signature.OLE);
+        }
+        EXPECTED_SIGNATURES.put("rtf", Signature.RTF);
+        EXPECTED_SIGNATURES.put("pdf", Signature.PDF);
+        EXPECTED_SIGNATURES.put("wpd", Signature.WPD);
+    }
+
+    private static final byte[] MAGIC_ZIP = { 'P', 'K', 3, 4 };
+    private static final byte[] MAGIC_OLE = { (byte) 0xD0, (byte) 0xCF, 0x11, (byte) 0xE0, (byte) 0xA1, (byte) 0xB1, 0x1A, (byte) 0xE1 };
+    private static final byte[] MAGIC_RTF = { '{', '\\', 'r', 't', 'f' };
+    private static final byte[] MAGIC_PDF = { '%', 'P', 'D', 'F', '-' };
+    private static final byte[] MAGIC_WPD = { (byte) 0xFF, 'W', 'P', 'C' };
+
+    private static final int HEAD_SIZE = 4096;
+    private static final int MAX_OLE_DIRECTORY_SECTORS = 128;
+    private static final int END_OF_CHAIN = -2;
+
+    private final DocumentFormatRegistry formatRegistry;
+    private long maxInputSize = 0L;
+
+    private final Logger logger = LoggerFactory.getLogger(InputPreflight.class);
+
+    public InputPreflight(DocumentFormatRegistry formatRegistry) {
+        this.formatRegistry = formatRegistry;
+    }
+
+    /**
+     * @param maxInputSize the largest input accepted, in bytes; 0 (the default) for no limit
+     */
+    public void setMaxInputSize(long maxInputSize) {
+        this.maxInputSize = maxInputSize;
+    }
+
+    /**
+     * @param inputFile
+     * @param declaredFormat the format expected from the file extension, or <code>null</code> if unknown
+     * @return the format to convert the input as, which is the declared format unless
+     *   the content identifies a different one
+     * @throws InvalidInputException if the input should not be handed to office
+     */
+    public DocumentFormat check(File inputFile, DocumentFormat declaredFormat) throws InvalidInputException {
+        if (!inputFile.isFile()) {
+            throw new InvalidInputException("input document not found: " + inputFile.getName());
+        }
+        long size = inputFile.length();
+        if (size == 0) {
+            throw new InvalidInputException("input document is empty: " + inputFile.getName());
+        }
+        if (maxInputSize > 0 && size > maxInputSize) {
+            throw new InvalidInputException(String.format("input document is too large: %s [%db]; maximum is %db", inputFile.getName(), size, maxInputSize));
+        }
+        try {
+            byte[] head = readHead(inputFile);
+            String detectedExtension = detectExtension(inputFile, head);
+            DocumentFormat detectedFormat = detectedExtension != null ? formatRegistry.getFormatByExtension(detectedExtension) : null;
+            if (detectedFormat != null) {
+                // a format without an input family, such as PDF, is still loaded by office with its family determined then
+                if (detectedFormat != declaredFormat) {
+                    logger.info("input {} detected as {}; converting it as such", inputFile.getName(), detectedFormat.getExtension());
+                }
+                return detectedFormat;
+            }
+            Signature expectedSignature = declaredFormat != null ? EXPECTED_SIGNATURES.get(declaredFormat.getExtension()) : null;
+            if (expectedSignature != null) {
+                Signature actualSignature = getSignature(head);
+                if (actualSignature != expectedSignature && (actualSignature != null || isBinary(head))) {
+                    throw new InvalidInputException("input document content does not match its format: " + inputFile.getName());
+                }
+            }
+            // a matching container whose content could not be identified is not a contradiction
+            return declaredFormat;
+        } catch (IOException ioException) {
+            throw new InvalidInputException("input document could not be read: " + inputFile.getName(), ioException);
+        }
+    }
+
+    private byte[] readHead(File inputFile) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(inputFile, "r");
+        try {
+            byte[] head = new byte[(int) Math.min(HEAD_SIZE, file.length())];
+            file.readFully(head);
+            return head;
+        } finally {
+            file.close();
+        }
+    }
+
+    private Signature getSignature(byte[] head) {
+        if (startsWith(head, MAGIC_ZIP)) {
+            return Signature.ZIP;
+        } else if (startsWith(head, MAGIC_OLE)) {
+            return Signature.OLE;
+        } else if (startsWith(head, MAGIC_RTF)) {
+            return Signature.RTF;
+        } else if (startsWith(head, MAGIC_PDF)) {
+            return Signature.PDF;
+        } else if (startsWith(head, MAGIC_WPD)) {
+            return Signature.WPD;
+        }
+        return null;
+    }
+
+    private String detectExtension(File inputFile, byte[] head) throws IOException {
+        if (startsWith(head, MAGIC_ZIP)) {
+            return detectZipContent(inputFile);
+        } else if (startsWith(head, MAGIC_OLE)) {
+            return detectOleContent(inputFile);
+        } else if (startsWith(head, MAGIC_RTF)) {
+            return "rtf";
+        } else if (startsWith(head, MAGIC_PDF)) {
+            return "pdf";
+        } else if (startsWith(head, MAGIC_WPD)) {
+            return "wpd";
+        } else if (isHtml(head)) {
+            return "html";
+        }
+        return null;
+    }
+
+    private String detectZipContent(File inputFile) throws InvalidInputException {
+        ZipFile zipFile;
+        try {
+            // fails unless the central directory at the end of the file can be read
+            zipFile = new ZipFile(inputFile);
+        } catch (IOException ioException) {
+            throw new InvalidInputException("input document is corrupt or truncated: " + inputFile.getName(), ioException);
+        }
+        try {
+            ZipEntry mimetype = zipFile.getEntry("mimetype");
+            if (mimetype != null) {
+                InputStream input = zipFile.getInputStream(mimetype);
+                try {
+                    DocumentFormat format = formatRegistry.getFormatByMediaType(IOUtils.toString(input, "US-ASCII").trim());
+                    return format != null ? format.getExtension() : null;
+                } finally {
+                    IOUtils.closeQuietly(input);
+                }
+            }
+            if (zipFile.getEntry("[Content_Types].xml") != null) {
+                for (Enumeration<? extends ZipEntry> entries = zipFile.entries(); entries.hasMoreElements();) {
+                    String name = entries.nextElement().getName();
+                    if (name.startsWith("word/")) {
+                        return "docx";
+                    } else if (name.startsWith("xl/")) {
+                        return "xlsx";
+                    } else if (name.startsWith("ppt/")) {
+                        return "pptx";
+                    }
+                }
+            }
+            return null;
+        } catch (IOException ioException) {
+            throw new InvalidInputException("input document is corrupt or truncated: " + inputFile.getName(), ioException);
+        } finally {
+            try {
+                zipFile.close();
+            } catch (IOException ioException) {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * Walks the directory of an OLE compound file looking for the stream that
+     * identifies the application, following the sector chain through the FAT
+     * sectors referenced from the header.
+     */
+    private String detectOleContent(File inputFile) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(inputFile, "r");
+        try {
+            byte[] header = new byte[512];
+            if (file.length() < header.length) {
+                throw new InvalidInputException("input document is corrupt or truncated: " + inputFile.getName());
+            }
+            file.readFully(header);
+            int sectorShift = readUnsignedShort(header, 0x1E);
+            if (sectorShift != 9 && sectorShift != 12) {
+                throw new InvalidInputException("input document is corrupt: " + inputFile.getName());
+            }
+            int sectorSize = 1 << sectorShift;
+            byte[] sector = new byte[sectorSize];
+            int directorySector = readInt(header, 0x30);
+            for (int i = 0; i < MAX_OLE_DIRECTORY_SECTORS && directorySector != END_OF_CHAIN; i++) {
+                long offset = (directorySector + 1L) << sectorShift;
+                if (directorySector < 0 || offset + sectorSize > file.length()) {
+                    throw new InvalidInputException("input document is corrupt or truncated: " + inputFile.getName());
+                }
+                file.seek(offset);
+                file.readFully(sector);
+                for (int entry = 0; entry < sectorSize; entry += 128) {
+                    int nameLength = Math.min(readUnsignedShort(sector, entry + 0x40), 64);
+                    String name = nameLength > 2 ? new String(sector, entry, nameLength - 2, "UTF-16LE") : "";
+                    if ("WordDocument".equals(name)) {
+                        return "doc";
+                    } else if ("Workbook".equals(name) || "Book".equals(name)) {
+                        return "xls";
+                    } else if ("PowerPoint Document".equals(name)) {
+                        return "ppt";
+                    }
+                }
+                directorySector = nextOleSector(file, header, sectorShift, directorySector);
+            }
+            return null;
+        } finally {
+            file.close();
+        }
+    }
+
+    private int nextOleSector(RandomAccessFile file, byte[] header, int sectorShift, int sector) throws IOException {
+        int entriesPerSector = (1 << sectorShift) / 4;
+        int fatIndex = sector / entriesPerSector;
+        if (fatIndex >= 109) {
+            // FAT sector listed beyond the header; not worth following for a preflight check
+            return END_OF_CHAIN;
+        }
+        int fatSector = readInt(header, 0x4C + fatIndex * 4);
+        long offset = ((fatSector + 1L) << sectorShift) + (sector % entriesPerSector) * 4;
+        if (fatSector < 0 || offset + 4 > file.length()) {
+            return END_OF_CHAIN;
+        }
+        byte[] entry = new byte[4];
+        file.seek(offset);
+        file.readFully(entry);
+        return readInt(entry, 0);
+    }
+
+    private boolean isHtml(byte[] head) {
+        int start = startsWith(head, new byte[] { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF }) ? 3 : 0;
+        while (start < head.length && Character.isWhitespace(head[start])) {
+            start++;
+        }
+        String prefix = new String(head, start, Math.min(14, head.length - start)).toLowerCase();
+        return prefix.startsWith("<!doctype html") || prefix.startsWith("<html");
+    }
+
+    private boolean isBinary(byte[] head) {
+        if (startsWith(head, new byte[] { (byte) 0xFF, (byte) 0xFE }) || startsWith(head, new byte[] { (byte) 0xFE, (byte) 0xFF })) {
+            return false;  // UTF-16 text
+        }
+        for (byte b : head) {
+            if (b == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean startsWith(byte[] bytes, byte[] prefix) {
+        if (bytes.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int readUnsignedShort(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8 | (bytes[offset + 2] & 0xFF) << 16 | (bytes[offset + 3] & 0xFF) << 24;
+    }
+
+}
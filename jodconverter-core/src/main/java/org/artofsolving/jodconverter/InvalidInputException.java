@@ -0,0 +1,33 @@
+//
+// JODConverter - Java OpenDocument Converter
+// Copyright 2004-2012 Mirko Nasato and contributors
+//
+// JODConverter is Open Source software, you can redistribute it and/or
+// modify it under either (at your option) of the following licenses
+//
+// 1. The GNU Lesser General Public License v3 (or later)
+//    -> http://www.gnu.org/licenses/lgpl-3.0.txt
+// 2. The Apache License, Version 2.0
+//    -> http://www.apache.org/licenses/LICENSE-2.0.txt
+//
+package org.artofsolving.jodconverter;
+
+import org.artofsolving.jodconverter.office.OfficeException;
+
+/**
+ * Thrown when an input document is rejected before being handed to office,
+ * e.g. because it is empty, truncated or not a document at all.
+ */
+public class InvalidInputException extends OfficeException {
+
+    private static final long serialVersionUID = 4185379235917014311L;
+
+    public InvalidInputException(String message) {
+        super(message);
+    }
+
+    public InvalidInputException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
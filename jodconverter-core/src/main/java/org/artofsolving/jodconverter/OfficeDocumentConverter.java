@@ -13,25 +13,63 @@
 package org.artofsolving.jodconverter;
 
 import java.io.File;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.FilenameUtils;
+import org.artofsolving.jodconverter.document.ConversionGraph;
 import org.artofsolving.jodconverter.document.DefaultDocumentFormatRegistry;
 import org.artofsolving.jodconverter.document.DocumentFormat;
 import org.artofsolving.jodconverter.document.DocumentFormatRegistry;
+import org.artofsolving.jodconverter.office.DeadlineExceededException;
+import org.artofsolving.jodconverter.office.NamedThreadFactory;
 import org.artofsolving.jodconverter.office.OfficeException;
 import org.artofsolving.jodconverter.office.OfficeManager;
+import org.artofsolving.jodconverter.office.OfficeTask;
 
 import com.sun.star.document.UpdateDocMode;
 
 public class OfficeDocumentConverter {
 
+    /**
+     * Plans are cached by format identity, so callers creating formats on the fly would
+     * otherwise add a plan per conversion; the cache is emptied when it reaches this size.
+     */
+    private static final int MAX_PROPERTY_PLANS = 256;
+
     private final OfficeManager officeManager;
     private final DocumentFormatRegistry formatRegistry;
 
     private Map<String,?> defaultLoadProperties = createDefaultLoadProperties();
+    private int maxParallelParts = 1;
+    private InputPreflight inputPreflight;
+    private volatile ConversionGraph conversionGraph;
+    private volatile TraceStatistics traceStatistics;
+
+    /**
+     * Compiled properties by pair of formats, at most {@link #MAX_PROPERTY_PLANS}.
+     * A plan is compiled again when either format has been changed through its
+     * setters since; see {@link DocumentFormat#getVersion()}.
+     */
+    private final ConcurrentMap<PropertyPlan.Key,PropertyPlan> propertyPlans = new ConcurrentHashMap<PropertyPlan.Key,PropertyPlan>();
 
+    /**
+     * Uses a new {@link DefaultDocumentFormatRegistry}, which can be customised through
+     * {@link #getFormatRegistry()}; pass {@link DefaultDocumentFormatRegistry#getInstance()}
+     * instead to share the default formats read-only.
+     */
     public OfficeDocumentConverter(OfficeManager officeManager) {
         this(officeManager, new DefaultDocumentFormatRegistry());
     }
@@ -39,6 +77,7 @@ public class OfficeDocumentConverter {
     public OfficeDocumentConverter(OfficeManager officeManager, DocumentFormatRegistry formatRegistry) {
         this.officeManager = officeManager;
         this.formatRegistry = formatRegistry;
+        this.inputPreflight = new InputPreflight(formatRegistry);
     }
 
     private Map<String,Object> createDefaultLoadProperties() {
@@ -51,6 +90,74 @@ public class OfficeDocumentConverter {
 
     public void setDefaultLoadProperties(Map<String, ?> defaultLoadProperties) {
         this.defaultLoadProperties = defaultLoadProperties;
+        propertyPlans.clear();
+    }
+
+    /**
+     * Sets how many parts of a split conversion may run at the same time; see
+     * {@link #convertInParts(File, File, DocumentFormat, int)}.
+     * <p>
+     * Each part occupies an office process while it runs, so this should not exceed
+     * the number of processes managed by the {@link OfficeManager}, otherwise parts
+     * will wait in its queue and may exceed its task queue timeout. Defaults to 1.
+     *
+     * @param maxParallelParts
+     */
+    public void setMaxParallelParts(int maxParallelParts) {
+        if (maxParallelParts < 1) {
+            throw new IllegalArgumentException("maxParallelParts must be at least 1");
+        }
+        this.maxParallelParts = maxParallelParts;
+    }
+
+    /**
+     * Sets the check applied to input documents before they are handed to office;
+     * see {@link InputPreflight}. A preflight based on the format registry is used
+     * by default.
+     *
+     * @param inputPreflight the check to use, or <code>null</code> to disable it
+     */
+    public void setInputPreflight(InputPreflight inputPreflight) {
+        this.inputPreflight = inputPreflight;
+    }
+
+    /**
+     * Enables recording how long each phase of every conversion takes into
+     * {@link #getTraceStatistics()}. Disabled by default.
+     */
+    public void setTracingEnabled(boolean tracingEnabled) {
+        traceStatistics = tracingEnabled ? new TraceStatistics() : null;
+    }
+
+    /**
+     * @return statistics of all successful conversions since tracing was enabled, or
+     *   <code>null</code> if it is not
+     */
+    public TraceStatistics getTraceStatistics() {
+        return traceStatistics;
+    }
+
+    /**
+     * Routes file to file conversions through the given graph: when there is no direct
+     * conversion, the document is converted through the cheapest route of intermediate
+     * formats, hop by hop on a single office process; see
+     * {@link ConversionGraph#findRoute(DocumentFormat, DocumentFormat)}. A direct
+     * conversion is always preferred, however slow, since an intermediate format may
+     * lose content, e.g. doc to pdf through txt. The time each conversion takes is
+     * recorded back into the graph as the cost of its edges.
+     * <p>
+     * The graph should have been built from the same format registry as this
+     * converter, e.g. with {@link ConversionGraph#of(DocumentFormatRegistry)}.
+     *
+     * @param conversionGraph the graph to use, or <code>null</code> to always convert
+     *   directly, the default
+     */
+    public void setConversionGraph(ConversionGraph conversionGraph) {
+        this.conversionGraph = conversionGraph;
+    }
+
+    public ConversionGraph getConversionGraph() {
+        return conversionGraph;
     }
 
     public DocumentFormatRegistry getFormatRegistry() {
@@ -64,12 +171,255 @@ public class OfficeDocumentConverter {
     }
 
     public void convert(File inputFile, File outputFile, DocumentFormat outputFormat) throws OfficeException {
-        String inputExtension = FilenameUtils.getExtension(inputFile.getName());
-        DocumentFormat inputFormat = formatRegistry.getFormatByExtension(inputExtension);
+        convert(inputFile, outputFile, outputFormat, Long.MAX_VALUE);
+    }
+
+    /**
+     * Converts a document, giving up if the conversion cannot be completed by the given
+     * deadline, including any time spent waiting for an office process.
+     * 
+     * @param deadline as returned by {@link System#currentTimeMillis()}
+     * @throws DeadlineExceededException if the deadline passed first
+     * @see OfficeManager#execute(OfficeTask, long)
+     */
+    public void convert(File inputFile, File outputFile, DocumentFormat outputFormat, long deadline) throws OfficeException {
+        convert(inputFile, outputFile, outputFormat, deadline, null);
+    }
+
+    /**
+     * Converts a document, recording how long each phase took into the given trace.
+     * Conversions routed through intermediate formats are not traced.
+     * 
+     * @param deadline as returned by {@link System#currentTimeMillis()}, or {@link Long#MAX_VALUE}
+     * @param trace a new trace to fill in, or <code>null</code>
+     */
+    public void convert(File inputFile, File outputFile, DocumentFormat outputFormat, long deadline, ConversionTrace trace) throws OfficeException {
+        DocumentFormat inputFormat = getInputFormat(inputFile);
+        ConversionGraph graph = conversionGraph;
+        if (graph == null || inputFormat == null || outputFormat == null) {
+            execute(createConversionTask(inputFile, inputFormat, outputFile, outputFormat), deadline, trace);
+            return;
+        }
+        List<DocumentFormat> route = graph.hasDirectRoute(inputFormat, outputFormat) ? null : graph.findRoute(inputFormat, outputFormat);
+        if (route != null && route.size() > 2) {
+            List<PropertyPlan> plans = new ArrayList<PropertyPlan>(route.size() - 1);
+            for (int hop = 0; hop < route.size() - 1; hop++) {
+                plans.add(getPropertyPlan(route.get(hop), route.get(hop + 1)));
+            }
+            ChainedConversionTask chainedTask = new ChainedConversionTask(inputFile, outputFile, route, plans);
+            officeManager.execute(chainedTask, deadline);
+            long[] hopDurations = chainedTask.getHopDurations();
+            for (int hop = 0; hop < hopDurations.length; hop++) {
+                graph.recordCost(route.get(hop), route.get(hop + 1), hopDurations[hop]);
+            }
+        } else {
+            StandardConversionTask conversionTask = createConversionTask(inputFile, inputFormat, outputFile, outputFormat);
+            execute(conversionTask, deadline, trace);
+            graph.recordCost(inputFormat, outputFormat, conversionTask.getExecutionTime());
+        }
+    }
+
+    /**
+     * Converts a document writing the output to a stream while it is being produced,
+     * e.g. straight to an HTTP response; no output file is created.
+     * <p>
+     * The office process is busy until the whole output has been written, so this is
+     * best suited to consumers that read at least as fast as office exports. The
+     * stream is flushed but not closed.
+     */
+    public void convert(File inputFile, OutputStream outputStream, DocumentFormat outputFormat) throws OfficeException {
+        convert(inputFile, outputStream, outputFormat, Long.MAX_VALUE);
+    }
+
+    /**
+     * Converts a document to a stream, giving up if the conversion cannot be completed
+     * by the given deadline; part of the output may have been written by then.
+     * 
+     * @param deadline as returned by {@link System#currentTimeMillis()}
+     * @see #convert(File, File, DocumentFormat, long)
+     */
+    public void convert(File inputFile, OutputStream outputStream, DocumentFormat outputFormat, long deadline) throws OfficeException {
+        convert(inputFile, outputStream, outputFormat, deadline, null);
+    }
+
+    /**
+     * @see #convert(File, File, DocumentFormat, long, ConversionTrace)
+     */
+    public void convert(File inputFile, OutputStream outputStream, DocumentFormat outputFormat, long deadline, ConversionTrace trace) throws OfficeException {
+        DocumentFormat inputFormat = getInputFormat(inputFile);
+        StandardConversionTask conversionTask = new StandardConversionTask(inputFile, outputStream, outputFormat);
+        execute(prepareConversionTask(conversionTask, inputFormat, outputFormat), deadline, trace);
+    }
+
+    /**
+     * Converts a large document into several outputs of at most <code>pagesPerPart</code>
+     * pages each, so that no single task has to export the whole document.
+     * <p>
+     * The document is first loaded once to count its pages. Each part is then exported
+     * by a separate task that loads its own copy of the document; up to
+     * {@link #setMaxParallelParts(int) maxParallelParts} parts run at the same time,
+     * each on whichever office process the {@link OfficeManager} assigns.
+     * <p>
+     * Parts are written next to <code>outputFile</code> and named after it with a part
+     * number, e.g. <em>report-01.pdf</em>, <em>report-02.pdf</em>. They are not joined
+     * back together; a document that fits in a single part is simply converted to
+     * <code>outputFile</code>. Page ranges are only honoured by PDF export filters, so
+     * other output formats are rejected.
+     *
+     * @return the output files, in page order
+     * @throws IllegalArgumentException if the output format does not export to PDF
+     * @throws OfficeException if any part fails, in which case no parts are kept
+     */
+    public List<File> convertInParts(File inputFile, File outputFile, DocumentFormat outputFormat, int pagesPerPart) throws OfficeException {
+        if (pagesPerPart < 1) {
+            throw new IllegalArgumentException("pagesPerPart must be at least 1");
+        }
+        if (!isPdfExport(outputFormat)) {
+            throw new IllegalArgumentException("only PDF output can be split into parts, not " + (outputFormat != null ? outputFormat.getName() : null));
+        }
+        DocumentFormat inputFormat = getInputFormat(inputFile);
+        PageCountTask pageCountTask = new PageCountTask(inputFile, getPropertyPlan(inputFormat, outputFormat).getLoadProperties(),
+                inputFormat != null ? inputFormat.getInputFamily() : null);
+        officeManager.execute(pageCountTask);
+        int pageCount = pageCountTask.getPageCount();
+        if (pageCount <= pagesPerPart) {
+            execute(createConversionTask(inputFile, inputFormat, outputFile, outputFormat), Long.MAX_VALUE, null);
+            return Collections.singletonList(outputFile);
+        }
+
+        int partCount = (pageCount + pagesPerPart - 1) / pagesPerPart;
+        String partNameFormat = "%s-%0" + String.valueOf(partCount).length() + "d.%s";
+        String baseName = FilenameUtils.getBaseName(outputFile.getName());
+        String extension = FilenameUtils.getExtension(outputFile.getName());
+        List<File> partFiles = new ArrayList<File>(partCount);
+        List<Callable<Object>> partTasks = new ArrayList<Callable<Object>>(partCount);
+        for (int part = 0; part < partCount; part++) {
+            int firstPage = part * pagesPerPart + 1;
+            int lastPage = Math.min(firstPage + pagesPerPart - 1, pageCount);
+            File partFile = new File(outputFile.getAbsoluteFile().getParentFile(), String.format(partNameFormat, baseName, part + 1, extension));
+            final StandardConversionTask partTask = createConversionTask(inputFile, inputFormat, partFile, outputFormat);
+            partTask.setPageRange(firstPage + "-" + lastPage);
+            partFiles.add(partFile);
+            partTasks.add(new Callable<Object>() {
+                public Object call() throws OfficeException {
+                    execute(partTask, Long.MAX_VALUE, null);
+                    return null;
+                }
+            });
+        }
+
+        ExecutorService partExecutor = Executors.newFixedThreadPool(Math.min(maxParallelParts, partCount), new NamedThreadFactory("OfficePartThread"));
+        List<Future<Object>> futures = new ArrayList<Future<Object>>(partCount);
+        boolean completed = false;
+        try {
+            for (Callable<Object> partTask : partTasks) {
+                futures.add(partExecutor.submit(partTask));
+            }
+            for (Future<Object> future : futures) {
+                future.get();
+            }
+            completed = true;
+            return partFiles;
+        } catch (ExecutionException executionException) {
+            if (executionException.getCause() instanceof OfficeException) {
+                throw (OfficeException) executionException.getCause();
+            }
+            throw new OfficeException("split conversion failed", executionException.getCause());
+        } catch (InterruptedException interruptedException) {
+            throw new OfficeException("interrupted", interruptedException);
+        } finally {
+            partExecutor.shutdown();
+            if (!completed) {
+                // parts already handed to office keep being written until they complete
+                // or time out, so wait for them before deleting
+                for (Future<Object> future : futures) {
+                    future.cancel(false);
+                }
+                awaitTermination(partExecutor);
+                for (File partFile : partFiles) {
+                    partFile.delete();
+                }
+            }
+        }
+    }
+
+    private static void awaitTermination(ExecutorService executor) {
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                // each part is bounded by the task execution timeout
+            }
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return whether every family the format can store is stored with a PDF export
+     *   filter, the only filters that honour a page range
+     */
+    private static boolean isPdfExport(DocumentFormat format) {
+        if (format == null || format.getStorePropertiesByFamily() == null || format.getStorePropertiesByFamily().isEmpty()) {
+            return false;
+        }
+        for (Map<String,?> storeProperties : format.getStorePropertiesByFamily().values()) {
+            Object filterName = storeProperties != null ? storeProperties.get("FilterName") : null;
+            if (!(filterName instanceof String) || !((String) filterName).endsWith("_pdf_Export")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void execute(StandardConversionTask conversionTask, long deadline, ConversionTrace trace) throws OfficeException {
+        TraceStatistics statistics = traceStatistics;
+        if (trace == null && statistics != null) {
+            trace = new ConversionTrace();
+        }
+        if (trace == null) {
+            officeManager.execute(conversionTask, deadline);
+            return;
+        }
+        conversionTask.setTrace(trace);
+        trace.start(conversionTask.getConversionType());
+        officeManager.execute(conversionTask, deadline);
+        trace.finish();
+        if (statistics != null) {
+            statistics.record(trace);
+        }
+    }
+
+    private StandardConversionTask createConversionTask(File inputFile, DocumentFormat inputFormat, File outputFile, DocumentFormat outputFormat) {
         StandardConversionTask conversionTask = new StandardConversionTask(inputFile, outputFile, outputFormat);
+        return prepareConversionTask(conversionTask, inputFormat, outputFormat);
+    }
+
+    private StandardConversionTask prepareConversionTask(StandardConversionTask conversionTask, DocumentFormat inputFormat, DocumentFormat outputFormat) {
         conversionTask.setDefaultLoadProperties(defaultLoadProperties);
         conversionTask.setInputFormat(inputFormat);
-        officeManager.execute(conversionTask);
+        conversionTask.setPropertyPlan(getPropertyPlan(inputFormat, outputFormat));
+        return conversionTask;
+    }
+
+    private DocumentFormat getInputFormat(File inputFile) throws InvalidInputException {
+        String inputExtension = FilenameUtils.getExtension(inputFile.getName());
+        DocumentFormat inputFormat = formatRegistry.getFormatByExtension(inputExtension);
+        if (inputPreflight != null) {
+            inputFormat = inputPreflight.check(inputFile, inputFormat);
+        }
+        return inputFormat;
+    }
+
+    private PropertyPlan getPropertyPlan(DocumentFormat inputFormat, DocumentFormat outputFormat) {
+        PropertyPlan.Key key = new PropertyPlan.Key(inputFormat, outputFormat);
+        PropertyPlan plan = propertyPlans.get(key);
+        if (plan == null || !plan.isCurrent(inputFormat, outputFormat)) {
+            plan = new PropertyPlan(defaultLoadProperties, inputFormat, outputFormat);
+            if (propertyPlans.size() >= MAX_PROPERTY_PLANS) {
+                propertyPlans.clear();
+            }
+            propertyPlans.put(key, plan);
+        }
+        return plan;
     }
 
 }
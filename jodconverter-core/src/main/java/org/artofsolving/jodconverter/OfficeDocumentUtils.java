@@ -14,12 +14,18 @@ package org.artofsolving.jodconverter;
 
 import static org.artofsolving.jodconverter.office.OfficeUtils.*;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
 import org.artofsolving.jodconverter.document.DocumentFamily;
 import org.artofsolving.jodconverter.office.OfficeException;
 
 
 import com.sun.star.lang.XComponent;
 import com.sun.star.lang.XServiceInfo;
+import com.sun.star.util.CloseVetoException;
+import com.sun.star.util.XCloseable;
 
 class OfficeDocumentUtils {
 
@@ -28,24 +34,62 @@ class OfficeDocumentUtils {
     }
 
     public static DocumentFamily getDocumentFamily(XComponent document) throws OfficeException {
+        return getDocumentFamily(document, null);
+    }
+
+    /**
+     * Determines the family of a loaded document.
+     * <p>
+     * Each call on the document goes across the UNO bridge, so the supported service
+     * names are fetched once and checked locally. If the family expected from the
+     * input format is known it is trusted without asking the document at all, except
+     * for {@link DocumentFamily#TEXT} which still needs checking because text input
+     * may be loaded as a {@link DocumentFamily#TEXT_WEB} document.
+     *
+     * @param document
+     * @param expectedFamily the input format's family, or <code>null</code> if unknown
+     * @return the document family
+     * @throws OfficeException if the family cannot be determined
+     */
+    public static DocumentFamily getDocumentFamily(XComponent document, DocumentFamily expectedFamily) throws OfficeException {
+        if (expectedFamily != null && expectedFamily != DocumentFamily.TEXT) {
+            return expectedFamily;
+        }
         XServiceInfo serviceInfo = cast(XServiceInfo.class, document);
-        if (serviceInfo.supportsService("com.sun.star.text.WebDocument")) {
+        Set<String> serviceNames = new HashSet<String>(Arrays.asList(serviceInfo.getSupportedServiceNames()));
+        if (serviceNames.contains("com.sun.star.text.WebDocument")) {
             // if the document is identified as a WebDocument then the web PDF export filter must be used.
             // otherwise error 2074 will occur.
             return DocumentFamily.TEXT_WEB;
-        } else if (serviceInfo.supportsService("com.sun.star.text.GenericTextDocument")) {
+        } else if (serviceNames.contains("com.sun.star.text.GenericTextDocument")) {
             // NOTE: a GenericTextDocument is either a TextDocument, a WebDocument, or a GlobalDocument
             // but this further distinction doesn't seem to matter for conversions
             return DocumentFamily.TEXT;
-        } else if (serviceInfo.supportsService("com.sun.star.sheet.SpreadsheetDocument")) {
+        } else if (serviceNames.contains("com.sun.star.sheet.SpreadsheetDocument")) {
             return DocumentFamily.SPREADSHEET;
-        } else if (serviceInfo.supportsService("com.sun.star.presentation.PresentationDocument")) {
+        } else if (serviceNames.contains("com.sun.star.presentation.PresentationDocument")) {
             return DocumentFamily.PRESENTATION;
-        } else if (serviceInfo.supportsService("com.sun.star.drawing.DrawingDocument")) {
+        } else if (serviceNames.contains("com.sun.star.drawing.DrawingDocument")) {
             return DocumentFamily.DRAWING;
         } else {
             throw new OfficeException("document of unknown family: " + serviceInfo.getImplementationName());
         }
     }
 
+    /**
+     * Closes a document, falling back to disposing it if it cannot be closed.
+     */
+    public static void closeDocument(XComponent document) {
+        XCloseable closeable = cast(XCloseable.class, document);
+        if (closeable != null) {
+            try {
+                closeable.close(true);
+            } catch (CloseVetoException closeVetoException) {
+                // whoever raised the veto should close the document
+            }
+        } else {
+            document.dispose();
+        }
+    }
+
 }
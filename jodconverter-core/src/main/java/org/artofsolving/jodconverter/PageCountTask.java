@@ -0,0 +1,97 @@
+//
+// JODConverter - Java OpenDocument Converter
+// Copyright 2004-2012 Mirko Nasato and contributors
+//
+// JODConverter is Open Source software, you can redistribute it and/or
+// modify it under either (at your option) of the following licenses
+//
+// 1. The GNU Lesser General Public License v3 (or later)
+//    -> http://www.gnu.org/licenses/lgpl-3.0.txt
+// 2. The Apache License, Version 2.0
+//    -> http://www.apache.org/licenses/LICENSE-2.0.txt
+//
+package org.artofsolving.jodconverter;
+
+import static org.artofsolving.jodconverter.office.OfficeUtils.SERVICE_DESKTOP;
+import static org.artofsolving.jodconverter.office.OfficeUtils.cast;
+import static org.artofsolving.jodconverter.office.OfficeUtils.toUrl;
+
+import java.io.File;
+
+import org.artofsolving.jodconverter.document.DocumentFamily;
+import org.artofsolving.jodconverter.office.OfficeContext;
+import org.artofsolving.jodconverter.office.OfficeException;
+import org.artofsolving.jodconverter.office.OfficeTask;
+
+import com.sun.star.beans.PropertyValue;
+import com.sun.star.beans.XPropertySet;
+import com.sun.star.drawing.XDrawPagesSupplier;
+import com.sun.star.frame.XComponentLoader;
+import com.sun.star.frame.XModel;
+import com.sun.star.lang.XComponent;
+import com.sun.star.view.XRenderable;
+
+/**
+ * Loads a document only to find out how many pages it would export to, so that
+ * it can be split into page ranges.
+ */
+class PageCountTask implements OfficeTask {
+
+    private final File inputFile;
+    private final PropertyValue[] loadProperties;
+    private final DocumentFamily inputFamily;
+
+    private int pageCount;
+
+    public PageCountTask(File inputFile, PropertyValue[] loadProperties, DocumentFamily inputFamily) {
+        this.inputFile = inputFile;
+        this.loadProperties = loadProperties;
+        this.inputFamily = inputFamily;
+    }
+
+    public void execute(OfficeContext context) throws OfficeException {
+        if (!inputFile.exists()) {
+            throw new OfficeException("input document not found");
+        }
+        XComponentLoader loader = cast(XComponentLoader.class, context.getService(SERVICE_DESKTOP));
+        XComponent document;
+        try {
+            document = loader.loadComponentFromURL(toUrl(inputFile), "_blank", 0, loadProperties);
+        } catch (Exception exception) {
+            throw new OfficeException("could not load document: " + inputFile.getName(), exception);
+        }
+        if (document == null) {
+            throw new OfficeException("could not load document: "  + inputFile.getName());
+        }
+        try {
+            pageCount = countPages(document, OfficeDocumentUtils.getDocumentFamily(document, inputFamily));
+        } catch (OfficeException officeException) {
+            throw officeException;
+        } catch (Exception exception) {
+            throw new OfficeException("could not count pages: " + inputFile.getName(), exception);
+        } finally {
+            OfficeDocumentUtils.closeDocument(document);
+        }
+    }
+
+    private int countPages(XComponent document, DocumentFamily family) throws Exception {
+        switch (family) {
+        case TEXT:
+        case TEXT_WEB:
+            XModel model = cast(XModel.class, document);
+            XPropertySet controllerProperties = cast(XPropertySet.class, model.getCurrentController());
+            return ((Number) controllerProperties.getPropertyValue("PageCount")).intValue();
+        case PRESENTATION:
+        case DRAWING:
+            return cast(XDrawPagesSupplier.class, document).getDrawPages().getCount();
+        default:
+            // printed pages, the same the PDF export filter counts for its PageRange
+            return cast(XRenderable.class, document).getRendererCount(document, new PropertyValue[0]);
+        }
+    }
+
+    public int getPageCount() {
+        return pageCount;
+    }
+
+}
@@ -0,0 +1,119 @@
+//
+// JODConverter - Java OpenDocument Converter
+// Copyright 2004-2012 Mirko Nasato and contributors
+//
+// JODConverter is Open Source software, you can redistribute it and/or
+// modify it under either (at your option) of the following licenses
+//
+// 1. The GNU Lesser General Public License v3 (or later)
+//    -> http://www.gnu.org/licenses/lgpl-3.0.txt
+// 2. The Apache License, Version 2.0
+//    -> http://www.apache.org/licenses/LICENSE-2.0.txt
+//
+package org.artofsolving.jodconverter;
+
+import static org.artofsolving.jodconverter.office.OfficeUtils.toUnoProperties;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.artofsolving.jodconverter.document.DocumentFamily;
+import org.artofsolving.jodconverter.document.DocumentFormat;
+
+import com.sun.star.beans.PropertyValue;
+
+/**
+ * The load and store properties for converting from one {@link DocumentFormat}
+ * to another, compiled once into UNO {@link PropertyValue} arrays.
+ * <p>
+ * Instances are immutable and shared by all tasks using the same pair of formats,
+ * so the arrays they return must not be modified. A plan records the
+ * {@link DocumentFormat#getVersion() versions} of the formats it was compiled
+ * from; see {@link #isCurrent(DocumentFormat, DocumentFormat)}.
+ */
+class PropertyPlan {
+
+    private final PropertyValue[] loadProperties;
+    private final Map<DocumentFamily,PropertyValue[]> storePropertiesByFamily = new EnumMap<DocumentFamily,PropertyValue[]>(DocumentFamily.class);
+    private final int inputFormatVersion;
+    private final int outputFormatVersion;
+
+    public PropertyPlan(Map<String,?> defaultLoadProperties, DocumentFormat inputFormat, DocumentFormat outputFormat) {
+        // read the versions first, so that a change made while compiling makes the plan stale
+        inputFormatVersion = versionOf(inputFormat);
+        outputFormatVersion = versionOf(outputFormat);
+        Map<String,Object> mergedLoadProperties = new HashMap<String,Object>();
+        if (defaultLoadProperties != null) {
+            mergedLoadProperties.putAll(defaultLoadProperties);
+        }
+        if (inputFormat != null && inputFormat.getLoadProperties() != null) {
+            mergedLoadProperties.putAll(inputFormat.getLoadProperties());
+        }
+        loadProperties = toUnoProperties(mergedLoadProperties);
+        if (outputFormat != null && outputFormat.getStorePropertiesByFamily() != null) {
+            for (Map.Entry<DocumentFamily,Map<String,?>> entry : outputFormat.getStorePropertiesByFamily().entrySet()) {
+                if (entry.getValue() != null) {
+                    storePropertiesByFamily.put(entry.getKey(), toUnoProperties(entry.getValue()));
+                }
+            }
+        }
+    }
+
+    public PropertyValue[] getLoadProperties() {
+        return loadProperties;
+    }
+
+    /**
+     * @param family
+     * @return the store properties for documents of the given family, or
+     *   <code>null</code> if the output format does not support that family
+     */
+    public PropertyValue[] getStoreProperties(DocumentFamily family) {
+        return storePropertiesByFamily.get(family);
+    }
+
+    /**
+     * @param inputFormat
+     * @param outputFormat
+     * @return <code>false</code> if either format was changed after this plan was compiled
+     */
+    public boolean isCurrent(DocumentFormat inputFormat, DocumentFormat outputFormat) {
+        return inputFormatVersion == versionOf(inputFormat) && outputFormatVersion == versionOf(outputFormat);
+    }
+
+    private static int versionOf(DocumentFormat format) {
+        return format != null ? format.getVersion() : 0;
+    }
+
+    /**
+     * Identifies a plan by its pair of formats. {@link DocumentFormat} does not
+     * override equals(), so formats are compared by identity.
+     */
+    static class Key {
+
+        private final DocumentFormat inputFormat;
+        private final DocumentFormat outputFormat;
+
+        public Key(DocumentFormat inputFormat, DocumentFormat outputFormat) {
+            this.inputFormat = inputFormat;
+            this.outputFormat = outputFormat;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) object;
+            return inputFormat == other.inputFormat && outputFormat == other.outputFormat;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(inputFormat) + System.identityHashCode(outputFormat);
+        }
+
+    }
+
+}
@@ -15,13 +15,16 @@ package org.artofsolving.jodconverter;
 import static org.artofsolving.jodconverter.office.OfficeUtils.cast;
 
 import java.io.File;
+import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.artofsolving.jodconverter.ConversionTrace.Phase;
 import org.artofsolving.jodconverter.document.DocumentFamily;
 import org.artofsolving.jodconverter.document.DocumentFormat;
 import org.artofsolving.jodconverter.office.OfficeException;
 
+import com.sun.star.beans.PropertyValue;
 import com.sun.star.lang.XComponent;
 import com.sun.star.util.XRefreshable;
 
@@ -31,12 +34,18 @@ public class StandardConversionTask extends AbstractConversionTask {
 
     private Map<String,?> defaultLoadProperties;
     private DocumentFormat inputFormat;
+    private PropertyPlan propertyPlan;
 
     public StandardConversionTask(File inputFile, File outputFile, DocumentFormat outputFormat) {
         super(inputFile, outputFile);
         this.outputFormat = outputFormat;
     }
 
+    public StandardConversionTask(File inputFile, OutputStream outputStream, DocumentFormat outputFormat) {
+        super(inputFile, outputStream);
+        this.outputFormat = outputFormat;
+    }
+
     public void setDefaultLoadProperties(Map<String, ?> defaultLoadProperties) {
         this.defaultLoadProperties = defaultLoadProperties;
     }
@@ -45,6 +54,27 @@ public class StandardConversionTask extends AbstractConversionTask {
         this.inputFormat = inputFormat;
     }
 
+    /**
+     * Uses properties compiled ahead of time instead of merging and converting them
+     * for every task. The plan must have been built from the same default load
+     * properties and formats as this task.
+     */
+    void setPropertyPlan(PropertyPlan propertyPlan) {
+        this.propertyPlan = propertyPlan;
+    }
+
+    /**
+     * By the formats the input was resolved to, rather than whatever extension the
+     * input file happens to have; <code>null</code> if either format is unknown.
+     */
+    @Override
+    public String getConversionType() {
+        if (inputFormat == null || outputFormat == null) {
+            return null;
+        }
+        return inputFormat.getExtension() + ">" + outputFormat.getExtension();
+    }
+
     @Override
     protected void modifyDocument(XComponent document) throws OfficeException {
         XRefreshable refreshable = cast(XRefreshable.class, document);
@@ -67,8 +97,34 @@ public class StandardConversionTask extends AbstractConversionTask {
 
     @Override
     protected Map<String,?> getStoreProperties(File outputFile, XComponent document) {
-        DocumentFamily family = OfficeDocumentUtils.getDocumentFamily(document);
-        return outputFormat.getStoreProperties(family);
+        return outputFormat.getStoreProperties(getDocumentFamily(document));
+    }
+
+    private DocumentFamily getDocumentFamily(XComponent document) throws OfficeException {
+        long startTime = traceStart();
+        DocumentFamily family = OfficeDocumentUtils.getDocumentFamily(document, getInputFamily());
+        traceEnd(Phase.DETECT_FAMILY, startTime);
+        return family;
+    }
+
+    private DocumentFamily getInputFamily() {
+        return inputFormat != null ? inputFormat.getInputFamily() : null;
+    }
+
+    @Override
+    protected PropertyValue[] getUnoLoadProperties(File inputFile) {
+        if (propertyPlan != null) {
+            return propertyPlan.getLoadProperties();
+        }
+        return super.getUnoLoadProperties(inputFile);
+    }
+
+    @Override
+    protected PropertyValue[] getUnoStoreProperties(File outputFile, XComponent document) {
+        if (propertyPlan != null) {
+            return propertyPlan.getStoreProperties(getDocumentFamily(document));
+        }
+        return super.getUnoStoreProperties(outputFile, document);
     }
 
 }
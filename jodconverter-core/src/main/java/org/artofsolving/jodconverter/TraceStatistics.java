@@ -0,0 +1,107 @@
+//
+// JODConverter - Java OpenDocument Converter
+// Copyright 2004-2012 Mirko Nasato and contributors
+//
+// JODConverter is Open Source software, you can redistribute it and/or
+// modify it under either (at your option) of the following licenses
+//
+// 1. The GNU Lesser General Public License v3 (or later)
+//    -> http://www.gnu.org/licenses/lgpl-3.0.txt
+// 2. The Apache License, Version 2.0
+//    -> http://www.apache.org/licenses/LICENSE-2.0.txt
+//
+package org.artofsolving.jodconverter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.artofsolving.jodconverter.ConversionTrace.Phase;
+
+/**
+ * Percentiles of the duration of each {@link Phase} over the most recent successful
+ * conversions, per conversion type (e.g. "doc&gt;pdf"). Only the most recently used
+ * {@link #MAX_CONVERSION_TYPES} types are kept.
+ */
+public class TraceStatistics {
+
+    private static final int HISTORY_SIZE = 1000;
+    static final int MAX_CONVERSION_TYPES = 256;
+
+    private static class History {
+        private final long[][] durations = new long[Phase.values().length][HISTORY_SIZE];
+        private int count;
+
+        synchronized void add(ConversionTrace trace) {
+            int index = count++ % HISTORY_SIZE;
+            for (Phase phase : Phase.values()) {
+                durations[phase.ordinal()][index] = trace.getDuration(phase, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        synchronized int getCount() {
+            return count;
+        }
+
+        synchronized long percentile(Phase phase, double percentile) {
+            long[] sorted = Arrays.copyOf(durations[phase.ordinal()], Math.min(count, HISTORY_SIZE));
+            Arrays.sort(sorted);
+            return sorted[Math.max((int) Math.ceil(percentile / 100 * sorted.length) - 1, 0)];
+        }
+    }
+
+    private final Map<String,History> histories = Collections.synchronizedMap(new LinkedHashMap<String,History>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String,History> eldest) {
+            return size() > MAX_CONVERSION_TYPES;
+        }
+    });
+
+    public void record(ConversionTrace trace) {
+        if (trace.getConversionType() == null) {
+            return;
+        }
+        History history;
+        synchronized (histories) {
+            history = histories.get(trace.getConversionType());
+            if (history == null) {
+                history = new History();
+                histories.put(trace.getConversionType(), history);
+            }
+        }
+        history.add(trace);
+    }
+
+    public Set<String> getConversionTypes() {
+        synchronized (histories) {
+            return new LinkedHashSet<String>(histories.keySet());
+        }
+    }
+
+    /**
+     * @return the number of conversions of the given type recorded so far
+     */
+    public int getCount(String conversionType) {
+        History history = histories.get(conversionType);
+        return history != null ? history.getCount() : 0;
+    }
+
+    /**
+     * @param percentile e.g. 95
+     * @return the given percentile of the duration of a phase, over the last 1000
+     *   conversions of the given type; -1 if there were none
+     */
+    public long getPercentile(String conversionType, Phase phase, double percentile, TimeUnit unit) {
+        History history = histories.get(conversionType);
+        if (history == null) {
+            return -1L;
+        }
+        return unit.convert(history.percentile(phase, percentile), TimeUnit.NANOSECONDS);
+    }
+
+}
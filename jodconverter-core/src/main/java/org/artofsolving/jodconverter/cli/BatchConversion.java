@@ -0,0 +1,268 @@
+//
+// JODConverter - Java OpenDocument Converter
+// Copyright 2004-2012 Mirko Nasato and contributors
+//
+// JODConverter is Open Source software, you can redistribute it and/or
+// modify it under either (at your option) of the following licenses
+//
+// 1. The GNU Lesser General Public License v3 (or later)
+//    -> http://www.gnu.org/licenses/lgpl-3.0.txt
+// 2. The Apache License, Version 2.0
+//    -> http://www.apache.org/licenses/LICENSE-2.0.txt
+//
+package org.artofsolving.jodconverter.cli;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.artofsolving.jodconverter.OfficeDocumentConverter;
+import org.artofsolving.jodconverter.document.DocumentFormatRegistry;
+
+/**
+ * Converts many files at once, as many at a time as there are office processes,
+ * reporting progress as each one completes.
+ * <p>
+ * Conversions are resumable: a file whose output exists and is not older than the
+ * input is skipped, and outputs are written under a temporary name first so that an
+ * interrupted run does not leave partial outputs behind looking up to date.
+ * <p>
+ * Items that would write the same output file, e.g. <em>a.doc</em> and <em>a.docx</em>
+ * both to <em>a.pdf</em>, all fail rather than overwrite each other.
+ */
+class BatchConversion {
+
+    enum Status { CONVERTED, SKIPPED, FAILED }
+
+    static class Item {
+
+        private final File inputFile;
+        private final File outputFile;
+
+        public Item(File inputFile, File outputFile) {
+            this.inputFile = inputFile;
+            this.outputFile = outputFile;
+        }
+
+        public File getInputFile() {
+            return inputFile;
+        }
+
+        public File getOutputFile() {
+            return outputFile;
+        }
+
+    }
+
+    private final OfficeDocumentConverter converter;
+    private final int parallelism;
+    private final PrintStream progress;
+    private boolean force;
+
+    private final AtomicInteger completedCount = new AtomicInteger();
+    private final AtomicInteger convertedCount = new AtomicInteger();
+    private final AtomicInteger skippedCount = new AtomicInteger();
+    private final AtomicInteger failedCount = new AtomicInteger();
+
+    public BatchConversion(OfficeDocumentConverter converter, int parallelism, PrintStream progress) {
+        this.converter = converter;
+        this.parallelism = parallelism;
+        this.progress = progress;
+    }
+
+    /**
+     * @param force whether to convert files even if their output is up to date
+     */
+    public void setForce(boolean force) {
+        this.force = force;
+    }
+
+    /**
+     * Lists the files in a directory tree that the registry has a format for, to be
+     * converted into the same tree under the output directory.
+     */
+    public static List<Item> fromDirectory(File inputDir, File outputDir, String outputExtension, DocumentFormatRegistry registry) {
+        List<Item> items = new ArrayList<Item>();
+        addDirectory(inputDir, outputDir, outputExtension, registry, items);
+        return items;
+    }
+
+    private static void addDirectory(File inputDir, File outputDir, String outputExtension, DocumentFormatRegistry registry, List<Item> items) {
+        File[] files = inputDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            if (file.isDirectory()) {
+                addDirectory(file, new File(outputDir, file.getName()), outputExtension, registry, items);
+            } else {
+                String extension = FilenameUtils.getExtension(file.getName());
+                if (!extension.equalsIgnoreCase(outputExtension) && registry.getFormatByExtension(extension.toLowerCase()) != null) {
+                    items.add(new Item(file, new File(outputDir, FilenameUtils.getBaseName(file.getName()) + "." + outputExtension)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a manifest listing one input file per line, optionally followed by a tab
+     * and its output file. Inputs without an output are converted next to themselves
+     * into the given output format. Blank lines and lines starting with # are ignored.
+     *
+     * @param outputExtension may be <code>null</code> if every line has an output file
+     */
+    public static List<Item> fromManifest(File manifest, String outputExtension) throws IOException {
+        List<Item> items = new ArrayList<Item>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(manifest), "UTF-8"));
+        try {
+            int lineNumber = 0;
+            for (String line; (line = reader.readLine()) != null; ) {
+                lineNumber++;
+                if (line.trim().length() == 0 || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\t");
+                File inputFile = new File(fields[0]);
+                File outputFile;
+                if (fields.length > 1) {
+                    outputFile = new File(fields[1]);
+                } else if (outputExtension != null) {
+                    outputFile = new File(inputFile.getParentFile(), FilenameUtils.getBaseName(inputFile.getName()) + "." + outputExtension);
+                } else {
+                    throw new IllegalArgumentException("no output file or format for line " + lineNumber + " of " + manifest);
+                }
+                items.add(new Item(inputFile, outputFile));
+            }
+        } finally {
+            IOUtils.closeQuietly(reader);
+        }
+        return items;
+    }
+
+    /**
+     * Converts all items, blocking until done.
+     *
+     * @param report where to write a tab-separated line per item, with its status,
+     *   input, output, duration in milliseconds and error if any; may be <code>null</code>
+     * @return whether all items were converted or skipped
+     */
+    public boolean run(List<Item> items, final PrintWriter report) throws InterruptedException {
+        final int total = items.size();
+        long startTime = System.currentTimeMillis();
+        Map<File,List<Item>> itemsByOutput = new LinkedHashMap<File,List<Item>>();
+        for (Item item : items) {
+            File outputFile = item.getOutputFile().getAbsoluteFile();
+            List<Item> sameOutputItems = itemsByOutput.get(outputFile);
+            if (sameOutputItems == null) {
+                sameOutputItems = new ArrayList<Item>();
+                itemsByOutput.put(outputFile, sameOutputItems);
+            }
+            sameOutputItems.add(item);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        for (final Item item : items) {
+            List<Item> sameOutputItems = itemsByOutput.get(item.getOutputFile().getAbsoluteFile());
+            if (sameOutputItems.size() > 1) {
+                completed(item, Status.FAILED, 0L, "output would also be written from " + otherInputs(sameOutputItems, item), total, report);
+                continue;
+            }
+            executor.execute(new Runnable() {
+                public void run() {
+                    long itemStartTime = System.currentTimeMillis();
+                    Status status;
+                    String error = null;
+                    try {
+                        status = convert(item);
+                    } catch (Exception exception) {
+                        status = Status.FAILED;
+                        error = exception.getMessage() != null ? exception.getMessage() : exception.toString();
+                    }
+                    completed(item, status, System.currentTimeMillis() - itemStartTime, error, total, report);
+                }
+            });
+        }
+        executor.shutdown();
+        while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+            progress.printf("%d of %d files done%n", completedCount.get(), total);
+        }
+        if (report != null) {
+            report.flush();
+        }
+        progress.printf("done in %ds: %d converted, %d skipped as up to date, %d failed%n",
+                (System.currentTimeMillis() - startTime) / 1000, convertedCount.get(), skippedCount.get(), failedCount.get());
+        return failedCount.get() == 0;
+    }
+
+    private static String otherInputs(List<Item> sameOutputItems, Item item) {
+        StringBuilder otherInputs = new StringBuilder();
+        for (Item otherItem : sameOutputItems) {
+            if (otherItem != item) {
+                otherInputs.append(otherInputs.length() > 0 ? ", " : "").append(otherItem.getInputFile());
+            }
+        }
+        return otherInputs.toString();
+    }
+
+    Status convert(Item item) throws IOException {
+        File inputFile = item.getInputFile();
+        File outputFile = item.getOutputFile();
+        if (!force && outputFile.exists() && outputFile.lastModified() >= inputFile.lastModified()) {
+            return Status.SKIPPED;
+        }
+        File outputDir = outputFile.getAbsoluteFile().getParentFile();
+        if (!outputDir.isDirectory() && !outputDir.mkdirs() && !outputDir.isDirectory()) {
+            throw new IllegalStateException("could not create directory " + outputDir);
+        }
+        // keeps the extension, which the converter picks the output format by
+        File partialFile = File.createTempFile(".partial-", "." + FilenameUtils.getExtension(outputFile.getName()), outputDir);
+        try {
+            converter.convert(inputFile, partialFile);
+            outputFile.delete();
+            if (!partialFile.renameTo(outputFile)) {
+                throw new IllegalStateException("could not rename " + partialFile + " to " + outputFile);
+            }
+        } finally {
+            partialFile.delete();
+        }
+        return Status.CONVERTED;
+    }
+
+    private void completed(Item item, Status status, long duration, String error, int total, PrintWriter report) {
+        switch (status) {
+        case CONVERTED:
+            convertedCount.incrementAndGet();
+            break;
+        case SKIPPED:
+            skippedCount.incrementAndGet();
+            break;
+        default:
+            failedCount.incrementAndGet();
+        }
+        int completed = completedCount.incrementAndGet();
+        if (status != Status.SKIPPED) {
+            progress.printf("[%d/%d] %s %s (%dms)%s%n", completed, total, status, item.getInputFile(), duration, error != null ? ": " + error : "");
+        }
+        if (report != null) {
+            synchronized (report) {
+                report.printf("%s\t%s\t%s\t%d\t%s%n", status, item.getInputFile(), item.getOutputFile(), duration, error != null ? error : "");
+            }
+        }
+    }
+
+}
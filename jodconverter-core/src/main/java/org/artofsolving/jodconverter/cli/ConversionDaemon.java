@@ -0,0 +1,211 @@
+//
+// JODConverter - Java OpenDocument Converter
+// Copyright 2004-2012 Mirko Nasato and contributors
+//
+// JODConverter is Open Source software, you can redistribute it and/or
+// modify it under either (at your option) of the following licenses
+//
+// 1. The GNU Lesser General Public License v3 (or later)
+//    -> http://www.gnu.org/licenses/lgpl-3.0.txt
+// 2. The Apache License, Version 2.0
+//    -> http://www.apache.org/licenses/LICENSE-2.0.txt
+//
+package org.artofsolving.jodconverter.cli;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.artofsolving.jodconverter.OfficeDocumentConverter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps office running between invocations of the command line tool, and converts
+ * files on behalf of {@link DaemonClient}s on the same machine.
+ * <p>
+ * Listens on an ephemeral loopback port, which it publishes together with a random
+ * token in a daemon file only readable by the current user; clients must present
+ * the token before any request is accepted. Files are passed by path, so the
+ * daemon reads inputs and writes outputs itself.
+ */
+class ConversionDaemon {
+
+    static final String COMMAND_CONVERT = "CONVERT";
+    static final String COMMAND_STOP = "STOP";
+    static final String RESPONSE_OK = "OK";
+    static final String RESPONSE_FAILED = "FAILED";
+
+    private static final int TOKEN_LENGTH = 16;
+    private static final int HANDSHAKE_TIMEOUT = 10000;
+
+    private final Logger logger = LoggerFactory.getLogger(ConversionDaemon.class);
+
+    private final OfficeDocumentConverter converter;
+    private final File daemonFile;
+    private final String token = createToken();
+    private final ExecutorService connectionExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger threadIndex = new AtomicInteger();
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "DaemonConnectionThread-" + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private volatile ServerSocket serverSocket;
+    private volatile boolean running;
+
+    public ConversionDaemon(OfficeDocumentConverter converter, File daemonFile) {
+        this.converter = converter;
+        this.daemonFile = daemonFile;
+    }
+
+    /**
+     * Accepts requests until {@link #stop()} is called, or a client sends a stop command.
+     */
+    public void run() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        running = true;
+        try {
+            writeDaemonFile(serverSocket.getLocalPort());
+            logger.info("listening on port {}", serverSocket.getLocalPort());
+            while (running) {
+                final Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                } catch (SocketException socketException) {
+                    if (running) {
+                        throw socketException;
+                    }
+                    break; // closed by stop()
+                }
+                connectionExecutor.execute(new Runnable() {
+                    public void run() {
+                        handleConnection(socket);
+                    }
+                });
+            }
+        } finally {
+            stop();
+            connectionExecutor.shutdownNow();
+        }
+        logger.info("stopped");
+    }
+
+    public void stop() {
+        running = false;
+        daemonFile.delete();
+        ServerSocket socket = serverSocket;
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException ioException) {
+                logger.warn("could not close daemon socket", ioException);
+            }
+        }
+    }
+
+    private void handleConnection(Socket socket) {
+        try {
+            socket.setSoTimeout(HANDSHAKE_TIMEOUT);
+            DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            if (!MessageDigest.isEqual(token.getBytes("UTF-8"), input.readUTF().getBytes("UTF-8"))) {
+                logger.warn("rejected connection with an invalid token");
+                return;
+            }
+            // conversions can take any time, as long as the client is willing to wait
+            socket.setSoTimeout(0);
+            while (true) {
+                String command;
+                try {
+                    command = input.readUTF();
+                } catch (EOFException eofException) {
+                    return;
+                }
+                if (COMMAND_CONVERT.equals(command)) {
+                    File inputFile = new File(input.readUTF());
+                    File outputFile = new File(input.readUTF());
+                    try {
+                        converter.convert(inputFile, outputFile);
+                        output.writeUTF(RESPONSE_OK);
+                    } catch (Exception exception) {
+                        logger.warn("conversion failed: " + inputFile, exception);
+                        output.writeUTF(RESPONSE_FAILED);
+                        output.writeUTF(String.valueOf(exception.getMessage()));
+                    }
+                } else if (COMMAND_STOP.equals(command)) {
+                    logger.info("stop requested by client");
+                    output.writeUTF(RESPONSE_OK);
+                    output.flush();
+                    stop();
+                    return;
+                } else {
+                    logger.warn("unknown command: {}", command);
+                    return;
+                }
+                output.flush();
+            }
+        } catch (IOException ioException) {
+            logger.warn("connection failed", ioException);
+        } finally {
+            DaemonClient.closeQuietly(socket);
+        }
+    }
+
+    /**
+     * Writes the port and token to a temporary file readable by its owner only, then
+     * renames it, so that clients never see it half written or with wider permissions.
+     */
+    private void writeDaemonFile(int port) throws IOException {
+        File parent = daemonFile.getAbsoluteFile().getParentFile();
+        File tempFile = File.createTempFile("daemon", ".tmp", parent);
+        try {
+            tempFile.setReadable(false, false);
+            tempFile.setReadable(true, true);
+            tempFile.setWritable(false, false);
+            tempFile.setWritable(true, true);
+            Writer writer = new OutputStreamWriter(new FileOutputStream(tempFile), "UTF-8");
+            try {
+                writer.write(port + "\n" + token + "\n");
+            } finally {
+                writer.close();
+            }
+            daemonFile.delete();
+            if (!tempFile.renameTo(daemonFile)) {
+                throw new IOException("could not write daemon file " + daemonFile);
+            }
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    private static String createToken() {
+        byte[] bytes = new byte[TOKEN_LENGTH];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder token = new StringBuilder();
+        for (byte b : bytes) {
+            token.append(String.format("%02x", b & 0xff));
+        }
+        return token.toString();
+    }
+
+}
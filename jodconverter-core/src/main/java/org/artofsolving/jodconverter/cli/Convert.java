@@ -14,6 +14,8 @@ package org.artofsolving.jodconverter.cli;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -39,6 +41,7 @@ public class Convert {
 
     public static final int STATUS_OK = 0;
     public static final int STATUS_MISSING_INPUT_FILE = 1;
+    public static final int STATUS_CONVERSION_FAILED = 2;
     public static final int STATUS_INVALID_ARGUMENTS = 255;
 
     private static final Option OPTION_OUTPUT_FORMAT = new Option("o", "output-format", true, "output format (e.g. pdf)");
@@ -46,9 +49,18 @@ public class Convert {
     private static final Option OPTION_REGISTRY = new Option("r", "registry", true, "document formats registry configuration file (optional)");
     private static final Option OPTION_TIMEOUT = new Option("t", "timeout", true, "maximum conversion time in seconds (optional; defaults to 120)");
     private static final Option OPTION_USER_PROFILE = new Option("u", "user-profile", true, "use settings from the given user installation dir (optional)");
+    private static final Option OPTION_MANIFEST = new Option("m", "manifest", true, "batch mode: convert the files listed in the given file, one per line, optionally followed by a tab and the output file");
+    private static final Option OPTION_OUTPUT_DIR = new Option("d", "output-dir", true, "batch mode: write outputs for an input directory to this directory (optional; defaults to the input directory)");
+    private static final Option OPTION_PARALLELISM = new Option("j", "parallelism", true, "batch mode: number of office processes, on consecutive ports (optional; defaults to the number of processors)");
+    private static final Option OPTION_REPORT = new Option("R", "report", true, "batch mode: write a tab-separated results report to the given file (optional)");
+    private static final Option OPTION_FORCE = new Option("f", "force", false, "batch mode: convert files even if their output is up to date (optional)");
+    private static final Option OPTION_DAEMON = new Option("D", "daemon", false, "keep running and convert files for later invocations, which forward to the daemon when it is running");
+    private static final Option OPTION_STOP_DAEMON = new Option("S", "stop-daemon", false, "stop a running daemon");
+    private static final Option OPTION_NO_DAEMON = new Option("n", "no-daemon", false, "start office even if a daemon is running (optional)");
     private static final Options OPTIONS = initOptions();
 
     private static final int DEFAULT_OFFICE_PORT = 2002;
+    private static final File DAEMON_FILE = new File(System.getProperty("user.home"), ".jodconverter-daemon");
 
     private static Options initOptions() {
         Options options = new Options();
@@ -57,6 +69,14 @@ public class Convert {
         options.addOption(OPTION_REGISTRY);
         options.addOption(OPTION_TIMEOUT);
         options.addOption(OPTION_USER_PROFILE);
+        options.addOption(OPTION_MANIFEST);
+        options.addOption(OPTION_OUTPUT_DIR);
+        options.addOption(OPTION_PARALLELISM);
+        options.addOption(OPTION_REPORT);
+        options.addOption(OPTION_FORCE);
+        options.addOption(OPTION_DAEMON);
+        options.addOption(OPTION_STOP_DAEMON);
+        options.addOption(OPTION_NO_DAEMON);
         return options;
     }
 
@@ -74,25 +94,70 @@ public class Convert {
             port = Integer.parseInt(commandLine.getOptionValue(OPTION_PORT.getOpt()));
         }
 
+        if (commandLine.hasOption(OPTION_STOP_DAEMON.getOpt())) {
+            stopDaemon();
+            return;
+        }
+
         String[] fileNames = commandLine.getArgs();
-        if ((outputFormat == null && fileNames.length != 2) || fileNames.length < 1) {
+        boolean daemonMode = commandLine.hasOption(OPTION_DAEMON.getOpt());
+        boolean manifestMode = commandLine.hasOption(OPTION_MANIFEST.getOpt());
+        boolean directoryMode = !manifestMode && outputFormat != null && fileNames.length == 1 && new File(fileNames[0]).isDirectory();
+        boolean batchMode = manifestMode || directoryMode;
+        if (!daemonMode && !batchMode && ((outputFormat == null && fileNames.length != 2) || fileNames.length < 1)) {
             String syntax = "java -jar jodconverter-core.jar [options] input-file output-file\n"
-                    + "or [options] -o output-format input-file [input-file...]";
+                    + "or [options] -o output-format input-file [input-file...]\n"
+                    + "or [options] -o output-format [-d output-dir] input-dir\n"
+                    + "or [options] [-o output-format] -m manifest-file\n"
+                    + "or [options] -D | -S";
             HelpFormatter helpFormatter = new HelpFormatter();
             helpFormatter.printHelp(syntax, OPTIONS);
             System.exit(STATUS_INVALID_ARGUMENTS);
         }
 
+        // a custom registry, port, timeout or profile is only known to this invocation,
+        // not to the daemon, which would silently ignore it
+        boolean localOptions = commandLine.hasOption(OPTION_REGISTRY.getOpt()) || commandLine.hasOption(OPTION_PORT.getOpt())
+                || commandLine.hasOption(OPTION_TIMEOUT.getOpt()) || commandLine.hasOption(OPTION_USER_PROFILE.getOpt());
+        if (!daemonMode && !batchMode && !commandLine.hasOption(OPTION_NO_DAEMON.getOpt()) && !localOptions) {
+            DaemonClient daemonClient = DaemonClient.connect(DAEMON_FILE);
+            if (daemonClient != null) {
+                try {
+                    if (outputFormat == null) {
+                        daemonClient.convert(new File(fileNames[0]), new File(fileNames[1]));
+                    } else {
+                        for (int i = 0; i < fileNames.length; i++) {
+                            daemonClient.convert(new File(fileNames[i]), getOutputFile(fileNames[i], outputFormat));
+                        }
+                    }
+                } finally {
+                    daemonClient.close();
+                }
+                return;
+            }
+        }
+
         DocumentFormatRegistry registry;
         if (commandLine.hasOption(OPTION_REGISTRY.getOpt())) {
             File registryFile = new File(commandLine.getOptionValue(OPTION_REGISTRY.getOpt()));
             registry = new JsonDocumentFormatRegistry(FileUtils.readFileToString(registryFile));
         } else {
-            registry = new DefaultDocumentFormatRegistry();
+            registry = DefaultDocumentFormatRegistry.getInstance();
         }
 
         DefaultOfficeManagerConfiguration configuration = new DefaultOfficeManagerConfiguration();
-        configuration.setPortNumber(port);
+        int parallelism = 1;
+        if (batchMode || daemonMode) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+            if (commandLine.hasOption(OPTION_PARALLELISM.getOpt())) {
+                parallelism = Integer.parseInt(commandLine.getOptionValue(OPTION_PARALLELISM.getOpt()));
+            }
+        }
+        int[] portNumbers = new int[parallelism];
+        for (int i = 0; i < parallelism; i++) {
+            portNumbers[i] = port + i;
+        }
+        configuration.setPortNumbers(portNumbers);
         if (commandLine.hasOption(OPTION_TIMEOUT.getOpt())) {
             int timeout = Integer.parseInt(commandLine.getOptionValue(OPTION_TIMEOUT.getOpt()));
             configuration.setTaskExecutionTimeout(timeout * 1000);
@@ -106,21 +171,75 @@ public class Convert {
         officeManager.start();
         OfficeDocumentConverter converter = new OfficeDocumentConverter(officeManager, registry);
         try {
-            if (outputFormat == null) {
+            if (daemonMode) {
+                final ConversionDaemon daemon = new ConversionDaemon(converter, DAEMON_FILE);
+                Runtime.getRuntime().addShutdownHook(new Thread() {
+                    public void run() {
+                        daemon.stop();
+                    }
+                });
+                daemon.run();
+            } else if (batchMode) {
+                List<BatchConversion.Item> items;
+                if (manifestMode) {
+                    items = BatchConversion.fromManifest(new File(commandLine.getOptionValue(OPTION_MANIFEST.getOpt())), outputFormat);
+                } else {
+                    File inputDir = new File(fileNames[0]);
+                    File outputDir = commandLine.hasOption(OPTION_OUTPUT_DIR.getOpt()) ? new File(commandLine.getOptionValue(OPTION_OUTPUT_DIR.getOpt())) : inputDir;
+                    items = BatchConversion.fromDirectory(inputDir, outputDir, outputFormat, registry);
+                }
+                System.out.printf("converting %d files with %d office processes%n", items.size(), parallelism);
+                BatchConversion batchConversion = new BatchConversion(converter, parallelism, System.out);
+                batchConversion.setForce(commandLine.hasOption(OPTION_FORCE.getOpt()));
+                PrintWriter report = null;
+                if (commandLine.hasOption(OPTION_REPORT.getOpt())) {
+                    report = new PrintWriter(commandLine.getOptionValue(OPTION_REPORT.getOpt()), "UTF-8");
+                }
+                boolean succeeded;
+                try {
+                    succeeded = batchConversion.run(items, report);
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                    succeeded = false;
+                } finally {
+                    if (report != null) {
+                        report.close();
+                    }
+                }
+                if (!succeeded) {
+                    officeManager.stop();
+                    System.exit(STATUS_CONVERSION_FAILED);
+                }
+            } else if (outputFormat == null) {
                 File inputFile = new File(fileNames[0]);
                 File outputFile = new File(fileNames[1]);
                 converter.convert(inputFile, outputFile);
             } else {
                 for (int i = 0; i < fileNames.length; i++) {
-                    File inputFile = new File(fileNames[i]);
-                    String outputName = FilenameUtils.getBaseName(fileNames[i]) + "." + outputFormat;
-                    File outputFile = new File(FilenameUtils.getFullPath(fileNames[i]) + outputName);
-                    converter.convert(inputFile, outputFile);
+                    converter.convert(new File(fileNames[i]), getOutputFile(fileNames[i], outputFormat));
                 }
             }
         } finally {
             officeManager.stop();
         }
     }
+
+    private static File getOutputFile(String inputFileName, String outputFormat) {
+        String outputName = FilenameUtils.getBaseName(inputFileName) + "." + outputFormat;
+        return new File(FilenameUtils.getFullPath(inputFileName) + outputName);
+    }
+
+    private static void stopDaemon() throws IOException {
+        DaemonClient daemonClient = DaemonClient.connect(DAEMON_FILE);
+        if (daemonClient == null) {
+            System.err.println("no daemon running");
+            return;
+        }
+        try {
+            daemonClient.stopDaemon();
+        } finally {
+            daemonClient.close();
+        }
+    }
     
 }
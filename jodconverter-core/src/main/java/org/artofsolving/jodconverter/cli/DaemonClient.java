@@ -0,0 +1,105 @@
+//
+// JODConverter - Java OpenDocument Converter
+// Copyright 2004-2012 Mirko Nasato and contributors
+//
+// JODConverter is Open Source software, you can redistribute it and/or
+// modify it under either (at your option) of the following licenses
+//
+// 1. The GNU Lesser General Public License v3 (or later)
+//    -> http://www.gnu.org/licenses/lgpl-3.0.txt
+// 2. The Apache License, Version 2.0
+//    -> http://www.apache.org/licenses/LICENSE-2.0.txt
+//
+package org.artofsolving.jodconverter.cli;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.artofsolving.jodconverter.office.OfficeException;
+
+/**
+ * Forwards conversions to a running {@link ConversionDaemon}.
+ */
+class DaemonClient {
+
+    private static final int CONNECT_TIMEOUT = 1000;
+
+    private final Socket socket;
+    private final DataInputStream input;
+    private final DataOutputStream output;
+
+    private DaemonClient(Socket socket, String token) throws IOException {
+        this.socket = socket;
+        input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        output.writeUTF(token);
+        output.flush();
+    }
+
+    /**
+     * @return a client connected to the daemon described by the given file, or
+     *   <code>null</code> if no daemon is running
+     */
+    public static DaemonClient connect(File daemonFile) {
+        if (!daemonFile.isFile()) {
+            return null;
+        }
+        Socket socket = new Socket();
+        try {
+            @SuppressWarnings("unchecked")
+            List<String> lines = FileUtils.readLines(daemonFile, "UTF-8");
+            if (lines.size() < 2) {
+                return null;
+            }
+            int port = Integer.parseInt(lines.get(0).trim());
+            socket.connect(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), port), CONNECT_TIMEOUT);
+            return new DaemonClient(socket, lines.get(1).trim());
+        } catch (IOException ioException) {
+            // a stale file left behind by a daemon that did not stop cleanly
+            closeQuietly(socket);
+            return null;
+        } catch (NumberFormatException numberFormatException) {
+            closeQuietly(socket);
+            return null;
+        }
+    }
+
+    public void convert(File inputFile, File outputFile) throws IOException, OfficeException {
+        output.writeUTF(ConversionDaemon.COMMAND_CONVERT);
+        // the daemon has a working directory of its own
+        output.writeUTF(inputFile.getAbsolutePath());
+        output.writeUTF(outputFile.getAbsolutePath());
+        output.flush();
+        if (!ConversionDaemon.RESPONSE_OK.equals(input.readUTF())) {
+            throw new OfficeException(input.readUTF());
+        }
+    }
+
+    public void stopDaemon() throws IOException {
+        output.writeUTF(ConversionDaemon.COMMAND_STOP);
+        output.flush();
+        input.readUTF();
+    }
+
+    public void close() {
+        closeQuietly(socket);
+    }
+
+    static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ioException) {
+            // ignore
+        }
+    }
+
+}
@@ -0,0 +1,212 @@
+//
+// JODConverter - Java OpenDocument Converter
+// Copyright 2004-2012 Mirko Nasato and contributors
+//
+// JODConverter is Open Source software, you can redistribute it and/or
+// modify it under either (at your option) of the following licenses
+//
+// 1. The GNU Lesser General Public License v3 (or later)
+//    -> http://www.gnu.org/licenses/lgpl-3.0.txt
+// 2. The Apache License, Version 2.0
+//    -> http://www.apache.org/licenses/LICENSE-2.0.txt
+//
+package org.artofsolving.jodconverter.document;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Which formats can be converted into which, directly or through intermediate formats,
+ * and at what cost.
+ * <p>
+ * There is an edge from format A to format B if A can be loaded, i.e. it has an input
+ * family, and B can store documents of that family. Each edge has a cost: the moving
+ * average of measured conversion times recorded with {@link #recordCost(DocumentFormat, DocumentFormat, long)},
+ * or {@link #DEFAULT_EDGE_COST} until it has been measured. {@link #findRoute(DocumentFormat, DocumentFormat)}
+ * returns the cheapest route of at most {@link #setMaxHops(int) maxHops} conversions.
+ * <p>
+ * Formats are identified by extension, as in the registry the graph was built from.
+ */
+public class ConversionGraph {
+
+    /** the cost assumed for an edge that has not been measured, in milliseconds */
+    public static final long DEFAULT_EDGE_COST = 1000L;
+
+    /** weight of the most recent measurement in the moving average, as 1/n */
+    private static final int COST_AVERAGE_WEIGHT = 5;
+
+    private final Map<String,DocumentFormat> formats = new LinkedHashMap<String,DocumentFormat>();
+    private final Map<String,List<DocumentFormat>> edges = new HashMap<String,List<DocumentFormat>>();
+    private final Map<String,Long> costs = new HashMap<String,Long>();
+    private int maxHops = 2;
+
+    public ConversionGraph(Collection<DocumentFormat> documentFormats) {
+        for (DocumentFormat format : documentFormats) {
+            if (!formats.containsKey(format.getExtension())) {
+                formats.put(format.getExtension(), format);
+            }
+        }
+        for (DocumentFormat source : formats.values()) {
+            List<DocumentFormat> targets = new ArrayList<DocumentFormat>();
+            if (source.getInputFamily() != null) {
+                for (DocumentFormat target : formats.values()) {
+                    if (target != source && target.getStoreProperties(source.getInputFamily()) != null) {
+                        targets.add(target);
+                    }
+                }
+            }
+            edges.put(source.getExtension(), targets);
+        }
+    }
+
+    /**
+     * @param registry a {@link SimpleDocumentFormatRegistry} or a {@link DocumentFormatRegistrySnapshot}
+     * @throws IllegalArgumentException if the registry cannot list its formats
+     */
+    public static ConversionGraph of(DocumentFormatRegistry registry) throws IllegalArgumentException {
+        if (registry instanceof DocumentFormatRegistrySnapshot) {
+            return new ConversionGraph(((DocumentFormatRegistrySnapshot) registry).getFormats());
+        } else if (registry instanceof SimpleDocumentFormatRegistry) {
+            return new ConversionGraph(((SimpleDocumentFormatRegistry) registry).getFormats());
+        }
+        throw new IllegalArgumentException("cannot list the formats of " + registry.getClass().getName());
+    }
+
+    /**
+     * @param maxHops the most conversions a route may take; 1 allows direct conversions only
+     */
+    public synchronized void setMaxHops(int maxHops) {
+        if (maxHops < 1) {
+            throw new IllegalArgumentException("maxHops must be at least 1");
+        }
+        this.maxHops = maxHops;
+    }
+
+    /**
+     * @return the formats the given one can be converted into directly
+     */
+    public List<DocumentFormat> getDirectOutputFormats(DocumentFormat inputFormat) {
+        List<DocumentFormat> targets = edges.get(inputFormat.getExtension());
+        return targets != null ? Collections.unmodifiableList(targets) : Collections.<DocumentFormat>emptyList();
+    }
+
+    /**
+     * @return whether the first format can be converted into the second directly
+     */
+    public boolean hasDirectRoute(DocumentFormat inputFormat, DocumentFormat outputFormat) {
+        for (DocumentFormat target : getDirectOutputFormats(inputFormat)) {
+            if (target.getExtension().equals(outputFormat.getExtension())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the formats the given one can be converted into within maxHops conversions
+     */
+    public synchronized Set<DocumentFormat> getReachableFormats(DocumentFormat inputFormat) {
+        Set<DocumentFormat> reachable = new LinkedHashSet<DocumentFormat>();
+        Set<DocumentFormat> frontier = Collections.singleton(formats.get(inputFormat.getExtension()));
+        for (int hop = 0; hop < maxHops && !frontier.isEmpty(); hop++) {
+            Set<DocumentFormat> next = new LinkedHashSet<DocumentFormat>();
+            for (DocumentFormat format : frontier) {
+                if (format == null) {
+                    continue;
+                }
+                for (DocumentFormat target : edges.get(format.getExtension())) {
+                    if (reachable.add(target)) {
+                        next.add(target);
+                    }
+                }
+            }
+            frontier = next;
+        }
+        reachable.remove(formats.get(inputFormat.getExtension()));
+        return reachable;
+    }
+
+    /**
+     * Finds the cheapest route; among routes of equal cost, the one with fewest hops.
+     *
+     * @return the formats along the route, starting with the input format and ending
+     *   with the output format, or <code>null</code> if there is no route
+     */
+    public synchronized List<DocumentFormat> findRoute(DocumentFormat inputFormat, DocumentFormat outputFormat) {
+        String source = inputFormat.getExtension();
+        String target = outputFormat.getExtension();
+        if (!formats.containsKey(source) || !formats.containsKey(target)) {
+            return null;
+        }
+        // Bellman-Ford limited to maxHops rounds, which keeps the hop limit exact; the
+        // predecessors are kept per round, as a later round can lower the cost of a
+        // format that an earlier round's cheapest route to the target went through
+        Map<String,Long> cost = new HashMap<String,Long>();
+        List<Map<String,String>> previous = new ArrayList<Map<String,String>>();
+        cost.put(source, 0L);
+        Set<String> updated = Collections.singleton(source);
+        for (int hop = 0; hop < maxHops && !updated.isEmpty(); hop++) {
+            Map<String,Long> roundCost = new HashMap<String,Long>(cost);
+            Map<String,String> roundPrevious = new HashMap<String,String>(hop > 0 ? previous.get(hop - 1) : Collections.<String,String>emptyMap());
+            Set<String> roundUpdated = new LinkedHashSet<String>();
+            for (String from : updated) {
+                for (DocumentFormat to : edges.get(from)) {
+                    long newCost = cost.get(from) + getCost(from, to.getExtension());
+                    Long currentCost = roundCost.get(to.getExtension());
+                    if (currentCost == null || newCost < currentCost) {
+                        roundCost.put(to.getExtension(), newCost);
+                        roundPrevious.put(to.getExtension(), from);
+                        roundUpdated.add(to.getExtension());
+                    }
+                }
+            }
+            cost = roundCost;
+            previous.add(roundPrevious);
+            updated = roundUpdated;
+        }
+        if (!cost.containsKey(target) || source.equals(target)) {
+            return null;
+        }
+        // the cost of each format as of a round was reached from its predecessor's
+        // cost as of the round before
+        LinkedList<DocumentFormat> route = new LinkedList<DocumentFormat>();
+        route.addFirst(formats.get(target));
+        String step = target;
+        for (int round = previous.size() - 1; !step.equals(source); round--) {
+            step = previous.get(round).get(step);
+            route.addFirst(formats.get(step));
+        }
+        return route;
+    }
+
+    /**
+     * Records how long a conversion from one format to another took, excluding any
+     * time waiting for an office process.
+     */
+    public synchronized void recordCost(DocumentFormat inputFormat, DocumentFormat outputFormat, long duration) {
+        String key = inputFormat.getExtension() + ">" + outputFormat.getExtension();
+        Long average = costs.get(key);
+        costs.put(key, average == null ? duration : average + (duration - average) / COST_AVERAGE_WEIGHT);
+    }
+
+    /**
+     * @return the cost of a direct conversion, measured or assumed, in milliseconds
+     */
+    public synchronized long getCost(DocumentFormat inputFormat, DocumentFormat outputFormat) {
+        return getCost(inputFormat.getExtension(), outputFormat.getExtension());
+    }
+
+    private long getCost(String from, String to) {
+        Long cost = costs.get(from + ">" + to);
+        return cost != null ? cost : DEFAULT_EDGE_COST;
+    }
+
+}
@@ -18,6 +18,19 @@ import java.util.Map;
 
 public class DefaultDocumentFormatRegistry extends SimpleDocumentFormatRegistry {
 
+	/**
+	 * @return an immutable snapshot of the default formats, built once per JVM and
+	 *   shared by everyone; create a new DefaultDocumentFormatRegistry instead to
+	 *   customise the formats
+	 */
+	public static DocumentFormatRegistrySnapshot getInstance() {
+		return InstanceHolder.INSTANCE;
+	}
+
+	private static class InstanceHolder {
+		static final DocumentFormatRegistrySnapshot INSTANCE = DocumentFormatRegistrySnapshot.of(new DefaultDocumentFormatRegistry());
+	}
+
 	public DefaultDocumentFormatRegistry() {
 		DocumentFormat pdf = new DocumentFormat("Portable Document Format", "pdf", "application/pdf");
 		pdf.setStoreProperties(DocumentFamily.TEXT, Collections.singletonMap("FilterName", "writer_pdf_Export"));
@@ -23,6 +23,7 @@ public class DocumentFormat {
     private DocumentFamily inputFamily;
     private Map<String,?> loadProperties;
     private Map<DocumentFamily,Map<String,?>> storePropertiesByFamily;
+    private volatile int version;
 
     public DocumentFormat() {
         // default
@@ -40,6 +41,7 @@ public class DocumentFormat {
 
     public void setName(String name) {
         this.name = name;
+        version++;
     }
 
     public String getExtension() {
@@ -48,6 +50,7 @@ public class DocumentFormat {
 
     public void setExtension(String extension) {
         this.extension = extension;
+        version++;
     }
 
     public String getMediaType() {
@@ -56,6 +59,7 @@ public class DocumentFormat {
 
     public void setMediaType(String mediaType) {
         this.mediaType = mediaType;
+        version++;
     }
 
     public DocumentFamily getInputFamily() {
@@ -64,6 +68,7 @@ public class DocumentFormat {
 
     public void setInputFamily(DocumentFamily documentFamily) {
         this.inputFamily = documentFamily;
+        version++;
     }
 
     public Map<String, ?> getLoadProperties() {
@@ -72,6 +77,7 @@ public class DocumentFormat {
 
     public void setLoadProperties(Map<String,?> loadProperties) {
         this.loadProperties = loadProperties;
+        version++;
     }
 
     public Map<DocumentFamily, Map<String, ?>> getStorePropertiesByFamily() {
@@ -80,6 +86,7 @@ public class DocumentFormat {
 
     public void setStorePropertiesByFamily(Map<DocumentFamily, Map<String,?>> storePropertiesByFamily) {
         this.storePropertiesByFamily = storePropertiesByFamily;
+        version++;
     }
 
     public void setStoreProperties(DocumentFamily family, Map<String,?> storeProperties) {
@@ -87,6 +94,18 @@ public class DocumentFormat {
             storePropertiesByFamily = new HashMap<DocumentFamily,Map<String,?>>();
         }
         storePropertiesByFamily.put(family, storeProperties);
+        version++;
+    }
+
+    /**
+     * Incremented whenever a setter is called, so that anything derived from this
+     * format can tell it is out of date. Modifying the property maps in place is
+     * not tracked; set them again instead.
+     *
+     * @return the number of changes made to this format so far
+     */
+    public int getVersion() {
+        return version;
     }
 
     public Map<String,?> getStoreProperties(DocumentFamily family) {
@@ -0,0 +1,366 @@
+//
+// JODConverter - Java OpenDocument Converter
+// Copyright 2004-2012 Mirko Nasato and contributors
+//
+// JODConverter is Open Source software, you can redistribute it and/or
+// modify it under either (at your option) of the following licenses
+//
+// 1. The GNU Lesser General Public License v3 (or later)
+//    -> http://www.gnu.org/licenses/lgpl-3.0.txt
+// 2. The Apache License, Version 2.0
+//    -> http://www.apache.org/licenses/LICENSE-2.0.txt
+//
+package org.artofsolving.jodconverter.document;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable copy of a registry, safe to share between any number of converters
+ * and threads. Lookups by extension and media type, and the output formats of each
+ * family, are all computed once when the snapshot is taken.
+ * <p>
+ * A snapshot can also be written in a compact binary form with {@link #writeTo(OutputStream)},
+ * which {@link #readFrom(InputStream)} loads much faster than the equivalent JSON.
+ */
+public final class DocumentFormatRegistrySnapshot implements DocumentFormatRegistry {
+
+    private static final int MAGIC = 0x4A4F4446; // "JODF"
+    private static final int VERSION = 2;
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_INTEGER = 2;
+    private static final byte TYPE_LONG = 3;
+    private static final byte TYPE_DOUBLE = 4;
+    private static final byte TYPE_BOOLEAN = 5;
+    private static final byte TYPE_SHORT = 6;
+    private static final byte TYPE_MAP = 7;
+    private static final byte TYPE_ARRAY = 8;
+
+    private final List<DocumentFormat> formats;
+    private final Map<String,DocumentFormat> formatsByExtension = new HashMap<String,DocumentFormat>();
+    private final Map<String,DocumentFormat> formatsByMediaType = new HashMap<String,DocumentFormat>();
+    private final Map<DocumentFamily,Set<DocumentFormat>> outputFormatsByFamily = new EnumMap<DocumentFamily,Set<DocumentFormat>>(DocumentFamily.class);
+
+    private DocumentFormatRegistrySnapshot(List<DocumentFormat> sourceFormats) {
+        List<DocumentFormat> frozenFormats = new ArrayList<DocumentFormat>(sourceFormats.size());
+        for (DocumentFormat sourceFormat : sourceFormats) {
+            DocumentFormat format = new FrozenDocumentFormat(sourceFormat);
+            frozenFormats.add(format);
+            // looked up in lower case
+            if (format.getExtension() != null && !formatsByExtension.containsKey(format.getExtension().toLowerCase())) {
+                formatsByExtension.put(format.getExtension().toLowerCase(), format);
+            }
+            if (format.getMediaType() != null && !formatsByMediaType.containsKey(format.getMediaType())) {
+                formatsByMediaType.put(format.getMediaType(), format);
+            }
+        }
+        formats = Collections.unmodifiableList(frozenFormats);
+        for (DocumentFamily family : DocumentFamily.values()) {
+            Set<DocumentFormat> outputFormats = new LinkedHashSet<DocumentFormat>();
+            for (DocumentFormat format : formats) {
+                if (format.getStoreProperties(family) != null) {
+                    outputFormats.add(format);
+                }
+            }
+            outputFormatsByFamily.put(family, Collections.unmodifiableSet(outputFormats));
+        }
+    }
+
+    public static DocumentFormatRegistrySnapshot of(SimpleDocumentFormatRegistry registry) {
+        return new DocumentFormatRegistrySnapshot(registry.getFormats());
+    }
+
+    /**
+     * @return all formats, in the order they were added to the original registry
+     */
+    public List<DocumentFormat> getFormats() {
+        return formats;
+    }
+
+    public DocumentFormat getFormatByExtension(String extension) {
+        if (extension == null) {
+            return null;
+        }
+        return formatsByExtension.get(extension.toLowerCase());
+    }
+
+    public DocumentFormat getFormatByMediaType(String mediaType) {
+        if (mediaType == null) {
+            return null;
+        }
+        return formatsByMediaType.get(mediaType);
+    }
+
+    /**
+     * @return an unmodifiable set
+     */
+    public Set<DocumentFormat> getOutputFormats(DocumentFamily family) {
+        return outputFormatsByFamily.get(family);
+    }
+
+    public void writeTo(OutputStream outputStream) throws IOException {
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(outputStream));
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeInt(formats.size());
+        for (DocumentFormat format : formats) {
+            writeString(output, format.getName());
+            writeString(output, format.getExtension());
+            writeString(output, format.getMediaType());
+            output.writeByte(format.getInputFamily() != null ? format.getInputFamily().ordinal() : -1);
+            writeValue(output, format.getLoadProperties());
+            Map<DocumentFamily,Map<String,?>> storePropertiesByFamily = format.getStorePropertiesByFamily();
+            if (storePropertiesByFamily == null) {
+                output.writeByte(-1);
+            } else {
+                output.writeByte(storePropertiesByFamily.size());
+                for (Map.Entry<DocumentFamily,Map<String,?>> entry : storePropertiesByFamily.entrySet()) {
+                    output.writeByte(entry.getKey().ordinal());
+                    writeValue(output, entry.getValue());
+                }
+            }
+        }
+        output.flush();
+    }
+
+    /**
+     * @throws IOException if the input is not a snapshot written by {@link #writeTo(OutputStream)}
+     *   of a compatible version
+     */
+    public static DocumentFormatRegistrySnapshot readFrom(InputStream inputStream) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(inputStream));
+        if (input.readInt() != MAGIC) {
+            throw new IOException("not a document format registry snapshot");
+        }
+        int version = input.readInt();
+        if (version != VERSION) {
+            throw new IOException("unsupported snapshot version: " + version);
+        }
+        DocumentFamily[] families = DocumentFamily.values();
+        int formatCount = input.readInt();
+        List<DocumentFormat> formats = new ArrayList<DocumentFormat>(formatCount);
+        for (int i = 0; i < formatCount; i++) {
+            DocumentFormat format = new DocumentFormat(readString(input), readString(input), readString(input));
+            byte inputFamily = input.readByte();
+            if (inputFamily >= 0) {
+                format.setInputFamily(families[inputFamily]);
+            }
+            format.setLoadProperties(readMap(input));
+            byte familyCount = input.readByte();
+            for (int j = 0; j < familyCount; j++) {
+                DocumentFamily family = families[input.readByte()];
+                format.setStoreProperties(family, readMap(input));
+            }
+            formats.add(format);
+        }
+        return new DocumentFormatRegistrySnapshot(formats);
+    }
+
+    private static void writeString(DataOutputStream output, String string) throws IOException {
+        output.writeBoolean(string != null);
+        if (string != null) {
+            output.writeUTF(string);
+        }
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+
+    private static void writeValue(DataOutputStream output, Object value) throws IOException {
+        if (value == null) {
+            output.writeByte(TYPE_NULL);
+        } else if (value instanceof String) {
+            output.writeByte(TYPE_STRING);
+            output.writeUTF((String) value);
+        } else if (value instanceof Integer) {
+            output.writeByte(TYPE_INTEGER);
+            output.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            output.writeByte(TYPE_LONG);
+            output.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            output.writeByte(TYPE_DOUBLE);
+            output.writeDouble((Double) value);
+        } else if (value instanceof Boolean) {
+            output.writeByte(TYPE_BOOLEAN);
+            output.writeBoolean((Boolean) value);
+        } else if (value instanceof Short) {
+            output.writeByte(TYPE_SHORT);
+            output.writeShort((Short) value);
+        } else if (value instanceof Map) {
+            Map<?,?> map = (Map<?,?>) value;
+            output.writeByte(TYPE_MAP);
+            output.writeInt(map.size());
+            for (Map.Entry<?,?> entry : map.entrySet()) {
+                output.writeUTF((String) entry.getKey());
+                writeValue(output, entry.getValue());
+            }
+        } else if (value instanceof Object[]) {
+            Object[] array = (Object[]) value;
+            output.writeByte(TYPE_ARRAY);
+            output.writeInt(array.length);
+            for (Object element : array) {
+                writeValue(output, element);
+            }
+        } else {
+            throw new IOException("cannot write property value of type " + value.getClass().getName());
+        }
+    }
+
+    private static Map<String,?> readMap(DataInputStream input) throws IOException {
+        Object value = readValue(input);
+        if (value != null && !(value instanceof Map)) {
+            throw new IOException("expected properties, found " + value.getClass().getName());
+        }
+        @SuppressWarnings("unchecked")
+        Map<String,?> map = (Map<String,?>) value;
+        return map;
+    }
+
+    private static Object readValue(DataInputStream input) throws IOException {
+        byte type = input.readByte();
+        switch (type) {
+        case TYPE_NULL:
+            return null;
+        case TYPE_STRING:
+            return input.readUTF();
+        case TYPE_INTEGER:
+            return input.readInt();
+        case TYPE_LONG:
+            return input.readLong();
+        case TYPE_DOUBLE:
+            return input.readDouble();
+        case TYPE_BOOLEAN:
+            return input.readBoolean();
+        case TYPE_SHORT:
+            return input.readShort();
+        case TYPE_MAP:
+            int size = input.readInt();
+            Map<String,Object> map = new LinkedHashMap<String,Object>();
+            for (int i = 0; i < size; i++) {
+                map.put(input.readUTF(), readValue(input));
+            }
+            return map;
+        case TYPE_ARRAY:
+            Object[] array = new Object[input.readInt()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = readValue(input);
+            }
+            return array;
+        default:
+            throw new IOException("unknown value type: " + type);
+        }
+    }
+
+    /**
+     * Copies property maps deeply into unmodifiable ones; arrays are copied too, but
+     * cannot be made unmodifiable.
+     */
+    private static Object freeze(Object value) {
+        if (value instanceof Map) {
+            Map<String,Object> map = new LinkedHashMap<String,Object>();
+            for (Map.Entry<?,?> entry : ((Map<?,?>) value).entrySet()) {
+                map.put((String) entry.getKey(), freeze(entry.getValue()));
+            }
+            return Collections.unmodifiableMap(map);
+        } else if (value instanceof Object[]) {
+            Object[] array = ((Object[]) value).clone();
+            for (int i = 0; i < array.length; i++) {
+                array[i] = freeze(array[i]);
+            }
+            return array;
+        }
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String,?> freezeMap(Map<String,?> map) {
+        return (Map<String,?>) freeze(map);
+    }
+
+    private static class FrozenDocumentFormat extends DocumentFormat {
+
+        private final boolean frozen;
+
+        public FrozenDocumentFormat(DocumentFormat format) {
+            super(format.getName(), format.getExtension(), format.getMediaType());
+            super.setInputFamily(format.getInputFamily());
+            super.setLoadProperties(freezeMap(format.getLoadProperties()));
+            if (format.getStorePropertiesByFamily() != null) {
+                Map<DocumentFamily,Map<String,?>> storePropertiesByFamily = new EnumMap<DocumentFamily,Map<String,?>>(DocumentFamily.class);
+                for (Map.Entry<DocumentFamily,Map<String,?>> entry : format.getStorePropertiesByFamily().entrySet()) {
+                    storePropertiesByFamily.put(entry.getKey(), freezeMap(entry.getValue()));
+                }
+                super.setStorePropertiesByFamily(Collections.unmodifiableMap(storePropertiesByFamily));
+            }
+            frozen = true;
+        }
+
+        private void checkNotFrozen() {
+            if (frozen) {
+                throw new UnsupportedOperationException("formats in a registry snapshot cannot be modified");
+            }
+        }
+
+        @Override
+        public void setName(String name) {
+            checkNotFrozen();
+            super.setName(name);
+        }
+
+        @Override
+        public void setExtension(String extension) {
+            checkNotFrozen();
+            super.setExtension(extension);
+        }
+
+        @Override
+        public void setMediaType(String mediaType) {
+            checkNotFrozen();
+            super.setMediaType(mediaType);
+        }
+
+        @Override
+        public void setInputFamily(DocumentFamily documentFamily) {
+            checkNotFrozen();
+            super.setInputFamily(documentFamily);
+        }
+
+        @Override
+        public void setLoadProperties(Map<String,?> loadProperties) {
+            checkNotFrozen();
+            super.setLoadProperties(loadProperties);
+        }
+
+        @Override
+        public void setStorePropertiesByFamily(Map<DocumentFamily,Map<String,?>> storePropertiesByFamily) {
+            checkNotFrozen();
+            super.setStorePropertiesByFamily(storePropertiesByFamily);
+        }
+
+        @Override
+        public void setStoreProperties(DocumentFamily family, Map<String,?> storeProperties) {
+            checkNotFrozen();
+            super.setStoreProperties(family, storeProperties);
+        }
+
+    }
+
+}
@@ -12,62 +12,40 @@
 //
 package org.artofsolving.jodconverter.document;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
 
-import org.apache.commons.io.IOUtils;
-import org.json.JSONArray;
 import org.json.JSONException;
-import org.json.JSONObject;
 
+/**
+ * Reads document formats from a JSON array like the one in <code>document-formats.js</code>.
+ * The input is parsed as a stream, so large custom registries are not first read
+ * into memory as a whole.
+ */
 public class JsonDocumentFormatRegistry extends SimpleDocumentFormatRegistry {
 
     public JsonDocumentFormatRegistry(InputStream input) throws JSONException, IOException {
-        readJsonArray(IOUtils.toString(input));
+        readJsonArray(new BufferedReader(new InputStreamReader(input, "UTF-8")));
     }
 
     public JsonDocumentFormatRegistry(String source) throws JSONException {
-        readJsonArray(source);
-    }
-
-    private void readJsonArray(String source) throws JSONException {
-        JSONArray array = new JSONArray(source);
-        for (int i = 0; i < array.length(); i++) {
-            JSONObject jsonFormat = array.getJSONObject(i);
-            DocumentFormat format = new DocumentFormat();
-            format.setName(jsonFormat.getString("name"));
-            format.setExtension(jsonFormat.getString("extension"));
-            format.setMediaType(jsonFormat.getString("mediaType"));
-            if (jsonFormat.has("inputFamily")) {
-                format.setInputFamily(DocumentFamily.valueOf(jsonFormat.getString("inputFamily")));
-            }
-            if (jsonFormat.has("loadProperties")) {
-                format.setLoadProperties(toJavaMap(jsonFormat.getJSONObject("loadProperties")));
-            }
-            if (jsonFormat.has("storePropertiesByFamily")) {
-                JSONObject jsonStorePropertiesByFamily = jsonFormat.getJSONObject("storePropertiesByFamily");
-                for (String key : JSONObject.getNames(jsonStorePropertiesByFamily)) {
-                    Map<String,?> storeProperties = toJavaMap(jsonStorePropertiesByFamily.getJSONObject(key));
-                    format.setStoreProperties(DocumentFamily.valueOf(key), storeProperties);
-                }
-            }
-            addFormat(format);
+        try {
+            readJsonArray(new StringReader(source));
+        } catch (IOException ioException) {
+            throw new IllegalStateException("cannot happen reading a String", ioException);
         }
     }
 
-    private Map<String,?> toJavaMap(JSONObject jsonMap) throws JSONException {
-        Map<String,Object> map = new HashMap<String,Object>();
-        for (String key : JSONObject.getNames(jsonMap)) {
-            Object value = jsonMap.get(key);
-            if (value instanceof JSONObject) {
-                map.put(key, toJavaMap((JSONObject) value));
-            } else {
-                map.put(key, value);
+    private void readJsonArray(Reader reader) throws JSONException, IOException {
+        new JsonFormatReader(reader).readFormats(new JsonFormatReader.FormatHandler() {
+            public void format(DocumentFormat format) {
+                addFormat(format);
             }
-        }
-        return map;
+        });
     }
 
 }
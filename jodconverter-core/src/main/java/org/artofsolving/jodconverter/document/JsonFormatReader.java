@@ -0,0 +1,268 @@
+//
+// JODConverter - Java OpenDocument Converter
+// Copyright 2004-2012 Mirko Nasato and contributors
+//
+// JODConverter is Open Source software, you can redistribute it and/or
+// modify it under either (at your option) of the following licenses
+//
+// 1. The GNU Lesser General Public License v3 (or later)
+//    -> http://www.gnu.org/licenses/lgpl-3.0.txt
+// 2. The Apache License, Version 2.0
+//    -> http://www.apache.org/licenses/LICENSE-2.0.txt
+//
+package org.artofsolving.jodconverter.document;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONException;
+
+/**
+ * Reads a JSON array of document formats one token at a time, creating each
+ * {@link DocumentFormat} as soon as it has been read, rather than parsing the whole
+ * input into a tree and copying it.
+ * <p>
+ * Values are typed the way org.json types them: integral numbers become Integer or
+ * Long, other numbers Double; nested objects become maps and arrays become
+ * <code>Object[]</code>, ready to be passed to office.
+ */
+class JsonFormatReader {
+
+    public interface FormatHandler {
+        void format(DocumentFormat format);
+    }
+
+    private final Reader reader;
+    private int lookahead = -2;
+    private int position;
+
+    /**
+     * @param reader should be buffered, as it is read a character at a time
+     */
+    public JsonFormatReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    public void readFormats(FormatHandler handler) throws JSONException, IOException {
+        expect('[');
+        if (peekNonWhitespace() == ']') {
+            next();
+        } else {
+            do {
+                handler.format(readFormat());
+            } while (nextSeparator(']'));
+        }
+        if (peekNonWhitespace() != -1) {
+            throw syntaxError("unexpected content after the array");
+        }
+    }
+
+    private DocumentFormat readFormat() throws JSONException, IOException {
+        DocumentFormat format = new DocumentFormat();
+        expect('{');
+        if (peekNonWhitespace() == '}') {
+            next();
+        } else {
+            do {
+                String key = readString();
+                expect(':');
+                if ("name".equals(key)) {
+                    format.setName(readString());
+                } else if ("extension".equals(key)) {
+                    format.setExtension(readString());
+                } else if ("mediaType".equals(key)) {
+                    format.setMediaType(readString());
+                } else if ("inputFamily".equals(key)) {
+                    format.setInputFamily(DocumentFamily.valueOf(readString()));
+                } else if ("loadProperties".equals(key)) {
+                    format.setLoadProperties(readObject());
+                } else if ("storePropertiesByFamily".equals(key)) {
+                    Map<String,Object> storePropertiesByFamily = readObject();
+                    for (Map.Entry<String,Object> entry : storePropertiesByFamily.entrySet()) {
+                        if (!(entry.getValue() instanceof Map)) {
+                            throw syntaxError("store properties for " + entry.getKey() + " must be an object");
+                        }
+                        @SuppressWarnings("unchecked")
+                        Map<String,?> storeProperties = (Map<String,?>) entry.getValue();
+                        format.setStoreProperties(DocumentFamily.valueOf(entry.getKey()), storeProperties);
+                    }
+                } else {
+                    readValue();
+                }
+            } while (nextSeparator('}'));
+        }
+        if (format.getName() == null || format.getExtension() == null || format.getMediaType() == null) {
+            throw syntaxError("format needs a name, an extension and a mediaType");
+        }
+        return format;
+    }
+
+    private Map<String,Object> readObject() throws JSONException, IOException {
+        expect('{');
+        Map<String,Object> map = new LinkedHashMap<String,Object>();
+        if (peekNonWhitespace() == '}') {
+            next();
+            return map;
+        }
+        do {
+            String key = readString();
+            expect(':');
+            map.put(key, readValue());
+        } while (nextSeparator('}'));
+        return map;
+    }
+
+    private Object[] readArray() throws JSONException, IOException {
+        expect('[');
+        List<Object> list = new ArrayList<Object>();
+        if (peekNonWhitespace() == ']') {
+            next();
+            return list.toArray();
+        }
+        do {
+            list.add(readValue());
+        } while (nextSeparator(']'));
+        return list.toArray();
+    }
+
+    private Object readValue() throws JSONException, IOException {
+        int c = peekNonWhitespace();
+        switch (c) {
+        case '"':
+            return readString();
+        case '{':
+            return readObject();
+        case '[':
+            return readArray();
+        default:
+            return readLiteral();
+        }
+    }
+
+    private Object readLiteral() throws JSONException, IOException {
+        StringBuilder literal = new StringBuilder();
+        for (int c = peek(); c != -1 && ",:]} \t\r\n".indexOf(c) < 0; c = peek()) {
+            literal.append((char) next());
+        }
+        String text = literal.toString();
+        if (text.equals("true")) {
+            return Boolean.TRUE;
+        } else if (text.equals("false")) {
+            return Boolean.FALSE;
+        } else if (text.equals("null")) {
+            return null;
+        }
+        try {
+            if (text.indexOf('.') >= 0 || text.indexOf('e') >= 0 || text.indexOf('E') >= 0) {
+                return Double.valueOf(text);
+            }
+            long value = Long.parseLong(text);
+            if (value == (int) value) {
+                return Integer.valueOf((int) value);
+            }
+            return Long.valueOf(value);
+        } catch (NumberFormatException numberFormatException) {
+            throw syntaxError("invalid value: " + text);
+        }
+    }
+
+    private String readString() throws JSONException, IOException {
+        expect('"');
+        StringBuilder string = new StringBuilder();
+        while (true) {
+            int c = next();
+            switch (c) {
+            case -1:
+                throw syntaxError("unterminated string");
+            case '"':
+                return string.toString();
+            case '\\':
+                c = next();
+                switch (c) {
+                case 'b': string.append('\b'); break;
+                case 't': string.append('\t'); break;
+                case 'n': string.append('\n'); break;
+                case 'f': string.append('\f'); break;
+                case 'r': string.append('\r'); break;
+                case 'u':
+                    char[] hex = new char[4];
+                    for (int i = 0; i < 4; i++) {
+                        int h = next();
+                        if (h == -1) {
+                            throw syntaxError("unterminated string");
+                        }
+                        hex[i] = (char) h;
+                    }
+                    try {
+                        string.append((char) Integer.parseInt(new String(hex), 16));
+                    } catch (NumberFormatException numberFormatException) {
+                        throw syntaxError("invalid escape: \\u" + new String(hex));
+                    }
+                    break;
+                case -1:
+                    throw syntaxError("unterminated string");
+                default:
+                    string.append((char) c);
+                }
+                break;
+            default:
+                string.append((char) c);
+            }
+        }
+    }
+
+    /**
+     * @return <code>true</code> after a comma, <code>false</code> after the closing character
+     */
+    private boolean nextSeparator(char close) throws JSONException, IOException {
+        int c = peekNonWhitespace();
+        next();
+        if (c == ',') {
+            return true;
+        } else if (c == close) {
+            return false;
+        }
+        throw syntaxError("expected ',' or '" + close + "'");
+    }
+
+    private void expect(char expected) throws JSONException, IOException {
+        if (peekNonWhitespace() != expected) {
+            throw syntaxError("expected '" + expected + "'");
+        }
+        next();
+    }
+
+    private int peekNonWhitespace() throws IOException {
+        int c = peek();
+        while (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+            next();
+            c = peek();
+        }
+        return c;
+    }
+
+    private int peek() throws IOException {
+        if (lookahead == -2) {
+            lookahead = reader.read();
+        }
+        return lookahead;
+    }
+
+    private int next() throws IOException {
+        int c = peek();
+        lookahead = -2;
+        if (c != -1) {
+            position++;
+        }
+        return c;
+    }
+
+    private JSONException syntaxError(String message) {
+        return new JSONException(message + " at character " + position);
+    }
+
+}
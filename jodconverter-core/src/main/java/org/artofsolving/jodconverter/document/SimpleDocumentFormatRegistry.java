@@ -13,43 +13,53 @@
 package org.artofsolving.jodconverter.document;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public class SimpleDocumentFormatRegistry implements DocumentFormatRegistry {
 
 	private List<DocumentFormat> documentFormats = new ArrayList<DocumentFormat>();
+	private Map<String,DocumentFormat> formatsByExtension = new HashMap<String,DocumentFormat>();
+	private Map<String,DocumentFormat> formatsByMediaType = new HashMap<String,DocumentFormat>();
 
+	/**
+	 * Adds a format; if another format with the same extension or media type was
+	 * added before, that one is still the one found by it.
+	 */
 	public void addFormat(DocumentFormat documentFormat) {
 		documentFormats.add(documentFormat);
+		// looked up in lower case
+		if (documentFormat.getExtension() != null && !formatsByExtension.containsKey(documentFormat.getExtension().toLowerCase())) {
+			formatsByExtension.put(documentFormat.getExtension().toLowerCase(), documentFormat);
+		}
+		if (documentFormat.getMediaType() != null && !formatsByMediaType.containsKey(documentFormat.getMediaType())) {
+			formatsByMediaType.put(documentFormat.getMediaType(), documentFormat);
+		}
+	}
+
+	/**
+	 * @return all formats, in the order they were added
+	 */
+	public List<DocumentFormat> getFormats() {
+		return Collections.unmodifiableList(documentFormats);
 	}
 
 	public DocumentFormat getFormatByExtension(String extension) {
         if (extension == null) {
             return null;
         }
-        String lowerExtension = extension.toLowerCase();
-        //TODO keep a documentByExtension map instead
-		for (DocumentFormat format : documentFormats) {
-			if (format.getExtension().equals(lowerExtension)) {
-				return format;
-			}
-		}
-		return null;
+		return formatsByExtension.get(extension.toLowerCase());
 	}
 
 	public DocumentFormat getFormatByMediaType(String mediaType) {
         if (mediaType == null) {
             return null;
         }
-        //TODO keep a documentByMediaType map instead
-        for (DocumentFormat format : documentFormats) {
-            if (format.getMediaType().equals(mediaType)) {
-                return format;
-            }
-        }
-	    return null;
+	    return formatsByMediaType.get(mediaType);
 	}
 
 	public Set<DocumentFormat> getOutputFormats(DocumentFamily family) {
@@ -0,0 +1,32 @@
+//
+// JODConverter - Java OpenDocument Converter
+// Copyright 2004-2012 Mirko Nasato and contributors
+//
+// JODConverter is Open Source software, you can redistribute it and/or
+// modify it under either (at your option) of the following licenses
+//
+// 1. The GNU Lesser General Public License v3 (or later)
+//    -> http://www.gnu.org/licenses/lgpl-3.0.txt
+// 2. The Apache License, Version 2.0
+//    -> http://www.apache.org/licenses/LICENSE-2.0.txt
+//
+package org.artofsolving.jodconverter.office;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The cause of a task failing because it exceeded a timeout estimated by
+ * {@link TaskTimeoutEstimator}, shorter than the taskExecutionTimeout.
+ * <p>
+ * The document may simply be slower to convert than those seen so far, so unlike
+ * exceeding the taskExecutionTimeout this is not held against it.
+ */
+class AdaptiveTimeoutException extends TimeoutException {
+
+    private static final long serialVersionUID = 1L;
+
+    public AdaptiveTimeoutException(long timeout) {
+        super("task did not complete within adaptive timeout of " + timeout + "ms");
+    }
+
+}
@@ -29,6 +29,7 @@ public class DefaultOfficeManagerConfiguration {
 	private OfficeConnectionProtocol connectionProtocol = OfficeConnectionProtocol.SOCKET;
 	private int[] portNumbers = new int[] { 2002 };
 	private String[] pipeNames = new String[] { "office" };
+	private boolean pipeNamesSet = false;
 	private String[] runAsArgs = null;
 	private File templateProfileDir = null;
 	private File workDir = new File(System.getProperty("java.io.tmpdir"));
@@ -36,6 +37,13 @@ public class DefaultOfficeManagerConfiguration {
 	private long taskExecutionTimeout = 120000L; // 2 minutes
 	private int maxTasksPerProcess = 200;
 	private long retryTimeout = DEFAULT_RETRY_TIMEOUT;
+	private int quarantineThreshold = 3;
+	private int quarantineSize = 1000;
+	private long quarantineExpiry = 3600000L; // 1 hour
+	private long minTaskExecutionTimeout = 0L; // adaptive timeout disabled
+	private int maxTaskRetries = 1;
+	private long taskRetryDelay = 1000L; // 1 second
+	private boolean virtualThreadsEnabled = false;
 
 	private final AtomicReference<ProcessManager> processManager = new AtomicReference<ProcessManager>(); // lazily initialised
 
@@ -72,6 +80,7 @@ public class DefaultOfficeManagerConfiguration {
     public DefaultOfficeManagerConfiguration setPipeName(String pipeName) throws NullPointerException {
 		checkArgumentNotNull("pipeName", pipeName);
 		this.pipeNames = new String[] { pipeName };
+		this.pipeNamesSet = true;
 		return this;
 	}
 
@@ -79,6 +88,7 @@ public class DefaultOfficeManagerConfiguration {
 		checkArgumentNotNull("pipeNames", pipeNames);
 		checkArgument("pipeNames", pipeNames.length > 0, "must not be empty");
 		this.pipeNames = pipeNames;
+		this.pipeNamesSet = true;
 		return this;
 	}
 
@@ -153,6 +163,102 @@ public class DefaultOfficeManagerConfiguration {
 		return this;
 	}
 
+	/**
+	 * Sets how many times a task for the same input document may end with its office process being
+	 * restarted, because of a lost connection or a task timeout, before that document is rejected
+	 * without being executed. Set to 0 to never reject documents. Defaults to 3.
+	 * 
+	 * @param quarantineThreshold
+	 * @return
+	 */
+    public DefaultOfficeManagerConfiguration setQuarantineThreshold(int quarantineThreshold) {
+		checkArgument("quarantineThreshold", quarantineThreshold >= 0, "must not be negative");
+		this.quarantineThreshold = quarantineThreshold;
+		return this;
+	}
+
+	/**
+	 * Sets how many failing input documents to keep track of. Defaults to 1000.
+	 * 
+	 * @param quarantineSize
+	 * @return
+	 */
+    public DefaultOfficeManagerConfiguration setQuarantineSize(int quarantineSize) {
+		checkArgument("quarantineSize", quarantineSize > 0, "must be positive");
+		this.quarantineSize = quarantineSize;
+		return this;
+	}
+
+	/**
+	 * Sets how long a failing input document is remembered after its last failure, in milliseconds.
+	 * Defaults to 1 hour.
+	 * 
+	 * @param quarantineExpiry
+	 * @return
+	 */
+    public DefaultOfficeManagerConfiguration setQuarantineExpiry(long quarantineExpiry) {
+		this.quarantineExpiry = quarantineExpiry;
+		return this;
+	}
+
+	/**
+	 * Enables adaptive task timeouts: instead of always waiting for the taskExecutionTimeout, each
+	 * conversion times out after a multiple of the time recent conversions between the same formats
+	 * took, scaled to its input size, but never sooner than this minimum nor later than the
+	 * taskExecutionTimeout. Hung documents are then detected much sooner. Set to 0 to always use
+	 * the taskExecutionTimeout. Defaults to 0.
+	 * 
+	 * @param minTaskExecutionTimeout
+	 * @return
+	 */
+    public DefaultOfficeManagerConfiguration setMinTaskExecutionTimeout(long minTaskExecutionTimeout) {
+		checkArgument("minTaskExecutionTimeout", minTaskExecutionTimeout >= 0, "must not be negative");
+		this.minTaskExecutionTimeout = minTaskExecutionTimeout;
+		return this;
+	}
+
+	/**
+	 * Sets how many times a conversion whose office process was lost while executing it is retried
+	 * on another process. Tasks that timed out, or that already wrote to an output stream, are never
+	 * retried. Set to 0 to disable retries. Defaults to 1.
+	 * 
+	 * @param maxTaskRetries
+	 * @return
+	 */
+    public DefaultOfficeManagerConfiguration setMaxTaskRetries(int maxTaskRetries) {
+		checkArgument("maxTaskRetries", maxTaskRetries >= 0, "must not be negative");
+		this.maxTaskRetries = maxTaskRetries;
+		return this;
+	}
+
+	/**
+	 * Sets how long to wait before the first retry of a task, in milliseconds. The delay doubles
+	 * with each further retry. Defaults to 1 second.
+	 * 
+	 * @param taskRetryDelay
+	 * @return
+	 */
+    public DefaultOfficeManagerConfiguration setTaskRetryDelay(long taskRetryDelay) {
+		checkArgument("taskRetryDelay", taskRetryDelay >= 0, "must not be negative");
+		this.taskRetryDelay = taskRetryDelay;
+		return this;
+	}
+
+	/**
+	 * Runs the threads the office manager uses internally, one executing tasks and one managing
+	 * the lifecycle of each office process, as virtual rather than platform threads on runtimes
+	 * that support them (Java 21 and later); ignored on older runtimes. Callers are never blocked
+	 * inside monitors, so the manager can also be driven from large numbers of virtual threads
+	 * either way. Defaults to false.
+	 * 
+	 * @param virtualThreadsEnabled
+	 * @return
+	 */
+    public DefaultOfficeManagerConfiguration setVirtualThreadsEnabled(boolean virtualThreadsEnabled) {
+		this.virtualThreadsEnabled = virtualThreadsEnabled;
+		return this;
+	}
+
 	public OfficeManager buildOfficeManager() throws IllegalStateException {
 		if (officeHome == null) {
 			throw new IllegalStateException("officeHome not set and could not be auto-detected");
@@ -169,12 +275,29 @@ public class DefaultOfficeManagerConfiguration {
 		}
 		final ProcessManager processManager = getProcessManager();
 
+        OfficeConnectionProtocol connectionProtocol = this.connectionProtocol;
+        String[] pipeNames = this.pipeNames;
+        if (connectionProtocol == OfficeConnectionProtocol.AUTO) {
+            // the pool must be the same size whichever protocol is picked
+            if (pipeNames.length != portNumbers.length) {
+                if (pipeNamesSet) {
+                    throw new IllegalStateException("the AUTO connectionProtocol needs as many pipeNames as portNumbers");
+                }
+                pipeNames = new String[portNumbers.length];
+                for (int i = 0; i < portNumbers.length; i++) {
+                    pipeNames[i] = "office-" + portNumbers[i];
+                }
+            }
+            connectionProtocol = OfficeUtils.isPipeAvailable() ? OfficeConnectionProtocol.PIPE : OfficeConnectionProtocol.SOCKET;
+        }
         int numInstances = connectionProtocol == OfficeConnectionProtocol.PIPE ? pipeNames.length : portNumbers.length;
         UnoUrl[] unoUrls = new UnoUrl[numInstances];
 		for (int i = 0; i < numInstances; i++) {
 			unoUrls[i] = (connectionProtocol == OfficeConnectionProtocol.PIPE) ? UnoUrl.pipe(pipeNames[i]) : UnoUrl.socket(portNumbers[i]);
 		}
-        return new ProcessPoolOfficeManager(officeHome, unoUrls, runAsArgs, templateProfileDir, workDir, retryTimeout, taskQueueTimeout, taskExecutionTimeout, maxTasksPerProcess, processManager);
+        DocumentQuarantine quarantine = quarantineThreshold > 0 ? new DocumentQuarantine(quarantineThreshold, quarantineSize, quarantineExpiry) : null;
+        TaskTimeoutEstimator taskTimeoutEstimator = minTaskExecutionTimeout > 0 ? new TaskTimeoutEstimator(Math.min(minTaskExecutionTimeout, taskExecutionTimeout), taskExecutionTimeout) : null;
+        return new ProcessPoolOfficeManager(officeHome, unoUrls, runAsArgs, templateProfileDir, workDir, retryTimeout, taskQueueTimeout, taskExecutionTimeout, maxTasksPerProcess, processManager, quarantine, maxTaskRetries, taskRetryDelay, taskTimeoutEstimator, virtualThreadsEnabled);
 	}
 
 	public ProcessManager getProcessManager() {
@@ -0,0 +1,139 @@
+//
+// JODConverter - Java OpenDocument Converter
+// Copyright 2004-2012 Mirko Nasato and contributors
+//
+// JODConverter is Open Source software, you can redistribute it and/or
+// modify it under either (at your option) of the following licenses
+//
+// 1. The GNU Lesser General Public License v3 (or later)
+//    -> http://www.gnu.org/licenses/lgpl-3.0.txt
+// 2. The Apache License, Version 2.0
+//    -> http://www.apache.org/licenses/LICENSE-2.0.txt
+//
+package org.artofsolving.jodconverter.office;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps track of input documents whose tasks ended with the office process
+ * being lost or restarted, and rejects them once they have done so a given
+ * number of times.
+ * <p>
+ * Without this, a client retrying a document that crashes office would crash
+ * every process in the pool in turn. Documents are recognised by a fingerprint
+ * of their size and content, so renaming or re-uploading them does not help.
+ * The number of documents tracked is bounded, least recently seen first out,
+ * and strikes expire some time after the last one.
+ */
+class DocumentQuarantine {
+
+    private static final int FINGERPRINT_SAMPLE_SIZE = 64 * 1024;
+
+    private static class Strikes {
+        int count;
+        long lastStrikeTime;
+    }
+
+    private final int maxStrikes;
+    private final long expiry;
+    private final Map<String,Strikes> strikesByFingerprint;
+
+    /**
+     * @param maxStrikes the number of failures after which a document is rejected
+     * @param maxDocuments the number of documents to keep track of
+     * @param expiry how long to remember a document after its last failure, in milliseconds
+     */
+    public DocumentQuarantine(int maxStrikes, final int maxDocuments, long expiry) {
+        this.maxStrikes = maxStrikes;
+        this.expiry = expiry;
+        strikesByFingerprint = new LinkedHashMap<String,Strikes>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String,Strikes> eldest) {
+                return size() > maxDocuments;
+            }
+        };
+    }
+
+    /**
+     * @throws OfficeException if the document has been quarantined
+     */
+    public synchronized void checkAdmitted(String fingerprint) throws OfficeException {
+        Strikes strikes = getStrikes(fingerprint);
+        if (strikes != null && strikes.count >= maxStrikes) {
+            throw new OfficeException(String.format("input document quarantined after %d failed attempts", strikes.count));
+        }
+    }
+
+    /**
+     * @return whether the document is now quarantined
+     */
+    public synchronized boolean recordStrike(String fingerprint) {
+        Strikes strikes = getStrikes(fingerprint);
+        if (strikes == null) {
+            strikes = new Strikes();
+            strikesByFingerprint.put(fingerprint, strikes);
+        }
+        strikes.count++;
+        strikes.lastStrikeTime = currentTimeMillis();
+        return strikes.count >= maxStrikes;
+    }
+
+    public synchronized int size() {
+        return strikesByFingerprint.size();
+    }
+
+    private Strikes getStrikes(String fingerprint) {
+        Strikes strikes = strikesByFingerprint.get(fingerprint);
+        if (strikes != null && currentTimeMillis() - strikes.lastStrikeTime > expiry) {
+            strikesByFingerprint.remove(fingerprint);
+            return null;
+        }
+        return strikes;
+    }
+
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Fingerprints a document by its size and a digest of its first and last
+     * 64KB, which is enough to tell documents apart without reading large ones
+     * in full.
+     */
+    public static String fingerprint(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException noSuchAlgorithmException) {
+            throw new IllegalStateException(noSuchAlgorithmException);
+        }
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            long length = input.length();
+            byte[] buffer = new byte[(int) Math.min(FINGERPRINT_SAMPLE_SIZE, length)];
+            input.readFully(buffer);
+            digest.update(buffer);
+            if (length > FINGERPRINT_SAMPLE_SIZE) {
+                input.seek(Math.max(FINGERPRINT_SAMPLE_SIZE, length - FINGERPRINT_SAMPLE_SIZE));
+                int tailLength = (int) (length - input.getFilePointer());
+                input.readFully(buffer, 0, tailLength);
+                digest.update(buffer, 0, tailLength);
+            }
+            StringBuilder fingerprint = new StringBuilder(Long.toString(length)).append(':');
+            for (byte b : digest.digest()) {
+                fingerprint.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return fingerprint.toString();
+        } finally {
+            input.close();
+        }
+    }
+
+}
@@ -0,0 +1,40 @@
+//
+// JODConverter - Java OpenDocument Converter
+// Copyright 2004-2012 Mirko Nasato and contributors
+//
+// JODConverter is Open Source software, you can redistribute it and/or
+// modify it under either (at your option) of the following licenses
+//
+// 1. The GNU Lesser General Public License v3 (or later)
+//    -> http://www.gnu.org/licenses/lgpl-3.0.txt
+// 2. The Apache License, Version 2.0
+//    -> http://www.apache.org/licenses/LICENSE-2.0.txt
+//
+package org.artofsolving.jodconverter.office;
+
+import java.io.File;
+
+/**
+ * An {@link OfficeTask} that processes an input document.
+ * <p>
+ * Knowing the input lets an {@link OfficeManager} recognise documents that
+ * repeatedly cause office to crash or hang, whatever file name they are
+ * submitted under, and retry tasks that failed through no fault of their own.
+ */
+public interface DocumentTask extends OfficeTask {
+
+    File getInputFile();
+
+    /**
+     * @return whether the task can safely be executed again, on another office
+     *   process, after failing part way through
+     */
+    boolean isRetryable();
+
+    /**
+     * @return what the task converts from and to, e.g. "doc&gt;pdf", so that statistics
+     *   can be kept per type of task; <code>null</code> if not known
+     */
+    String getConversionType();
+
+}
@@ -12,28 +12,31 @@
 //
 package org.artofsolving.jodconverter.office;
 
-import java.net.ConnectException;
-
 /**
- * {@link OfficeManager} implementation that connects to an external Office process.
+ * {@link OfficeManager} implementation that connects to one or more external Office processes.
  * <p>
- * The external Office process needs to be started manually, e.g. from the command line with
+ * The external Office processes need to be started manually, e.g. from the command line with
  * 
  * <pre>
  * soffice -accept="socket,host=127.0.0.1,port=2002;urp;"
  * </pre>
  * <p>
- * Since this implementation does not manage the Office process, it does not support auto-restarting the process if it exits unexpectedly.
+ * Since this implementation does not manage the Office processes, it does not support auto-restarting them if they exit unexpectedly.
  * <p>
- * It will however auto-reconnect to the external process if the latter is manually restarted.
+ * It will however reconnect in the background, with an increasing delay between attempts, as soon as a connection is lost, so that a
+ * process restarted by other means, e.g. a container supervisor, is used again without waiting for a task to fail.
  * <p>
- * This {@link OfficeManager} implementation basically provides the same behaviour as JODConverter 2.x, including using <em>synchronized</em> blocks for serialising office
- * operations.
+ * Tasks execute up to <em>maxTasksPerConnection</em> at a time on each process, each on the least busy connected process. With
+ * several processes and one task per process this gives the same throughput as the managed pool. A task that does not complete
+ * within the <em>taskExecutionTimeout</em> drops its connection, as the process cannot be restarted from here.
  */
-class ExternalOfficeManager implements OfficeManager {
+class ExternalOfficeManager extends RemoteOfficeManager {
 
-	private final OfficeConnection connection;
-	private final boolean connectOnStart;
+	public static final long DEFAULT_TASK_QUEUE_TIMEOUT = 30000L;
+	public static final long DEFAULT_TASK_EXECUTION_TIMEOUT = 120000L;
+	public static final long DEFAULT_HEALTH_CHECK_INTERVAL = 10000L;
+	public static final long DEFAULT_RECONNECT_DELAY = 1000L;
+	public static final long DEFAULT_MAX_RECONNECT_DELAY = 60000L;
 
 	/**
 	 * @param unoUrl
@@ -42,45 +45,14 @@ class ExternalOfficeManager implements OfficeManager {
 	 *            {@link OfficeTask} is executed.
 	 */
 	public ExternalOfficeManager(UnoUrl unoUrl, boolean connectOnStart) {
-		connection = new OfficeConnection(unoUrl);
-		this.connectOnStart = connectOnStart;
-	}
-
-	public void start() throws OfficeException {
-		if (connectOnStart) {
-			synchronized (connection) {
-				connect();
-			}
-		}
-	}
-
-	public void stop() {
-		synchronized (connection) {
-			if (connection.isConnected()) {
-				connection.disconnect();
-			}
-		}
-	}
-
-	public void execute(OfficeTask task) throws OfficeException {
-		synchronized (connection) {
-			if (!connection.isConnected()) {
-				connect();
-			}
-			task.execute(connection);
-		}
-	}
-
-	private void connect() {
-		try {
-			connection.connect();
-		} catch (ConnectException connectException) {
-			throw new OfficeException("could not connect to external office process", connectException);
-		}
+		this(new UnoUrl[] { unoUrl }, connectOnStart, 1, DEFAULT_TASK_QUEUE_TIMEOUT, DEFAULT_TASK_EXECUTION_TIMEOUT, DEFAULT_RECONNECT_DELAY,
+		        DEFAULT_MAX_RECONNECT_DELAY);
 	}
 
-	public boolean isRunning() {
-		return connection.isConnected();
+	public ExternalOfficeManager(UnoUrl[] unoUrls, boolean connectOnStart, int maxTasksPerConnection, long taskQueueTimeout, long taskExecutionTimeout,
+	        long reconnectDelay, long maxReconnectDelay) {
+		super(unoUrls, connectOnStart, maxTasksPerConnection, taskQueueTimeout, taskExecutionTimeout, DEFAULT_HEALTH_CHECK_INTERVAL, reconnectDelay,
+		        maxReconnectDelay);
 	}
 
 }
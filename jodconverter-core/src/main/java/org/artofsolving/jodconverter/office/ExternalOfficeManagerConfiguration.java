@@ -15,9 +15,14 @@ package org.artofsolving.jodconverter.office;
 public class ExternalOfficeManagerConfiguration {
 
     private OfficeConnectionProtocol connectionProtocol = OfficeConnectionProtocol.SOCKET;
-    private int portNumber = 2002;
-    private String pipeName = "office";
+    private int[] portNumbers = new int[] { 2002 };
+    private String[] pipeNames = new String[] { "office" };
     private boolean connectOnStart = true;
+    private int maxTasksPerConnection = 1;
+    private long taskQueueTimeout = ExternalOfficeManager.DEFAULT_TASK_QUEUE_TIMEOUT;
+    private long taskExecutionTimeout = ExternalOfficeManager.DEFAULT_TASK_EXECUTION_TIMEOUT;
+    private long reconnectDelay = ExternalOfficeManager.DEFAULT_RECONNECT_DELAY;
+    private long maxReconnectDelay = ExternalOfficeManager.DEFAULT_MAX_RECONNECT_DELAY;
 
     public ExternalOfficeManagerConfiguration setConnectionProtocol(OfficeConnectionProtocol connectionProtocol) {
         this.connectionProtocol = connectionProtocol;
@@ -25,12 +30,76 @@ public class ExternalOfficeManagerConfiguration {
     }
 
     public ExternalOfficeManagerConfiguration setPortNumber(int portNumber) {
-        this.portNumber = portNumber;
+        this.portNumbers = new int[] { portNumber };
+        return this;
+    }
+
+    /**
+     * Connects to several office processes, listening on the given ports.
+     */
+    public ExternalOfficeManagerConfiguration setPortNumbers(int... portNumbers) throws IllegalArgumentException {
+        if (portNumbers == null || portNumbers.length == 0) {
+            throw new IllegalArgumentException("portNumbers must not be empty");
+        }
+        this.portNumbers = portNumbers;
         return this;
     }
 
     public ExternalOfficeManagerConfiguration setPipeName(String pipeName) {
-        this.pipeName = pipeName;
+        this.pipeNames = new String[] { pipeName };
+        return this;
+    }
+
+    public ExternalOfficeManagerConfiguration setPipeNames(String... pipeNames) throws IllegalArgumentException {
+        if (pipeNames == null || pipeNames.length == 0) {
+            throw new IllegalArgumentException("pipeNames must not be empty");
+        }
+        this.pipeNames = pipeNames;
+        return this;
+    }
+
+    /**
+     * Sets how many tasks may execute at the same time on each office process. Defaults to 1,
+     * which serialises tasks per process like the managed pool does.
+     */
+    public ExternalOfficeManagerConfiguration setMaxTasksPerConnection(int maxTasksPerConnection) throws IllegalArgumentException {
+        if (maxTasksPerConnection < 1) {
+            throw new IllegalArgumentException("maxTasksPerConnection must be positive");
+        }
+        this.maxTasksPerConnection = maxTasksPerConnection;
+        return this;
+    }
+
+    /**
+     * Sets how long a task waits for a connection when all are busy or down. Defaults to 30 seconds.
+     */
+    public ExternalOfficeManagerConfiguration setTaskQueueTimeout(long taskQueueTimeout) {
+        this.taskQueueTimeout = taskQueueTimeout;
+        return this;
+    }
+
+    /**
+     * Sets how long a task may execute before its connection is dropped. Defaults to 2 minutes.
+     */
+    public ExternalOfficeManagerConfiguration setTaskExecutionTimeout(long taskExecutionTimeout) throws IllegalArgumentException {
+        if (taskExecutionTimeout <= 0) {
+            throw new IllegalArgumentException("taskExecutionTimeout must be positive");
+        }
+        this.taskExecutionTimeout = taskExecutionTimeout;
+        return this;
+    }
+
+    /**
+     * Sets how long to wait after a failed connection attempt before the next one, in milliseconds.
+     * The delay doubles with each further failure, up to the given maximum. Defaults to 1 second and
+     * 1 minute.
+     */
+    public ExternalOfficeManagerConfiguration setReconnectDelay(long reconnectDelay, long maxReconnectDelay) throws IllegalArgumentException {
+        if (reconnectDelay <= 0 || maxReconnectDelay < reconnectDelay) {
+            throw new IllegalArgumentException("reconnectDelay must be positive and not more than maxReconnectDelay");
+        }
+        this.reconnectDelay = reconnectDelay;
+        this.maxReconnectDelay = maxReconnectDelay;
         return this;
     }
 
@@ -40,8 +109,15 @@ public class ExternalOfficeManagerConfiguration {
     }
 
     public OfficeManager buildOfficeManager() {
-        UnoUrl unoUrl = connectionProtocol == OfficeConnectionProtocol.SOCKET ? UnoUrl.socket(portNumber) : UnoUrl.pipe(pipeName);
-        return new ExternalOfficeManager(unoUrl, connectOnStart);
+        if (connectionProtocol == OfficeConnectionProtocol.AUTO) {
+            throw new IllegalStateException("connectionProtocol must be SOCKET or PIPE, as used by the external office processes");
+        }
+        boolean pipe = connectionProtocol == OfficeConnectionProtocol.PIPE;
+        UnoUrl[] unoUrls = new UnoUrl[pipe ? pipeNames.length : portNumbers.length];
+        for (int i = 0; i < unoUrls.length; i++) {
+            unoUrls[i] = pipe ? UnoUrl.pipe(pipeNames[i]) : UnoUrl.socket(portNumbers[i]);
+        }
+        return new ExternalOfficeManager(unoUrls, connectOnStart, maxTasksPerConnection, taskQueueTimeout, taskExecutionTimeout, reconnectDelay, maxReconnectDelay);
     }
 
 }
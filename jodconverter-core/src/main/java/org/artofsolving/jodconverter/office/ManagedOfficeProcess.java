@@ -13,9 +13,10 @@
 package org.artofsolving.jodconverter.office;
 
 import java.net.ConnectException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -25,13 +26,19 @@ import com.sun.star.lang.DisposedException;
 class ManagedOfficeProcess {
 
 	private static final Integer EXIT_CODE_NEW_INSTALLATION = Integer.valueOf(81);
+	/** how long an idle lifecycle thread is kept; processes are only restarted now and then */
+	private static final long LIFECYCLE_THREAD_KEEP_ALIVE = 10000L;
 
 	private final ManagedOfficeProcessSettings settings;
 
 	private final OfficeProcess process;
 	private final OfficeConnection connection;
 
-	private ExecutorService executor = Executors.newSingleThreadExecutor(new NamedThreadFactory("OfficeProcessThread"));
+	/**
+	 * Serialises lifecycle operations, which callers wait for. They are not run on the
+	 * waiting thread itself, so that interrupting it cannot leave a process half started.
+	 */
+	private final ThreadPoolExecutor executor;
 
 	private final Logger logger = LoggerFactory.getLogger(ManagedOfficeProcess.class);
 
@@ -40,6 +47,9 @@ class ManagedOfficeProcess {
 		process = new OfficeProcess(settings.getOfficeHome(), settings.getUnoUrl(), settings.getRunAsArgs(), settings.getTemplateProfileDir(), settings.getWorkDir(), settings
 				.getProcessManager());
 		connection = new OfficeConnection(settings.getUnoUrl());
+		executor = new ThreadPoolExecutor(1, 1, LIFECYCLE_THREAD_KEEP_ALIVE, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+				new NamedThreadFactory("OfficeProcessThread", true, settings.isVirtualThreadsEnabled()));
+		executor.allowCoreThreadTimeOut(true);
 	}
 
 	public OfficeConnection getConnection() {
@@ -68,7 +78,7 @@ class ManagedOfficeProcess {
 		try {
 			future.get();
 		} catch (Exception exception) {
-			throw new OfficeException("failed to start and connect", exception);
+			throw new OfficeException("failed to stop", exception);
 		}
 	}
 
@@ -113,6 +123,7 @@ class ManagedOfficeProcess {
 			public void run() {
 				try {
 					doEnsureProcessExited();
+					logRecentOutput();
 					doStartProcessAndConnect();
 				} catch (OfficeException officeException) {
 					logger.error("could not restart process", officeException);
@@ -122,7 +133,14 @@ class ManagedOfficeProcess {
 		try {
 			future.get();
 		} catch (Exception exception) {
-			throw new OfficeException("failed to restart due to timeout", exception);
+			throw new OfficeException("failed to restart due to lost connection", exception);
+		}
+	}
+
+	private void logRecentOutput() {
+		String recentOutput = process.getRecentOutput();
+		if (recentOutput.trim().length() > 0) {
+			logger.warn("last output of lost process:\n" + recentOutput);
 		}
 	}
 
@@ -15,33 +15,61 @@ package org.artofsolving.jodconverter.office;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.lang.Thread.UncaughtExceptionHandler;
+import java.lang.reflect.Method;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * A {@link ThreadFactory} that allows for custom thread names
+ * <p>
+ * Can create virtual threads instead of platform threads on runtimes that have them
+ * (Java 21 and later). They are looked up by reflection so that the library still
+ * runs on older runtimes, where platform threads are created instead.
  */
-class NamedThreadFactory implements ThreadFactory {
+public class NamedThreadFactory implements ThreadFactory {
 
     private static final AtomicInteger threadIndex = new AtomicInteger(0);
 	private static final Logger logger = LoggerFactory.getLogger(NamedThreadFactory.class);
 
+    /** Thread.ofVirtual(), Thread.Builder.name(String) and Thread.Builder.unstarted(Runnable), or null */
+    private static final Method[] virtualThreadMethods = findVirtualThreadMethods();
+
     private final String baseName;
     private final boolean daemon;
+    private final boolean virtual;
 
     public NamedThreadFactory(String baseName) {
         this(baseName, true);
     }
 
     public NamedThreadFactory(String baseName, boolean daemon) {
+        this(baseName, daemon, false);
+    }
+
+    /**
+     * @param virtual whether to create virtual threads if the runtime supports them;
+     *   virtual threads are always daemon threads
+     */
+    public NamedThreadFactory(String baseName, boolean daemon, boolean virtual) {
         this.baseName = baseName;
         this.daemon = daemon;
+        this.virtual = virtual && virtualThreadMethods != null;
+    }
+
+    public static boolean isVirtualThreadSupported() {
+        return virtualThreadMethods != null;
     }
 
     public Thread newThread(Runnable runnable) {
-        Thread thread = new Thread(runnable, baseName + "-" + threadIndex.getAndIncrement());
-        thread.setDaemon(daemon);
+        String name = baseName + "-" + threadIndex.getAndIncrement();
+        Thread thread;
+        if (virtual) {
+            thread = newVirtualThread(runnable, name);
+        } else {
+            thread = new Thread(runnable, name);
+            thread.setDaemon(daemon);
+        }
 		thread.setUncaughtExceptionHandler(new UncaughtExceptionHandler() {
 			@Override
 			public void uncaughtException(Thread t, Throwable e) {
@@ -51,4 +79,30 @@ class NamedThreadFactory implements ThreadFactory {
         return thread;
     }
 
+    private static Thread newVirtualThread(Runnable runnable, String name) {
+        try {
+            Object builder = virtualThreadMethods[0].invoke(null);
+            builder = virtualThreadMethods[1].invoke(builder, name);
+            return (Thread) virtualThreadMethods[2].invoke(builder, runnable);
+        } catch (Exception exception) {
+            throw new IllegalStateException("could not create virtual thread", exception);
+        }
+    }
+
+    private static Method[] findVirtualThreadMethods() {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            // a preview feature on Java 19 and 20, which throws unless enabled
+            ofVirtual.invoke(null);
+            return new Method[] {
+                ofVirtual,
+                builderClass.getMethod("name", String.class),
+                builderClass.getMethod("unstarted", Runnable.class)
+            };
+        } catch (Exception exception) {
+            return null;  // not supported by this runtime
+        }
+    }
+
 }
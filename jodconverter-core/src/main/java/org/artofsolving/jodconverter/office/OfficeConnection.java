@@ -16,6 +16,7 @@ import java.net.ConnectException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,6 +46,7 @@ class OfficeConnection implements OfficeContext {
     private final List<OfficeConnectionEventListener> connectionEventListeners = new ArrayList<OfficeConnectionEventListener>();
 
     private volatile boolean connected = false;
+    private final ReentrantLock disconnectLock = new ReentrantLock();
 
     private XEventListener bridgeListener = new XEventListener() {
         public void disposing(EventObject event) {
@@ -98,13 +100,22 @@ class OfficeConnection implements OfficeContext {
         }
     }
 
+    public UnoUrl getUnoUrl() {
+        return unoUrl;
+    }
+
     public boolean isConnected() {
         return connected;
     }
 
-    public synchronized void disconnect() {
-        logger.info("disconnecting: '{}'", unoUrl);
-        bridgeComponent.dispose();
+    public void disconnect() {
+        disconnectLock.lock();
+        try {
+            logger.info("disconnecting: '{}'", unoUrl);
+            bridgeComponent.dispose();
+        } finally {
+            disconnectLock.unlock();
+        }
     }
 
     public Object getService(String serviceName) {
@@ -12,4 +12,12 @@
 //
 package org.artofsolving.jodconverter.office;
 
-public enum OfficeConnectionProtocol { PIPE, SOCKET }
\ No newline at end of file
+/**
+ * How to connect to office processes. {@link #PIPE} avoids the TCP stack and tends to
+ * have lower round-trip latency, but needs the native jpipe library from the office
+ * install on the java.library.path; {@link #AUTO} uses it when available and falls
+ * back to {@link #SOCKET} otherwise. With {@link #AUTO} the port numbers decide how
+ * many processes are started; unless as many pipe names are set, pipes are named
+ * after the ports, e.g. <em>office-2002</em>.
+ */
+public enum OfficeConnectionProtocol { PIPE, SOCKET, AUTO }
\ No newline at end of file
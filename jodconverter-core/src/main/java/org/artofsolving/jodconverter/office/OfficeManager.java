@@ -22,6 +22,19 @@ public interface OfficeManager {
 
     void execute(OfficeTask task) throws OfficeException;
 
+    /**
+     * Executes a task, giving up if it cannot be completed by the given deadline.
+     * The deadline covers both waiting for an office process and executing the
+     * task; a task still waiting when its deadline passes is dropped without ever
+     * reaching office.
+     * 
+     * @param task
+     * @param deadline the time by which the task must have completed, as returned by
+     *   {@link System#currentTimeMillis()}; {@link Long#MAX_VALUE} for none
+     * @throws DeadlineExceededException if the deadline passed first
+     */
+    void execute(OfficeTask task, long deadline) throws OfficeException;
+
     void start() throws OfficeException;
 
     void stop() throws OfficeException;
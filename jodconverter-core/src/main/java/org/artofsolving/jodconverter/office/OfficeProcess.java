@@ -29,6 +29,7 @@ import org.artofsolving.jodconverter.process.ProcessManager;
 import org.artofsolving.jodconverter.process.ProcessQuery;
 import org.artofsolving.jodconverter.util.PlatformUtils;
 import org.artofsolving.jodconverter.util.ProcessLoggingUtils;
+import org.artofsolving.jodconverter.util.ProcessOutput;
 
 class OfficeProcess {
 
@@ -41,6 +42,7 @@ class OfficeProcess {
 
 	private Process process;
 	private long pid = PID_UNKNOWN;
+	private ProcessOutput output;
 
 	private final Logger logger = LoggerFactory.getLogger(OfficeProcess.class);
 	private final Logger loggerProcessOutput = LoggerFactory.getLogger(logger.getName() + ".ProcessOutput");
@@ -90,7 +92,7 @@ class OfficeProcess {
 		logger.info(String.format("starting process with acceptString '{}' and profileDir '{}'", unoUrl, instanceProfileDir));
 		process = processBuilder.start();
 		pid = processManager.findPid(processQuery);
-		ProcessLoggingUtils.logProcessOutput(process, pid, loggerProcessOutput);
+		output = ProcessLoggingUtils.logProcessOutput(process, pid, loggerProcessOutput);
 		if (pid == PID_NOT_FOUND) {
             throw new IllegalStateException("process with acceptString '" + unoUrl.getAcceptString() + "' started but its pid could not be found");
 		}
@@ -159,6 +161,13 @@ class OfficeProcess {
 		environment.put(pathKey, path);
 	}
 
+	/**
+	 * @return the last few KB the process wrote to stdout and stderr, or an empty string
+	 */
+	public String getRecentOutput() {
+		return output != null ? output.getRecentOutput() : "";
+	}
+
 	public boolean isRunning() {
 		if (process == null) {
 			return false;
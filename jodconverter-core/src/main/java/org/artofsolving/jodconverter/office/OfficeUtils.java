@@ -20,6 +20,8 @@ import java.util.Map;
 import org.artofsolving.jodconverter.util.PlatformUtils;
 
 import com.sun.star.beans.PropertyValue;
+import com.sun.star.lib.connections.pipe.PipeConnection;
+import com.sun.star.lib.util.NativeLibraryLoader;
 import com.sun.star.uno.UnoRuntime;
 
 public class OfficeUtils {
@@ -104,4 +106,17 @@ public class OfficeUtils {
         }
     }
 
+    /**
+     * @return whether the native library needed for {@link OfficeConnectionProtocol#PIPE}
+     *   connections can be loaded
+     */
+    public static boolean isPipeAvailable() {
+        try {
+            NativeLibraryLoader.loadLibrary(PipeConnection.class.getClassLoader(), "jpipe");
+            return true;
+        } catch (UnsatisfiedLinkError unsatisfiedLinkError) {
+            return false;
+        }
+    }
+
 }
@@ -14,41 +14,68 @@
 package org.artofsolving.jodconverter.office;
 
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 class PooledOfficeManager implements OfficeManager {
 
+    /**
+     * The lifecycle of the managed process as seen by this manager. Transitions are
+     * made with compare-and-set, so that e.g. a lost connection and a task timeout
+     * happening together restart the process only once, and a disconnection that is
+     * part of a deliberate restart or stop is not mistaken for a crash.
+     */
+    private enum State {
+        /** not started, or stopped */
+        STOPPED,
+        /** connected and accepting tasks */
+        AVAILABLE,
+        /** restarting after maxTasksPerProcess was reached */
+        RECYCLING,
+        /** restarting after a lost connection or a task timeout */
+        RESTARTING,
+        /** starting, or stopping for good */
+        TRANSITIONING
+    }
+
     private final PooledOfficeManagerSettings settings;
     private final ManagedOfficeProcess managedOfficeProcess;
     private final SuspendableThreadPoolExecutor taskExecutor;
+    /** enforces the execution timeout of tasks whose caller stopped waiting at its deadline */
+    private final ScheduledThreadPoolExecutor watchdog;
 
-    private volatile boolean stopping = false;
-    private int taskCount;
-    private Future<?> currentTask;
+    private final AtomicReference<State> state = new AtomicReference<State>(State.STOPPED);
+    private final AtomicInteger taskCount = new AtomicInteger();
+    private final AtomicReference<FutureTask<?>> currentTask = new AtomicReference<FutureTask<?>>();
 
     private final Logger logger = LoggerFactory.getLogger(PooledOfficeManager.class);
 
     private OfficeConnectionEventListener connectionEventListener = new OfficeConnectionEventListener() {
         public void connected(OfficeConnectionEvent event) {
-            taskCount = 0;
-            taskExecutor.setAvailable(true);
+            State previous = state.get();
+            if (previous != State.STOPPED && state.compareAndSet(previous, State.AVAILABLE)) {
+                taskCount.set(0);
+                taskExecutor.setAvailable(true);
+            }
         }
         public void disconnected(OfficeConnectionEvent event) {
             taskExecutor.setAvailable(false);
-            if (stopping) {
-                // expected
-                stopping = false;
-            } else {
+            if (state.compareAndSet(State.AVAILABLE, State.RESTARTING)) {
                 logger.warn("connection lost unexpectedly; attempting restart");
-                if (currentTask != null) {
-                    currentTask.cancel(true);
+                FutureTask<?> task = currentTask.get();
+                if (task != null) {
+                    task.cancel(true);
                 }
                 managedOfficeProcess.restartDueToLostConnection();
             }
+            // else expected: we are restarting or stopping the process ourselves
         }
     };
 
@@ -60,27 +87,59 @@ class PooledOfficeManager implements OfficeManager {
         this.settings = settings;
         managedOfficeProcess = new ManagedOfficeProcess(settings);
         managedOfficeProcess.getConnection().addConnectionEventListener(connectionEventListener);
-        taskExecutor = new SuspendableThreadPoolExecutor(new NamedThreadFactory("OfficeTaskThread"));
+        taskExecutor = new SuspendableThreadPoolExecutor(new NamedThreadFactory("OfficeTaskThread", true, settings.isVirtualThreadsEnabled()));
+        watchdog = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("OfficeTaskWatchdogThread"));
+        watchdog.setKeepAliveTime(1, TimeUnit.MINUTES);
+        watchdog.allowCoreThreadTimeOut(true);
+    }
+
+    public void execute(OfficeTask task) throws OfficeException {
+        execute(task, Long.MAX_VALUE);
     }
 
-    public void execute(final OfficeTask task) throws OfficeException {
-        Future<?> futureTask = taskExecutor.submit(new Runnable() {
+    public void execute(final OfficeTask task, long deadline) throws OfficeException {
+        // before submitting, so that nothing can fail with the task already running
+        long executionTimeout = getExecutionTimeout(task);
+        long timeout = Math.min(executionTimeout, Math.max(deadline - System.currentTimeMillis(), 0L));
+        final AtomicBoolean started = new AtomicBoolean();
+        FutureTask<Void> futureTask = new FutureTask<Void>(new Runnable() {
             public void run() {
-                if (settings.getMaxTasksPerProcess() > 0 && ++taskCount == settings.getMaxTasksPerProcess() + 1) {
-                    logger.info("reached limit of {} maxTasksPerProcess: restarting", settings.getMaxTasksPerProcess());
-                    taskExecutor.setAvailable(false);
-                    stopping = true;
-                    managedOfficeProcess.restartAndWait();
-                    //FIXME taskCount will be 0 rather than 1 at this point
+                if (!started.compareAndSet(false, true)) {
+                    return;  // dropped while queued
+                }
+                if (settings.getMaxTasksPerProcess() > 0 && taskCount.get() >= settings.getMaxTasksPerProcess()) {
+                    recycle();
                 }
+                taskCount.incrementAndGet();
+                long startTime = System.currentTimeMillis();
                 task.execute(managedOfficeProcess.getConnection());
+                recordDuration(task, System.currentTimeMillis() - startTime);
              }
-         });
-         currentTask = futureTask;
+         }, null);
+         // published before the task can start, so a lost connection always finds it
+         currentTask.set(futureTask);
+         taskExecutor.execute(futureTask);
          try {
-             futureTask.get(settings.getTaskExecutionTimeout(), TimeUnit.MILLISECONDS);
+             futureTask.get(timeout, TimeUnit.MILLISECONDS);
          } catch (TimeoutException timeoutException) {
-             managedOfficeProcess.restartDueToTaskTimeout();
+             if (started.compareAndSet(false, true)) {
+                 // e.g. still waiting for a restart; nothing reached office
+                 futureTask.cancel(false);
+                 if (timeout < executionTimeout) {
+                     throw new DeadlineExceededException("deadline expired before the task could start");
+                 }
+                 throw new OfficeException("task did not start within timeout", new TaskNotStartedException(timeout));
+             }
+             if (timeout < executionTimeout) {
+                 // the process is fine as far as we know: let the task complete, unless
+                 // it goes on for the whole execution timeout
+                 watchUntilExecutionTimeout(futureTask, executionTimeout - timeout);
+                 throw new DeadlineExceededException("deadline expired while executing the task");
+             }
+             restartDueToTaskTimeout();
+             if (executionTimeout < settings.getTaskExecutionTimeout()) {
+                 throw new OfficeException("task did not complete within timeout", new AdaptiveTimeoutException(executionTimeout));
+             }
              throw new OfficeException("task did not complete within timeout", timeoutException);
          } catch (ExecutionException executionException) {
              if (executionException.getCause() instanceof OfficeException) {
@@ -90,18 +149,81 @@ class PooledOfficeManager implements OfficeManager {
              }
          } catch (Exception exception) {
              throw new OfficeException("task failed", exception);
+         } finally {
+             currentTask.compareAndSet(futureTask, null);
          }
     }
 
+    private void restartDueToTaskTimeout() {
+        if (state.compareAndSet(State.AVAILABLE, State.RESTARTING)) {
+            taskExecutor.setAvailable(false);
+            managedOfficeProcess.restartDueToTaskTimeout();
+        }
+    }
+
+    private void watchUntilExecutionTimeout(final FutureTask<?> futureTask, long remainingTimeout) {
+        watchdog.schedule(new Runnable() {
+            public void run() {
+                if (!futureTask.isDone()) {
+                    logger.warn("task abandoned at its deadline did not complete within timeout; restarting");
+                    restartDueToTaskTimeout();
+                }
+            }
+        }, remainingTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    private long getExecutionTimeout(OfficeTask task) {
+        TaskTimeoutEstimator estimator = settings.getTaskTimeoutEstimator();
+        if (estimator == null || !(task instanceof DocumentTask)) {
+            return settings.getTaskExecutionTimeout();
+        }
+        DocumentTask documentTask = (DocumentTask) task;
+        return estimator.getTimeout(documentTask.getConversionType(), documentTask.getInputFile().length());
+    }
+
+    private void recordDuration(OfficeTask task, long duration) {
+        TaskTimeoutEstimator estimator = settings.getTaskTimeoutEstimator();
+        if (estimator != null && task instanceof DocumentTask) {
+            DocumentTask documentTask = (DocumentTask) task;
+            estimator.recordDuration(documentTask.getConversionType(), documentTask.getInputFile().length(), duration);
+        }
+    }
+
+    /**
+     * Called on the task thread, so no other task can be running. If the process is
+     * already being restarted for some other reason, that restart will do.
+     */
+    private void recycle() {
+        if (state.compareAndSet(State.AVAILABLE, State.RECYCLING)) {
+            logger.info("reached limit of {} maxTasksPerProcess: restarting", settings.getMaxTasksPerProcess());
+            taskExecutor.setAvailable(false);
+            managedOfficeProcess.restartAndWait();
+            // the connected event has reset taskCount, so this task will be the first one
+        }
+    }
+
     public void start() throws OfficeException {
-        managedOfficeProcess.startAndWait();
+        if (!state.compareAndSet(State.STOPPED, State.TRANSITIONING)) {
+            throw new IllegalStateException("already started");
+        }
+        try {
+            managedOfficeProcess.startAndWait();
+        } catch (OfficeException officeException) {
+            state.set(State.STOPPED);
+            throw officeException;
+        }
     }
 
     public void stop() throws OfficeException {
+        state.set(State.TRANSITIONING);
         taskExecutor.setAvailable(false);
-        stopping = true;
         taskExecutor.shutdownNow();
-        managedOfficeProcess.stopAndWait();
+        watchdog.shutdownNow();
+        try {
+            managedOfficeProcess.stopAndWait();
+        } finally {
+            state.set(State.STOPPED);
+        }
     }
 
 	public boolean isRunning() {
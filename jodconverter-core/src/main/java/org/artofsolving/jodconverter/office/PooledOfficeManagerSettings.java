@@ -19,6 +19,7 @@ class PooledOfficeManagerSettings extends ManagedOfficeProcessSettings {
 
     private long taskExecutionTimeout = DEFAULT_TASK_EXECUTION_TIMEOUT;
     private int maxTasksPerProcess = DEFAULT_MAX_TASKS_PER_PROCESS;
+    private TaskTimeoutEstimator taskTimeoutEstimator;
 
     public PooledOfficeManagerSettings(UnoUrl unoUrl) {
         super(unoUrl);
@@ -40,4 +41,16 @@ class PooledOfficeManagerSettings extends ManagedOfficeProcessSettings {
         this.maxTasksPerProcess = maxTasksPerProcess;
     }
 
+    public TaskTimeoutEstimator getTaskTimeoutEstimator() {
+        return taskTimeoutEstimator;
+    }
+
+    /**
+     * @param taskTimeoutEstimator to adapt the timeout of {@link DocumentTask}s to their
+     *   type and size, up to the taskExecutionTimeout; <code>null</code> to always use the latter
+     */
+    public void setTaskTimeoutEstimator(TaskTimeoutEstimator taskTimeoutEstimator) {
+        this.taskTimeoutEstimator = taskTimeoutEstimator;
+    }
+
 }
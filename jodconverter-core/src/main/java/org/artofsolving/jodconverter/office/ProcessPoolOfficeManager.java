@@ -13,30 +13,93 @@
 package org.artofsolving.jodconverter.office;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.artofsolving.jodconverter.process.ProcessManager;
 
-class ProcessPoolOfficeManager implements OfficeManager {
+/**
+ * {@link OfficeManager} implementation that manages a pool of office processes, as
+ * built by {@link DefaultOfficeManagerConfiguration}.
+ * <p>
+ * Besides a plain {@link #stop()}, which aborts any tasks still executing, it can be
+ * {@link #drain(long) drained} to let those tasks complete first, e.g. on redeploys.
+ * <p>
+ * Callers only ever block in java.util.concurrent queues, futures and locks, never
+ * inside a monitor, so that the manager can be driven from large numbers of virtual
+ * threads without pinning their carrier threads.
+ */
+public class ProcessPoolOfficeManager implements OfficeManager {
+
+    private static final long DRAIN_PROGRESS_INTERVAL = 5000L;
+    /** weight of the most recent task in the average task duration, as 1/n */
+    private static final int DURATION_AVERAGE_WEIGHT = 5;
 
     private final BlockingQueue<PooledOfficeManager> pool;
     private final PooledOfficeManager[] pooledManagers;
     private final long taskQueueTimeout;
+    private final DocumentQuarantine quarantine;
+    private final int maxTaskRetries;
+    private final long taskRetryDelay;
+    private final boolean virtualThreadsEnabled;
 
     private volatile boolean running = false;
+    private volatile boolean draining = false;
+    private final AtomicInteger pendingTaskCount = new AtomicInteger();
+    private final AtomicLong averageTaskDuration = new AtomicLong(-1L);
+    private final ReentrantLock lifecycleLock = new ReentrantLock();
+    private final ReentrantLock drainLock = new ReentrantLock();
+    private final Condition drained = drainLock.newCondition();
 
     private final Logger logger = LoggerFactory.getLogger(ProcessPoolOfficeManager.class);
 
-    public ProcessPoolOfficeManager(File officeHome, UnoUrl[] unoUrls, String[] runAsArgs, File templateProfileDir, File workDir,
+    ProcessPoolOfficeManager(File officeHome, UnoUrl[] unoUrls, String[] runAsArgs, File templateProfileDir, File workDir,
             long retryTimeout, long taskQueueTimeout, long taskExecutionTimeout, int maxTasksPerProcess,
-            ProcessManager processManager) {
+            ProcessManager processManager, DocumentQuarantine quarantine, int maxTaskRetries, long taskRetryDelay,
+            TaskTimeoutEstimator taskTimeoutEstimator, boolean virtualThreadsEnabled) {
+        this(createPooledManagers(officeHome, unoUrls, runAsArgs, templateProfileDir, workDir, retryTimeout, taskExecutionTimeout,
+                maxTasksPerProcess, processManager, taskTimeoutEstimator, virtualThreadsEnabled && NamedThreadFactory.isVirtualThreadSupported()),
+                taskQueueTimeout, quarantine, maxTaskRetries, taskRetryDelay, virtualThreadsEnabled);
+        logger.info("ProcessManager implementation is {}", processManager.getClass().getSimpleName());
+        if (virtualThreadsEnabled && !this.virtualThreadsEnabled) {
+            logger.warn("virtual threads are not supported by this runtime; using platform threads");
+        }
+    }
+
+    /**
+     * For tests, with managers that need not be backed by office processes
+     */
+    ProcessPoolOfficeManager(PooledOfficeManager[] pooledManagers, long taskQueueTimeout, DocumentQuarantine quarantine,
+            int maxTaskRetries, long taskRetryDelay, boolean virtualThreadsEnabled) {
+        this.pooledManagers = pooledManagers;
 		this.taskQueueTimeout = taskQueueTimeout;
-        pool = new ArrayBlockingQueue<PooledOfficeManager>(unoUrls.length);
-        pooledManagers = new PooledOfficeManager[unoUrls.length];
+		this.quarantine = quarantine;
+		this.maxTaskRetries = maxTaskRetries;
+		this.taskRetryDelay = taskRetryDelay;
+		this.virtualThreadsEnabled = virtualThreadsEnabled && NamedThreadFactory.isVirtualThreadSupported();
+        pool = new ArrayBlockingQueue<PooledOfficeManager>(pooledManagers.length);
+    }
+
+    private static PooledOfficeManager[] createPooledManagers(File officeHome, UnoUrl[] unoUrls, String[] runAsArgs, File templateProfileDir,
+            File workDir, long retryTimeout, long taskExecutionTimeout, int maxTasksPerProcess, ProcessManager processManager,
+            TaskTimeoutEstimator taskTimeoutEstimator, boolean virtualThreadsEnabled) {
+        PooledOfficeManager[] pooledManagers = new PooledOfficeManager[unoUrls.length];
         for (int i = 0; i < unoUrls.length; i++) {
             PooledOfficeManagerSettings settings = new PooledOfficeManagerSettings(unoUrls[i]);
             settings.setRunAsArgs(runAsArgs);
@@ -46,31 +109,95 @@ class ProcessPoolOfficeManager implements OfficeManager {
             settings.setRetryTimeout(retryTimeout);
             settings.setTaskExecutionTimeout(taskExecutionTimeout);
             settings.setMaxTasksPerProcess(maxTasksPerProcess);
+            settings.setTaskTimeoutEstimator(taskTimeoutEstimator);
             settings.setProcessManager(processManager);
+            settings.setVirtualThreadsEnabled(virtualThreadsEnabled);
             pooledManagers[i] = new PooledOfficeManager(settings);
         }
-        logger.info("ProcessManager implementation is {}", processManager.getClass().getSimpleName());
+        return pooledManagers;
     }
 
-    public synchronized void start() throws OfficeException {
-        for (int i = 0; i < pooledManagers.length; i++) {
-            pooledManagers[i].start();
-            releaseManager(pooledManagers[i]);
+    public void start() throws OfficeException {
+        lifecycleLock.lock();
+        try {
+            draining = false;
+            for (int i = 0; i < pooledManagers.length; i++) {
+                pooledManagers[i].start();
+                releaseManager(pooledManagers[i]);
+            }
+            running = true;
+        } finally {
+            lifecycleLock.unlock();
         }
-        running = true;
     }
 
     public void execute(OfficeTask task) throws IllegalStateException, OfficeException {
-        if (!running) {
-            throw new IllegalStateException("this OfficeManager is currently stopped");
+        execute(task, Long.MAX_VALUE);
+    }
+
+    public void execute(OfficeTask task, long deadline) throws IllegalStateException, OfficeException {
+        pendingTaskCount.incrementAndGet();
+        try {
+            if (!running) {
+                throw new IllegalStateException("this OfficeManager is currently stopped");
+            }
+            if (draining) {
+                throw new IllegalStateException("this OfficeManager is draining and no longer accepts tasks");
+            }
+            doExecute(task, deadline);
+        } finally {
+            if (pendingTaskCount.decrementAndGet() == 0 && draining) {
+                drainLock.lock();
+                try {
+                    drained.signalAll();
+                } finally {
+                    drainLock.unlock();
+                }
+            }
+        }
+    }
+
+    private void doExecute(OfficeTask task, long deadline) throws OfficeException {
+        String fingerprint = getFingerprint(task);
+        if (fingerprint != null) {
+            quarantine.checkAdmitted(fingerprint);
         }
         PooledOfficeManager manager = null;
         try {
-            manager = acquireManager();
-            if (manager == null) {
-                throw new OfficeException("no office manager available");
+            manager = acquireManager(deadline);
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    long startTime = System.currentTimeMillis();
+                    manager.execute(task, deadline);
+                    recordTaskDuration(System.currentTimeMillis() - startTime);
+                    return;
+                } catch (OfficeException officeException) {
+                    if (officeException.getCause() instanceof TaskNotStartedException) {
+                        // never reached office, so neither held against the document nor delayed
+                        if (attempt > maxTaskRetries) {
+                            throw officeException;
+                        }
+                        logger.warn("office process not available to start task; retrying on another (attempt {} of {})", attempt, maxTaskRetries);
+                    } else {
+                        if (!isProcessFailure(officeException)) {
+                            throw officeException;
+                        }
+                        // a document that is merely slower than its estimate is not held against it
+                        if (fingerprint != null && !(officeException.getCause() instanceof AdaptiveTimeoutException) && quarantine.recordStrike(fingerprint)) {
+                            logger.warn("quarantining input document {} after repeated process failures", ((DocumentTask) task).getInputFile().getName());
+                            throw officeException;
+                        }
+                        if (attempt > maxTaskRetries || !isRetryable(task, officeException)) {
+                            throw officeException;
+                        }
+                        logger.warn("connection lost while executing task; retrying (attempt {} of {})", attempt, maxTaskRetries);
+                        sleepBeforeRetry(attempt, deadline);
+                    }
+                    PooledOfficeManager failedManager = manager;
+                    manager = null; // released by acquireOtherManager
+                    manager = acquireOtherManager(failedManager, deadline);
+                }
             }
-            manager.execute(task);
         } finally {
             if (manager != null) {
                 releaseManager(manager);
@@ -78,24 +205,228 @@ class ProcessPoolOfficeManager implements OfficeManager {
         }
     }
 
-    public synchronized void stop() throws OfficeException {
-        running = false;
-        logger.info("stopping");
-        pool.clear();
-        for (int i = 0; i < pooledManagers.length; i++) {
-            pooledManagers[i].stop();
+    /**
+     * Stops accepting new tasks, waits for tasks already submitted, whether executing
+     * or still queued, to complete for at most the given grace period, then stops all
+     * office processes. Progress is logged while waiting, and can be followed through
+     * {@link #isDraining()} and {@link #getPendingTaskCount()}.
+     * 
+     * @param gracePeriod in milliseconds
+     * @return whether all tasks completed within the grace period; if not, those
+     *   still executing were aborted
+     */
+    public boolean drain(long gracePeriod) throws OfficeException {
+        draining = true;
+        logger.info("draining {} pending tasks", pendingTaskCount.get());
+        long deadline = System.currentTimeMillis() + gracePeriod;
+        drainLock.lock();
+        try {
+            long remaining;
+            while (pendingTaskCount.get() > 0 && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                drained.await(Math.min(remaining, DRAIN_PROGRESS_INTERVAL), TimeUnit.MILLISECONDS);
+                if (pendingTaskCount.get() > 0) {
+                    logger.info("draining: {} tasks still pending", pendingTaskCount.get());
+                }
+            }
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        } finally {
+            drainLock.unlock();
         }
-        logger.info("stopped");
+        int abortedTaskCount = pendingTaskCount.get();
+        if (abortedTaskCount > 0) {
+            logger.warn("grace period expired with {} tasks still pending; aborting them", abortedTaskCount);
+        }
+        stop();
+        return abortedTaskCount == 0;
     }
 
-    private PooledOfficeManager acquireManager() {
+    public boolean isDraining() {
+        return draining && running;
+    }
+
+    /**
+     * @return the number of tasks submitted but not completed yet, including those
+     *   still waiting for an office process
+     */
+    public int getPendingTaskCount() {
+        return pendingTaskCount.get();
+    }
+
+    /**
+     * @return the number of office processes in the pool
+     */
+    public int getPoolSize() {
+        return pooledManagers.length;
+    }
+
+    /**
+     * @return a moving average of how long successful tasks took to execute, in
+     *   milliseconds, or -1 if none has completed yet
+     */
+    public long getAverageTaskDuration() {
+        return averageTaskDuration.get();
+    }
+
+    /**
+     * Estimates how long a task submitted now would wait for an office process,
+     * from the number of tasks ahead of it and the average task duration. Meant
+     * for admission control, e.g. to turn requests away before accepting their
+     * input rather than after they have waited for the taskQueueTimeout.
+     * 
+     * @return the estimated wait in milliseconds; 0 if a process is idle, or if
+     *   no task has completed yet to base an estimate on
+     */
+    public long getEstimatedWaitTime() {
+        return getEstimatedWaitTime(pendingTaskCount.get());
+    }
+
+    /**
+     * @param pendingTaskCount the number of tasks ahead, e.g. including requests that
+     *   will submit a task once their input is received
+     * @see #getEstimatedWaitTime()
+     */
+    public long getEstimatedWaitTime(int pendingTaskCount) {
+        int tasksAhead = pendingTaskCount - pooledManagers.length + 1;
+        long averageDuration = averageTaskDuration.get();
+        if (tasksAhead <= 0 || averageDuration < 0) {
+            return 0L;
+        }
+        return tasksAhead * averageDuration / pooledManagers.length;
+    }
+
+    private void recordTaskDuration(long duration) {
+        long average;
+        long newAverage;
+        do {
+            average = averageTaskDuration.get();
+            newAverage = average < 0 ? duration : average + (duration - average) / DURATION_AVERAGE_WEIGHT;
+        } while (!averageTaskDuration.compareAndSet(average, newAverage));
+    }
+
+    public void stop() throws OfficeException {
+        lifecycleLock.lock();
+        try {
+            running = false;
+            logger.info("stopping");
+            pool.clear();
+            // processes can take a while to terminate, so stop them all at once
+            ExecutorService stopExecutor = Executors.newFixedThreadPool(pooledManagers.length, new NamedThreadFactory("OfficeStopThread", true, virtualThreadsEnabled));
+            try {
+                List<Future<?>> futures = new ArrayList<Future<?>>(pooledManagers.length);
+                for (final PooledOfficeManager pooledManager : pooledManagers) {
+                    futures.add(stopExecutor.submit(new Runnable() {
+                        public void run() {
+                            pooledManager.stop();
+                        }
+                    }));
+                }
+                OfficeException stopException = null;
+                for (Future<?> future : futures) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException executionException) {
+                        logger.error("failed to stop office process", executionException.getCause());
+                        if (stopException == null) {
+                            stopException = new OfficeException("failed to stop office process", executionException.getCause());
+                        }
+                    } catch (InterruptedException interruptedException) {
+                        throw new OfficeException("interrupted", interruptedException);
+                    }
+                }
+                if (stopException != null) {
+                    throw stopException;
+                }
+            } finally {
+                stopExecutor.shutdown();
+            }
+            logger.info("stopped");
+        } finally {
+            lifecycleLock.unlock();
+        }
+    }
+
+    private String getFingerprint(OfficeTask task) {
+        if (quarantine == null || !(task instanceof DocumentTask)) {
+            return null;
+        }
+        File inputFile = ((DocumentTask) task).getInputFile();
+        if (inputFile == null || !inputFile.isFile()) {
+            return null;
+        }
+        try {
+            return DocumentQuarantine.fingerprint(inputFile);
+        } catch (IOException ioException) {
+            logger.warn("could not fingerprint input document " + inputFile.getName(), ioException);
+            return null;
+        }
+    }
+
+    /**
+     * Whether the task ended with its office process being restarted, either because
+     * the connection was lost (which cancels the task) or because it timed out. A task
+     * that never started has a {@link TaskNotStartedException} cause instead.
+     */
+    private boolean isProcessFailure(OfficeException officeException) {
+        Throwable cause = officeException.getCause();
+        return cause instanceof CancellationException || cause instanceof TimeoutException;
+    }
+
+    /**
+     * Only a lost connection says nothing about the document itself: a timeout most
+     * likely means it would hang the next process as well.
+     */
+    private boolean isRetryable(OfficeTask task, OfficeException officeException) {
+        return officeException.getCause() instanceof CancellationException
+            && task instanceof DocumentTask && ((DocumentTask) task).isRetryable();
+    }
+
+    private void sleepBeforeRetry(int attempt, long deadline) {
+        long delay = taskRetryDelay << Math.min(attempt - 1, 16);
+        if (System.currentTimeMillis() + delay >= deadline) {
+            throw new DeadlineExceededException("deadline would expire before the task could be retried");
+        }
         try {
-            return pool.poll(taskQueueTimeout, TimeUnit.MILLISECONDS);
+            Thread.sleep(delay);
         } catch (InterruptedException interruptedException) {
             throw new OfficeException("interrupted", interruptedException);
         }
     }
 
+    /**
+     * Prefers another idle process to the one that just failed, which will be busy
+     * restarting; with none idle, waits for whichever becomes available first.
+     */
+    private PooledOfficeManager acquireOtherManager(PooledOfficeManager failedManager, long deadline) {
+        PooledOfficeManager otherManager = pool.poll();
+        releaseManager(failedManager);
+        return otherManager != null ? otherManager : acquireManager(deadline);
+    }
+
+    /**
+     * @throws OfficeException if no manager becomes available within the taskQueueTimeout
+     * @throws DeadlineExceededException if the deadline expires first
+     */
+    private PooledOfficeManager acquireManager(long deadline) {
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+            throw new DeadlineExceededException("deadline expired while queued");
+        }
+        PooledOfficeManager manager;
+        try {
+            manager = pool.poll(Math.min(taskQueueTimeout, remaining), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException interruptedException) {
+            throw new OfficeException("interrupted", interruptedException);
+        }
+        if (manager == null) {
+            if (remaining < taskQueueTimeout) {
+                throw new DeadlineExceededException("deadline expired while queued");
+            }
+            throw new OfficeException("no office manager available");
+        }
+        return manager;
+    }
+
     private void releaseManager(PooledOfficeManager manager) {
         try {
             pool.put(manager);
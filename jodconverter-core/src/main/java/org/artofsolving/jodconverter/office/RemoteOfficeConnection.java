@@ -0,0 +1,158 @@
+//
+// JODConverter - Java OpenDocument Converter
+// Copyright 2004-2012 Mirko Nasato and contributors
+//
+// JODConverter is Open Source software, you can redistribute it and/or
+// modify it under either (at your option) of the following licenses
+//
+// 1. The GNU Lesser General Public License v3 (or later)
+//    -> http://www.gnu.org/licenses/lgpl-3.0.txt
+// 2. The Apache License, Version 2.0
+//    -> http://www.apache.org/licenses/LICENSE-2.0.txt
+//
+package org.artofsolving.jodconverter.office;
+
+import java.net.ConnectException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A connection to an office process that is not managed by us, e.g. on another host,
+ * shared by up to a given number of concurrent tasks.
+ * <p>
+ * Failed connection attempts are spaced out with an exponentially growing delay, up to
+ * a maximum, so that an office that is down is not hammered with connection attempts.
+ */
+class RemoteOfficeConnection {
+
+    private final OfficeConnection connection;
+    private final Semaphore permits;
+    private final AtomicInteger activeTaskCount = new AtomicInteger();
+    private final long reconnectDelay;
+    private final long maxReconnectDelay;
+    private final ReentrantLock connectLock = new ReentrantLock();
+
+    private int failedAttempts;
+    private long nextAttemptTime;
+
+    private final Logger logger = LoggerFactory.getLogger(RemoteOfficeConnection.class);
+
+    public RemoteOfficeConnection(UnoUrl unoUrl, int maxConcurrentTasks, long reconnectDelay, long maxReconnectDelay) {
+        connection = new OfficeConnection(unoUrl);
+        permits = new Semaphore(maxConcurrentTasks);
+        this.reconnectDelay = reconnectDelay;
+        this.maxReconnectDelay = maxReconnectDelay;
+    }
+
+    public OfficeConnection getConnection() {
+        return connection;
+    }
+
+    public boolean isConnected() {
+        return connection.isConnected();
+    }
+
+    /**
+     * @return the number of tasks currently executing on this connection
+     */
+    public int getActiveTaskCount() {
+        return activeTaskCount.get();
+    }
+
+    public boolean tryAcquire() {
+        if (!connection.isConnected() || !permits.tryAcquire()) {
+            return false;
+        }
+        activeTaskCount.incrementAndGet();
+        return true;
+    }
+
+    public void release() {
+        activeTaskCount.decrementAndGet();
+        permits.release();
+    }
+
+    /**
+     * Attempts to connect, unless already connected or the delay since the last failed
+     * attempt has not elapsed yet. If another thread is already connecting, returns
+     * straight away rather than piling up behind it; callers are told about the new
+     * connection through its connected event instead.
+     * 
+     * @return whether connected
+     */
+    public boolean connectIfDue() {
+        if (connection.isConnected()) {
+            return true;
+        }
+        if (!connectLock.tryLock()) {
+            return false;
+        }
+        try {
+            if (connection.isConnected()) {
+                return true;
+            }
+            if (System.currentTimeMillis() < nextAttemptTime) {
+                return false;
+            }
+            try {
+                connection.connect();
+                failedAttempts = 0;
+                nextAttemptTime = 0L;
+                return true;
+            } catch (ConnectException connectException) {
+                onFailure(connectException);
+            } catch (OfficeException officeException) {
+                onFailure(officeException);
+            }
+            return false;
+        } finally {
+            connectLock.unlock();
+        }
+    }
+
+    private void onFailure(Exception exception) {
+        long delay = Math.min(reconnectDelay << Math.min(failedAttempts, 16), maxReconnectDelay);
+        failedAttempts++;
+        nextAttemptTime = System.currentTimeMillis() + delay;
+        logger.warn("could not connect to '{}'; next attempt in {}ms ({})", new Object[] { connection.getUnoUrl(), delay, exception.getMessage() });
+    }
+
+    /**
+     * Checks that office still responds. A connection whose office has died is
+     * normally noticed through its bridge being disposed, but one that hangs or
+     * vanishes from the network is not.
+     * 
+     * @return whether office responded
+     */
+    public boolean ping() {
+        try {
+            connection.getService(OfficeUtils.SERVICE_DESKTOP);
+            return true;
+        } catch (Exception exception) {
+            logger.warn("health check failed for '{}'; disconnecting", connection.getUnoUrl());
+            disconnect();
+            return false;
+        }
+    }
+
+    public void disconnect() {
+        connectLock.lock();
+        try {
+            if (connection.isConnected()) {
+                connection.disconnect();
+            }
+        } finally {
+            connectLock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return connection.getUnoUrl().toString();
+    }
+
+}
@@ -0,0 +1,312 @@
+//
+// JODConverter - Java OpenDocument Converter
+// Copyright 2004-2012 Mirko Nasato and contributors
+//
+// JODConverter is Open Source software, you can redistribute it and/or
+// modify it under either (at your option) of the following licenses
+//
+// 1. The GNU Lesser General Public License v3 (or later)
+//    -> http://www.gnu.org/licenses/lgpl-3.0.txt
+// 2. The Apache License, Version 2.0
+//    -> http://www.apache.org/licenses/LICENSE-2.0.txt
+//
+package org.artofsolving.jodconverter.office;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link OfficeManager} implementation that spreads tasks over office processes it does
+ * not manage, typically running on several hosts.
+ * <p>
+ * Each task goes to the connected office with the fewest tasks in progress. A task
+ * waits for the taskQueueTimeout if all offices are busy or down. Lost connections are
+ * noticed straight away, and re-established in the background. A periodic health check
+ * also pings idle offices, to detect offices that hang or become unreachable without
+ * the connection being closed.
+ * <p>
+ * Since the offices are not managed, they are not restarted when a task hangs or when
+ * they crash; that is up to whatever manages them. A task that does not complete
+ * within the taskExecutionTimeout, or a ping that does not within the
+ * healthCheckInterval, drops the connection instead, which is then re-established like
+ * any lost connection.
+ */
+class RemoteOfficeManager implements OfficeManager {
+
+    private final RemoteOfficeConnection[] connections;
+    private final long taskQueueTimeout;
+    private final long taskExecutionTimeout;
+    private final long healthCheckInterval;
+    private final boolean connectOnStart;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition connectionReleased = lock.newCondition();
+    private final ReentrantLock lifecycleLock = new ReentrantLock();
+
+    private ScheduledExecutorService healthChecker;
+    private ExecutorService taskExecutor;
+    private volatile boolean running = false;
+
+    private final Logger logger = LoggerFactory.getLogger(RemoteOfficeManager.class);
+
+    public RemoteOfficeManager(UnoUrl[] unoUrls, int maxTasksPerConnection, long taskQueueTimeout, long taskExecutionTimeout, long healthCheckInterval,
+            long reconnectDelay, long maxReconnectDelay) {
+        this(unoUrls, true, maxTasksPerConnection, taskQueueTimeout, taskExecutionTimeout, healthCheckInterval, reconnectDelay, maxReconnectDelay);
+    }
+
+    /**
+     * @param connectOnStart whether to connect on {@link #start()}, failing if no office
+     *   can be reached; if <em>false</em>, connections are only attempted when tasks
+     *   are executed, and by the health check
+     */
+    public RemoteOfficeManager(UnoUrl[] unoUrls, boolean connectOnStart, int maxTasksPerConnection, long taskQueueTimeout, long taskExecutionTimeout,
+            long healthCheckInterval, long reconnectDelay, long maxReconnectDelay) {
+        this.connectOnStart = connectOnStart;
+        this.taskQueueTimeout = taskQueueTimeout;
+        this.taskExecutionTimeout = taskExecutionTimeout;
+        this.healthCheckInterval = healthCheckInterval;
+        connections = new RemoteOfficeConnection[unoUrls.length];
+        for (int i = 0; i < unoUrls.length; i++) {
+            final RemoteOfficeConnection connection = new RemoteOfficeConnection(unoUrls[i], maxTasksPerConnection, reconnectDelay, maxReconnectDelay);
+            connection.getConnection().addConnectionEventListener(new OfficeConnectionEventListener() {
+                public void connected(OfficeConnectionEvent event) {
+                    signalConnectionReleased();
+                }
+                public void disconnected(OfficeConnectionEvent event) {
+                    if (running) {
+                        logger.warn("connection lost to '{}'; reconnecting in the background", connection);
+                        scheduleReconnect(connection);
+                    }
+                }
+            });
+            connections[i] = connection;
+        }
+    }
+
+    public void start() throws OfficeException {
+        lifecycleLock.lock();
+        try {
+            healthChecker = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("OfficeHealthCheckThread"));
+            taskExecutor = Executors.newCachedThreadPool(new NamedThreadFactory("OfficeTaskThread"));
+            if (connectOnStart) {
+                int connectedCount = connectAllIfDue();
+                if (connectedCount == 0) {
+                    healthChecker.shutdownNow();
+                    taskExecutor.shutdownNow();
+                    throw new OfficeException("could not connect to any office");
+                }
+                logger.info("connected to {} of {} offices", connectedCount, connections.length);
+            }
+            running = true;
+            healthChecker.scheduleWithFixedDelay(new Runnable() {
+                public void run() {
+                    checkHealth();
+                }
+            }, healthCheckInterval, healthCheckInterval, TimeUnit.MILLISECONDS);
+        } finally {
+            lifecycleLock.unlock();
+        }
+    }
+
+    public void execute(OfficeTask task) throws OfficeException {
+        execute(task, Long.MAX_VALUE);
+    }
+
+    public void execute(final OfficeTask task, long deadline) throws OfficeException {
+        if (!running) {
+            throw new IllegalStateException("this OfficeManager is currently stopped");
+        }
+        final RemoteOfficeConnection connection = acquireConnection(deadline);
+        try {
+            Future<?> future = taskExecutor.submit(new Runnable() {
+                public void run() {
+                    task.execute(connection.getConnection());
+                }
+            });
+            long timeout = Math.min(taskExecutionTimeout, Math.max(deadline - System.currentTimeMillis(), 0L));
+            try {
+                future.get(timeout, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException timeoutException) {
+                future.cancel(true);
+                logger.warn("task did not complete within timeout on '{}'; disconnecting", connection);
+                connection.disconnect();
+                if (timeout < taskExecutionTimeout) {
+                    throw new DeadlineExceededException("deadline expired while executing the task");
+                }
+                throw new OfficeException("task did not complete within timeout", timeoutException);
+            } catch (ExecutionException executionException) {
+                if (executionException.getCause() instanceof OfficeException) {
+                    throw (OfficeException) executionException.getCause();
+                }
+                throw new OfficeException("task failed", executionException.getCause());
+            } catch (InterruptedException interruptedException) {
+                future.cancel(true);
+                throw new OfficeException("interrupted", interruptedException);
+            }
+        } finally {
+            connection.release();
+            signalConnectionReleased();
+        }
+    }
+
+    public void stop() throws OfficeException {
+        lifecycleLock.lock();
+        try {
+            running = false;
+            if (healthChecker != null) {
+                healthChecker.shutdownNow();
+            }
+            if (taskExecutor != null) {
+                taskExecutor.shutdownNow();
+            }
+            for (RemoteOfficeConnection connection : connections) {
+                connection.disconnect();
+            }
+        } finally {
+            lifecycleLock.unlock();
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    private int connectAllIfDue() {
+        int connectedCount = 0;
+        for (RemoteOfficeConnection connection : connections) {
+            if (connection.connectIfDue()) {
+                connectedCount++;
+            }
+        }
+        return connectedCount;
+    }
+
+    private boolean isAnyConnected() {
+        for (RemoteOfficeConnection connection : connections) {
+            if (connection.isConnected()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private RemoteOfficeConnection acquireConnection(long deadline) throws OfficeException {
+        if (!isAnyConnected()) {
+            // rather than waiting for the next health check
+            connectAllIfDue();
+        }
+        long queueDeadline = Math.min(System.currentTimeMillis() + taskQueueTimeout, deadline);
+        lock.lock();
+        try {
+            while (true) {
+                RemoteOfficeConnection connection = tryAcquireLeastBusy();
+                if (connection != null) {
+                    return connection;
+                }
+                long remaining = queueDeadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    if (queueDeadline == deadline) {
+                        throw new DeadlineExceededException("deadline expired while queued");
+                    }
+                    throw new OfficeException("no office connection available");
+                }
+                connectionReleased.await(remaining, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException interruptedException) {
+            throw new OfficeException("interrupted", interruptedException);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private RemoteOfficeConnection tryAcquireLeastBusy() {
+        RemoteOfficeConnection[] candidates = connections.clone();
+        // insertion sort by load; there are only ever a handful of connections
+        for (int i = 1; i < candidates.length; i++) {
+            RemoteOfficeConnection candidate = candidates[i];
+            int j = i - 1;
+            for (; j >= 0 && candidates[j].getActiveTaskCount() > candidate.getActiveTaskCount(); j--) {
+                candidates[j + 1] = candidates[j];
+            }
+            candidates[j + 1] = candidate;
+        }
+        for (RemoteOfficeConnection candidate : candidates) {
+            if (candidate.tryAcquire()) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private void signalConnectionReleased() {
+        lock.lock();
+        try {
+            connectionReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void scheduleReconnect(final RemoteOfficeConnection connection) {
+        ScheduledExecutorService executor = healthChecker;
+        if (executor != null && !executor.isShutdown()) {
+            executor.execute(new Runnable() {
+                public void run() {
+                    connection.connectIfDue();
+                }
+            });
+        }
+    }
+
+    private void checkHealth() {
+        for (RemoteOfficeConnection connection : connections) {
+            if (!running) {
+                return;
+            }
+            if (!connection.isConnected()) {
+                connection.connectIfDue();
+            } else if (connection.getActiveTaskCount() == 0) {
+                ping(connection);
+            }
+        }
+    }
+
+    private void ping(final RemoteOfficeConnection connection) {
+        Future<Boolean> future;
+        try {
+            future = taskExecutor.submit(new Callable<Boolean>() {
+                public Boolean call() {
+                    return connection.ping();
+                }
+            });
+        } catch (RejectedExecutionException rejectedExecutionException) {
+            return;  // stopping
+        }
+        try {
+            future.get(healthCheckInterval, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException timeoutException) {
+            future.cancel(true);
+            logger.warn("health check timed out for '{}'; disconnecting", connection);
+            connection.disconnect();
+        } catch (ExecutionException executionException) {
+            logger.warn("health check failed for '{}'", connection, executionException.getCause());
+        } catch (InterruptedException interruptedException) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
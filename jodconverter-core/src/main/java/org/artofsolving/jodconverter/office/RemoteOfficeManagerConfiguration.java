@@ -0,0 +1,120 @@
+//
+// JODConverter - Java OpenDocument Converter
+// Copyright 2004-2012 Mirko Nasato and contributors
+//
+// JODConverter is Open Source software, you can redistribute it and/or
+// modify it under either (at your option) of the following licenses
+//
+// 1. The GNU Lesser General Public License v3 (or later)
+//    -> http://www.gnu.org/licenses/lgpl-3.0.txt
+// 2. The Apache License, Version 2.0
+//    -> http://www.apache.org/licenses/LICENSE-2.0.txt
+//
+package org.artofsolving.jodconverter.office;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds an {@link OfficeManager} that spreads tasks over office processes running on
+ * other hosts, started e.g. with
+ * <pre>
+ * soffice -headless -accept="socket,host=0.0.0.0,port=2002;urp;"
+ * </pre>
+ */
+public class RemoteOfficeManagerConfiguration {
+
+    private final List<UnoUrl> unoUrls = new ArrayList<UnoUrl>();
+    private int maxTasksPerConnection = 1;
+    private long taskQueueTimeout = 30000L; // 30 seconds
+    private long taskExecutionTimeout = 120000L; // 2 minutes
+    private long healthCheckInterval = 10000L; // 10 seconds
+    private long reconnectDelay = 1000L; // 1 second
+    private long maxReconnectDelay = 60000L; // 1 minute
+
+    public RemoteOfficeManagerConfiguration addOffice(String host, int port) throws IllegalArgumentException {
+        checkArgument("host", host != null && host.length() > 0, "must not be empty");
+        checkArgument("port", port > 0 && port < 65536, "must be a valid port number");
+        unoUrls.add(UnoUrl.socket(host, port));
+        return this;
+    }
+
+    /**
+     * @param offices e.g. "office1:2002", "office2:2002", "office2:2003"
+     */
+    public RemoteOfficeManagerConfiguration addOffices(String... offices) throws IllegalArgumentException {
+        for (String office : offices) {
+            int separator = office.lastIndexOf(':');
+            checkArgument("offices", separator > 0, "must be in the form host:port");
+            try {
+                addOffice(office.substring(0, separator), Integer.parseInt(office.substring(separator + 1)));
+            } catch (NumberFormatException numberFormatException) {
+                throw new IllegalArgumentException("offices must be in the form host:port: " + office);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Sets how many tasks may execute at the same time on each office. Defaults to 1.
+     */
+    public RemoteOfficeManagerConfiguration setMaxTasksPerConnection(int maxTasksPerConnection) throws IllegalArgumentException {
+        checkArgument("maxTasksPerConnection", maxTasksPerConnection > 0, "must be positive");
+        this.maxTasksPerConnection = maxTasksPerConnection;
+        return this;
+    }
+
+    public RemoteOfficeManagerConfiguration setTaskQueueTimeout(long taskQueueTimeout) {
+        this.taskQueueTimeout = taskQueueTimeout;
+        return this;
+    }
+
+    /**
+     * Sets how long a task may execute before its connection is dropped, in
+     * milliseconds. Defaults to 2 minutes.
+     */
+    public RemoteOfficeManagerConfiguration setTaskExecutionTimeout(long taskExecutionTimeout) throws IllegalArgumentException {
+        checkArgument("taskExecutionTimeout", taskExecutionTimeout > 0, "must be positive");
+        this.taskExecutionTimeout = taskExecutionTimeout;
+        return this;
+    }
+
+    /**
+     * Sets how often to reconnect to offices that are down and to ping idle ones, in
+     * milliseconds; an office that does not answer a ping within that time is
+     * disconnected. Defaults to 10 seconds.
+     */
+    public RemoteOfficeManagerConfiguration setHealthCheckInterval(long healthCheckInterval) throws IllegalArgumentException {
+        checkArgument("healthCheckInterval", healthCheckInterval > 0, "must be positive");
+        this.healthCheckInterval = healthCheckInterval;
+        return this;
+    }
+
+    /**
+     * Sets how long to wait after a failed connection attempt before the next one, in
+     * milliseconds. The delay doubles with each further failure, up to the given maximum.
+     * Defaults to 1 second and 1 minute.
+     */
+    public RemoteOfficeManagerConfiguration setReconnectDelay(long reconnectDelay, long maxReconnectDelay) throws IllegalArgumentException {
+        checkArgument("reconnectDelay", reconnectDelay > 0, "must be positive");
+        checkArgument("maxReconnectDelay", maxReconnectDelay >= reconnectDelay, "must not be less than reconnectDelay");
+        this.reconnectDelay = reconnectDelay;
+        this.maxReconnectDelay = maxReconnectDelay;
+        return this;
+    }
+
+    public OfficeManager buildOfficeManager() throws IllegalStateException {
+        if (unoUrls.isEmpty()) {
+            throw new IllegalStateException("no offices added");
+        }
+        return new RemoteOfficeManager(unoUrls.toArray(new UnoUrl[unoUrls.size()]), maxTasksPerConnection, taskQueueTimeout, taskExecutionTimeout, healthCheckInterval,
+                reconnectDelay, maxReconnectDelay);
+    }
+
+    private void checkArgument(String argName, boolean condition, String message) throws IllegalArgumentException {
+        if (!condition) {
+            throw new IllegalArgumentException(argName + " " + message);
+        }
+    }
+
+}
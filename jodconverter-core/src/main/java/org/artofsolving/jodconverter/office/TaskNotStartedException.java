@@ -0,0 +1,30 @@
+//
+// JODConverter - Java OpenDocument Converter
+// Copyright 2004-2012 Mirko Nasato and contributors
+//
+// JODConverter is Open Source software, you can redistribute it and/or
+// modify it under either (at your option) of the following licenses
+//
+// 1. The GNU Lesser General Public License v3 (or later)
+//    -> http://www.gnu.org/licenses/lgpl-3.0.txt
+// 2. The Apache License, Version 2.0
+//    -> http://www.apache.org/licenses/LICENSE-2.0.txt
+//
+package org.artofsolving.jodconverter.office;
+
+/**
+ * The cause of a task failing because its office process was not available to start
+ * it in time, e.g. while restarting.
+ * <p>
+ * The task never reached office, so this says nothing about the document: it is not
+ * held against it, and the task can be retried on another process.
+ */
+class TaskNotStartedException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    public TaskNotStartedException(long timeout) {
+        super("task could not start within " + timeout + "ms");
+    }
+
+}
@@ -0,0 +1,110 @@
+//
+// JODConverter - Java OpenDocument Converter
+// Copyright 2004-2012 Mirko Nasato and contributors
+//
+// JODConverter is Open Source software, you can redistribute it and/or
+// modify it under either (at your option) of the following licenses
+//
+// 1. The GNU Lesser General Public License v3 (or later)
+//    -> http://www.gnu.org/licenses/lgpl-3.0.txt
+// 2. The Apache License, Version 2.0
+//    -> http://www.apache.org/licenses/LICENSE-2.0.txt
+//
+package org.artofsolving.jodconverter.office;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Estimates how long a task may reasonably take, from the recent durations of tasks of
+ * the same conversion type, so that a hung task can be detected well before the
+ * maximum taskExecutionTimeout without killing legitimately long conversions.
+ * <p>
+ * Durations are kept scaled to a common input size, assuming the time to convert a
+ * document grows at most linearly with its size. The timeout for a task is then the
+ * 95th percentile of recent scaled durations, scaled back to the task's input size
+ * and multiplied by a safety factor, within the configured bounds. Until enough
+ * tasks of a type have completed, the maximum timeout is used.
+ * <p>
+ * A single instance is shared by all processes in a pool. Conversion types come from
+ * input file extensions, which callers may not control, so only the most recently
+ * used {@link #MAX_CONVERSION_TYPES} types are kept.
+ */
+class TaskTimeoutEstimator {
+
+    static final int HISTORY_SIZE = 100;
+    static final int MIN_SAMPLES = 10;
+    static final long SIZE_FLOOR = 1024 * 1024;
+    static final int SAFETY_FACTOR = 3;
+    static final int MAX_CONVERSION_TYPES = 256;
+
+    private static class History {
+        private final long[] scaledDurations = new long[HISTORY_SIZE];
+        private int count;
+
+        synchronized void add(long scaledDuration) {
+            scaledDurations[count++ % HISTORY_SIZE] = scaledDuration;
+        }
+
+        synchronized long percentile95() {
+            if (count < MIN_SAMPLES) {
+                return -1L;
+            }
+            long[] sorted = Arrays.copyOf(scaledDurations, Math.min(count, HISTORY_SIZE));
+            Arrays.sort(sorted);
+            return sorted[(int) Math.ceil(0.95 * sorted.length) - 1];
+        }
+    }
+
+    private final long minTimeout;
+    private final long maxTimeout;
+    private final Map<String,History> histories = Collections.synchronizedMap(new LinkedHashMap<String,History>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String,History> eldest) {
+            return size() > MAX_CONVERSION_TYPES;
+        }
+    });
+
+    public TaskTimeoutEstimator(long minTimeout, long maxTimeout) {
+        this.minTimeout = minTimeout;
+        this.maxTimeout = maxTimeout;
+    }
+
+    /**
+     * @param conversionType e.g. "doc>pdf"; <code>null</code> if unknown
+     * @param inputLength in bytes
+     * @return the timeout for a task, in milliseconds
+     */
+    public long getTimeout(String conversionType, long inputLength) {
+        History history = conversionType != null ? histories.get(conversionType) : null;
+        long percentile95 = history != null ? history.percentile95() : -1L;
+        if (percentile95 < 0) {
+            return maxTimeout;
+        }
+        double sizeRatio = (double) Math.max(inputLength, SIZE_FLOOR) / SIZE_FLOOR;
+        double timeout = percentile95 * sizeRatio * SAFETY_FACTOR;
+        return Math.max(minTimeout, (long) Math.min(timeout, maxTimeout));
+    }
+
+    /**
+     * Records the duration of a task that completed successfully.
+     */
+    public void recordDuration(String conversionType, long inputLength, long duration) {
+        if (conversionType == null) {
+            return;
+        }
+        History history;
+        synchronized (histories) {
+            history = histories.get(conversionType);
+            if (history == null) {
+                history = new History();
+                histories.put(conversionType, history);
+            }
+        }
+        history.add((long) (duration * SIZE_FLOOR / (double) Math.max(inputLength, SIZE_FLOOR)));
+    }
+
+}
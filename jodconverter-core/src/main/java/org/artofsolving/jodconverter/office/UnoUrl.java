@@ -41,6 +41,17 @@ class UnoUrl {
         return new UnoUrl(socketString, socketString + ",tcpNoDelay=1");
     }
 
+    /**
+     * For an office process on another host, started with e.g.
+     * <pre>
+     * soffice -headless -accept="socket,host=0.0.0.0,port=2002;urp;"
+     * </pre>
+     */
+    public static UnoUrl socket(String host, int port) {
+        String socketString = "socket,host=" + host + ",port=" + port;
+        return new UnoUrl(socketString, socketString + ",tcpNoDelay=1");
+    }
+
     public static UnoUrl pipe(String pipeName) {
         String pipeString = "pipe,name=" + pipeName;
         return new UnoUrl(pipeString, pipeString);
@@ -1,83 +1,166 @@
-package org.artofsolving.jodconverter.util;
-
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.Charset;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-/*
- * Utilites for logging the output on the standard streams of a running process
- * 
- * this basically has to create two threads which will consume the InputStreams of the process and log them to a logger, whenever a new line was written
- */
-public class ProcessLoggingUtils {
-
-	public static void logProcessOutput(final Process process, final long pid, final Logger logger) {
-		ThreadGroup threadGroup = new ThreadGroup(String.format("loggingthreads for process [ %s ]", pid)) {
-			@Override
-			public void uncaughtException(Thread t, Throwable e) {
-				logger.warn("exception on loggingthread for process [ " + pid + " ]", e);
-				super.uncaughtException(t, e);
-			}
-		};
-		threadGroup.setDaemon(true);
-
-		Thread stdOutLoggerThread = createLoggingThread(threadGroup, pid, process.getInputStream(), "stdout", logger);
-		Thread stdErrLoggerThread = createLoggingThread(threadGroup, pid, process.getErrorStream(), "stderr", logger);
-
-		start(stdOutLoggerThread);
-		start(stdErrLoggerThread);
-	}
-
-	private static void start(Thread t) {
-		if (t != null) {
-			t.start();
-		}
-	}
-
-	private static Thread createLoggingThread(final ThreadGroup threadGroup, final long pid, final InputStream stream, final String name,
-	        final Logger logger) {
-		if (stream == null) {
-			return null;
-		}
-		Runnable r = createLoggingRunnable(pid, name, stream, logger);
-		Thread t = new Thread(threadGroup, r, String.format("loggingthread for %s of process [ %s ]", name, pid));
-		t.setDaemon(true);
-		return t;
-	}
-
-	private static Runnable createLoggingRunnable(final long pid, final String name, final InputStream stream, final Logger logger) {
-		if (stream == null) {
-			return null;
-		}
-		String prefix = String.format("%s[%s]: ", name, pid);
-		return new LoggingRunnable(stream, logger, prefix);
-	}
-
-	private static final class LoggingRunnable implements Runnable {
-		private final BufferedReader reader;
-		private final String prefix;
-		private final Logger logger;
-
-		private LoggingRunnable(InputStream stream, Logger logger, String prefix) {
-			this.reader = new BufferedReader(new InputStreamReader(stream));
-			this.logger = logger;
-			this.prefix = prefix;
-		}
-
-		@Override
-		public void run() {
-			String line;
-			try {
-				while ((line = reader.readLine()) != null) {
-					this.logger.debug(prefix + line);
-				}
-			} catch (IOException e) {
-				this.logger.error(prefix + "error reading line", e);
-			}
-		}
-	}
-}
+package org.artofsolving.jodconverter.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+
+/*
+ * Utilites for logging the output on the standard streams of a running process
+ * 
+ * Process streams cannot be selected on, so rather than blocking a pair of threads per process, a single shared daemon
+ * thread polls the streams of all processes for available bytes. Output is kept in a bounded ring buffer per process,
+ * and only split into lines and logged when debug logging is enabled.
+ */
+public class ProcessLoggingUtils {
+
+	private static final int RECENT_OUTPUT_SIZE = 8 * 1024;
+	private static final int MAX_LINE_LENGTH = 4 * 1024;
+	private static final long POLL_INTERVAL = 100L;
+	private static final int POLLS_PER_EXIT_CHECK = 10;
+
+	private static final List<StreamSource> sources = new CopyOnWriteArrayList<StreamSource>();
+	private static Thread readerThread;
+
+	public static ProcessOutput logProcessOutput(final Process process, final long pid, final Logger logger) {
+		ProcessOutput output = new ProcessOutput(RECENT_OUTPUT_SIZE);
+		register(new StreamSource(process, process.getInputStream(), String.format("stdout[%s]: ", pid), logger, output));
+		register(new StreamSource(process, process.getErrorStream(), String.format("stderr[%s]: ", pid), logger, output));
+		return output;
+	}
+
+	private static synchronized void register(StreamSource source) {
+		if (source.stream == null) {
+			return;
+		}
+		sources.add(source);
+		if (readerThread == null || !readerThread.isAlive()) {
+			readerThread = new Thread(new Reader(), "ProcessOutputReader");
+			readerThread.setDaemon(true);
+			readerThread.start();
+		} else {
+			ProcessLoggingUtils.class.notifyAll();
+		}
+	}
+
+	private static synchronized void awaitSources() throws InterruptedException {
+		while (sources.isEmpty()) {
+			ProcessLoggingUtils.class.wait();
+		}
+	}
+
+	private static final class Reader implements Runnable {
+		private final byte[] buffer = new byte[8192];
+		private int pollCount;
+
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					awaitSources();
+					boolean checkExit = ++pollCount % POLLS_PER_EXIT_CHECK == 0;
+					boolean idle = true;
+					for (StreamSource source : sources) {
+						if (poll(source, checkExit)) {
+							idle = false;
+						}
+					}
+					if (idle) {
+						Thread.sleep(POLL_INTERVAL);
+					}
+				}
+			} catch (InterruptedException interruptedException) {
+				// exit
+			}
+		}
+
+		/**
+		 * Never blocks: only reads what is available, and stops following a stream once its process has exited and
+		 * nothing is left to read, even if another process inherited it and keeps it open.
+		 */
+		private boolean poll(StreamSource source, boolean checkExit) {
+			try {
+				int available = source.stream.available();
+				if (available > 0) {
+					int length = source.stream.read(buffer, 0, Math.min(available, buffer.length));
+					if (length > 0) {
+						source.consume(buffer, length);
+						return true;
+					}
+				} else if (checkExit && source.hasExited()) {
+					source.close();
+					sources.remove(source);
+				}
+			} catch (IOException ioException) {
+				source.logger.error(source.prefix + "error reading output", ioException);
+				source.close();
+				sources.remove(source);
+			} catch (RuntimeException runtimeException) {
+				// e.g. from a logger; drop this stream, the thread is shared by all the others
+				source.logger.error(source.prefix + "error handling output", runtimeException);
+				source.close();
+				sources.remove(source);
+			}
+			return false;
+		}
+	}
+
+	private static final class StreamSource {
+		private final Process process;
+		private final InputStream stream;
+		private final String prefix;
+		private final Logger logger;
+		private final ProcessOutput output;
+		private byte[] line;
+		private int lineLength;
+
+		private StreamSource(Process process, InputStream stream, String prefix, Logger logger, ProcessOutput output) {
+			this.process = process;
+			this.stream = stream;
+			this.prefix = prefix;
+			this.logger = logger;
+			this.output = output;
+		}
+
+		private void consume(byte[] bytes, int length) {
+			output.append(bytes, 0, length);
+			if (!logger.isDebugEnabled()) {
+				lineLength = 0;
+				return;
+			}
+			if (line == null) {
+				line = new byte[MAX_LINE_LENGTH];
+			}
+			for (int i = 0; i < length; i++) {
+				byte b = bytes[i];
+				if (b == '\n' || lineLength == line.length) {
+					logger.debug(prefix + new String(line, 0, lineLength, Charset.defaultCharset()));
+					lineLength = 0;
+				}
+				if (b != '\n' && b != '\r') {
+					line[lineLength++] = b;
+				}
+			}
+		}
+
+		private boolean hasExited() {
+			try {
+				process.exitValue();
+				return true;
+			} catch (IllegalThreadStateException illegalThreadStateException) {
+				return false;
+			}
+		}
+
+		private void close() {
+			try {
+				stream.close();
+			} catch (IOException ioException) {
+				// ignore
+			}
+		}
+	}
+}
@@ -0,0 +1,61 @@
+//
+// JODConverter - Java OpenDocument Converter
+// Copyright 2004-2012 Mirko Nasato and contributors
+//
+// JODConverter is Open Source software, you can redistribute it and/or
+// modify it under either (at your option) of the following licenses
+//
+// 1. The GNU Lesser General Public License v3 (or later)
+//    -> http://www.gnu.org/licenses/lgpl-3.0.txt
+// 2. The Apache License, Version 2.0
+//    -> http://www.apache.org/licenses/LICENSE-2.0.txt
+//
+package org.artofsolving.jodconverter.util;
+
+import java.nio.charset.Charset;
+
+/**
+ * The most recent output of a process, on stdout and stderr combined, kept in a
+ * fixed-size ring buffer so that it can be shown when the process dies unexpectedly.
+ */
+public final class ProcessOutput {
+
+	private final byte[] ring;
+	private int position;
+	private boolean wrapped;
+
+	ProcessOutput(int capacity) {
+		ring = new byte[capacity];
+	}
+
+	synchronized void append(byte[] bytes, int offset, int length) {
+		if (length >= ring.length) {
+			System.arraycopy(bytes, offset + length - ring.length, ring, 0, ring.length);
+			position = 0;
+			wrapped = true;
+			return;
+		}
+		int tailLength = Math.min(length, ring.length - position);
+		System.arraycopy(bytes, offset, ring, position, tailLength);
+		System.arraycopy(bytes, offset + tailLength, ring, 0, length - tailLength);
+		if (position + length >= ring.length) {
+			wrapped = true;
+		}
+		position = (position + length) % ring.length;
+	}
+
+	/**
+	 * @return the last lines output by the process, the first of which may be
+	 *         incomplete
+	 */
+	public synchronized String getRecentOutput() {
+		if (!wrapped) {
+			return new String(ring, 0, position, Charset.defaultCharset());
+		}
+		byte[] ordered = new byte[ring.length];
+		System.arraycopy(ring, position, ordered, 0, ring.length - position);
+		System.arraycopy(ring, 0, ordered, ring.length - position, position);
+		return new String(ordered, Charset.defaultCharset());
+	}
+
+}
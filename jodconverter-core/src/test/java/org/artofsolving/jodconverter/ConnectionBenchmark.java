@@ -0,0 +1,134 @@
+//
+// JODConverter - Java OpenDocument Converter
+// Copyright 2004-2012 Mirko Nasato and contributors
+//
+// JODConverter is Open Source software, you can redistribute it and/or
+// modify it under either (at your option) of the following licenses
+//
+// 1. The GNU Lesser General Public License v3 (or later)
+//    -> http://www.gnu.org/licenses/lgpl-3.0.txt
+// 2. The Apache License, Version 2.0
+//    -> http://www.apache.org/licenses/LICENSE-2.0.txt
+//
+package org.artofsolving.jodconverter;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.artofsolving.jodconverter.office.DefaultOfficeManagerConfiguration;
+import org.artofsolving.jodconverter.office.OfficeConnectionProtocol;
+import org.artofsolving.jodconverter.office.OfficeContext;
+import org.artofsolving.jodconverter.office.OfficeException;
+import org.artofsolving.jodconverter.office.OfficeManager;
+import org.artofsolving.jodconverter.office.OfficeTask;
+import org.artofsolving.jodconverter.office.OfficeUtils;
+
+import com.sun.star.frame.XDesktop;
+
+/**
+ * Compares {@link OfficeConnectionProtocol#SOCKET} and {@link OfficeConnectionProtocol#PIPE}
+ * connections: the round-trip latency of a trivial UNO call, and the throughput of
+ * converting the test documents with two processes. PIPE is skipped when the native
+ * library is not available.
+ * <p>
+ * Not run as part of the build; run from the jodconverter-core directory with
+ * <pre>
+ * java -cp ... -Doffice.home=/opt/libreoffice org.artofsolving.jodconverter.ConnectionBenchmark [iterations]
+ * </pre>
+ */
+public class ConnectionBenchmark {
+
+    private static final File DOCUMENTS_DIR = new File("src/test/resources/documents");
+    private static final String[][] CONVERSIONS = {
+        { "test.odt", "pdf" }, { "test.doc", "odt" }, { "test.ods", "xls" },
+        { "test.xls", "pdf" }, { "test.odp", "pdf" }, { "test.html", "odt" }
+    };
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        List<OfficeConnectionProtocol> protocols = new ArrayList<OfficeConnectionProtocol>();
+        protocols.add(OfficeConnectionProtocol.SOCKET);
+        if (OfficeUtils.isPipeAvailable()) {
+            protocols.add(OfficeConnectionProtocol.PIPE);
+        } else {
+            System.out.println("jpipe native library not found; skipping PIPE");
+        }
+        for (OfficeConnectionProtocol protocol : protocols) {
+            OfficeManager officeManager = new DefaultOfficeManagerConfiguration()
+                .setConnectionProtocol(protocol)
+                .setPortNumbers(2002, 2003)
+                .setPipeNames("benchmark_0", "benchmark_1")
+                .buildOfficeManager();
+            officeManager.start();
+            try {
+                measureLatency(protocol, officeManager, iterations);
+                measureThroughput(protocol, officeManager, iterations / 10);
+            } finally {
+                officeManager.stop();
+            }
+        }
+    }
+
+    private static void measureLatency(OfficeConnectionProtocol protocol, OfficeManager officeManager, int iterations) {
+        OfficeTask roundTrip = new OfficeTask() {
+            public void execute(OfficeContext context) throws OfficeException {
+                OfficeUtils.cast(XDesktop.class, context.getService(OfficeUtils.SERVICE_DESKTOP)).getCurrentComponent();
+            }
+        };
+        for (int i = 0; i < 10; i++) {
+            officeManager.execute(roundTrip);  // warm up
+        }
+        long[] durations = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long startTime = System.nanoTime();
+            officeManager.execute(roundTrip);
+            durations[i] = System.nanoTime() - startTime;
+        }
+        Arrays.sort(durations);
+        System.out.printf("%s round trip: p50 %.2fms, p95 %.2fms, p99 %.2fms%n", protocol,
+                durations[iterations / 2] / 1e6, durations[iterations * 95 / 100] / 1e6, durations[iterations * 99 / 100] / 1e6);
+    }
+
+    private static void measureThroughput(OfficeConnectionProtocol protocol, OfficeManager officeManager, int rounds) throws Exception {
+        final OfficeDocumentConverter converter = new OfficeDocumentConverter(officeManager);
+        List<Callable<Long>> conversions = new ArrayList<Callable<Long>>();
+        for (int round = 0; round < rounds; round++) {
+            for (final String[] conversion : CONVERSIONS) {
+                conversions.add(new Callable<Long>() {
+                    public Long call() throws Exception {
+                        File inputFile = new File(DOCUMENTS_DIR, conversion[0]);
+                        File outputFile = File.createTempFile("benchmark", "." + conversion[1]);
+                        try {
+                            converter.convert(inputFile, outputFile);
+                            return inputFile.length() + outputFile.length();
+                        } finally {
+                            outputFile.delete();
+                        }
+                    }
+                });
+            }
+        }
+        Collections.shuffle(conversions);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            long startTime = System.nanoTime();
+            long bytes = 0;
+            for (Future<Long> future : executor.invokeAll(conversions)) {
+                bytes += future.get();
+            }
+            double seconds = (System.nanoTime() - startTime) / 1e9;
+            System.out.printf("%s throughput: %.1f conversions/s, %.1f KB/s in+out%n", protocol,
+                    conversions.size() / seconds, bytes / 1024 / seconds);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+//
+// JODConverter - Java OpenDocument Converter
+// Copyright 2004-2012 Mirko Nasato and contributors
+//
+// JODConverter is Open Source software, you can redistribute it and/or
+// modify it under either (at your option) of the following licenses
+//
+// 1. The GNU Lesser General Public License v3 (or later)
+//    -> http://www.gnu.org/licenses/lgpl-3.0.txt
+// 2. The Apache License, Version 2.0
+//    -> http://www.apache.org/licenses/LICENSE-2.0.txt
+//
+package org.artofsolving.jodconverter;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.artofsolving.jodconverter.ConversionTrace.Phase;
+import org.testng.annotations.Test;
+
+@Test
+public class ConversionTraceTest {
+
+    public void accumulatePhases() {
+        ConversionTrace trace = new ConversionTrace();
+        trace.start("doc>pdf");
+        trace.taskStarted();
+        trace.add(Phase.LOAD, 3000000L);
+        trace.add(Phase.LOAD, 2000000L);
+        trace.add(Phase.STORE, 7000000L);
+        trace.finish();
+        assertEquals(trace.getConversionType(), "doc>pdf");
+        assertEquals(trace.getDuration(Phase.LOAD, TimeUnit.MILLISECONDS), 5L);
+        assertEquals(trace.getDuration(Phase.STORE, TimeUnit.MILLISECONDS), 7L);
+        assertEquals(trace.getDuration(Phase.CLOSE, TimeUnit.MILLISECONDS), 0L);
+        assertTrue(trace.getDuration(Phase.TOTAL, TimeUnit.NANOSECONDS) > 0L);
+    }
+
+    public void retryStartsOver() {
+        ConversionTrace trace = new ConversionTrace();
+        trace.start("doc>pdf");
+        trace.taskStarted();
+        trace.add(Phase.LOAD, 60000000L);
+        // the first attempt timed out, the task is retried with the same trace
+        trace.taskStarted();
+        trace.add(Phase.LOAD, 4000000L);
+        trace.finish();
+        assertEquals(trace.getDuration(Phase.LOAD, TimeUnit.MILLISECONDS), 4L);
+    }
+
+    public void percentiles() {
+        TraceStatistics statistics = new TraceStatistics();
+        for (int i = 1; i <= 100; i++) {
+            ConversionTrace trace = new ConversionTrace();
+            trace.start("doc>pdf");
+            trace.add(Phase.STORE, TimeUnit.MILLISECONDS.toNanos(i));
+            statistics.record(trace);
+        }
+        statistics.record(new ConversionTrace());
+
+        assertEquals(statistics.getConversionTypes().size(), 1);
+        assertEquals(statistics.getCount("doc>pdf"), 100);
+        assertEquals(statistics.getPercentile("doc>pdf", Phase.STORE, 50, TimeUnit.MILLISECONDS), 50L);
+        assertEquals(statistics.getPercentile("doc>pdf", Phase.STORE, 95, TimeUnit.MILLISECONDS), 95L);
+        assertEquals(statistics.getPercentile("doc>pdf", Phase.STORE, 100, TimeUnit.MILLISECONDS), 100L);
+        assertEquals(statistics.getPercentile("doc>pdf", Phase.LOAD, 95, TimeUnit.MILLISECONDS), 0L);
+        assertEquals(statistics.getPercentile("xls>pdf", Phase.STORE, 95, TimeUnit.MILLISECONDS), -1L);
+    }
+
+    public void boundedConversionTypes() {
+        TraceStatistics statistics = new TraceStatistics();
+        for (int i = 0; i < TraceStatistics.MAX_CONVERSION_TYPES + 10; i++) {
+            ConversionTrace trace = new ConversionTrace();
+            trace.start("x" + i + ">pdf");
+            statistics.record(trace);
+        }
+        assertEquals(statistics.getConversionTypes().size(), TraceStatistics.MAX_CONVERSION_TYPES);
+        assertEquals(statistics.getCount("x0>pdf"), 0);
+        assertEquals(statistics.getCount("x" + (TraceStatistics.MAX_CONVERSION_TYPES + 9) + ">pdf"), 1);
+    }
+
+    public void percentilesOverRecentHistory() {
+        TraceStatistics statistics = new TraceStatistics();
+        for (int i = 0; i < 1500; i++) {
+            ConversionTrace trace = new ConversionTrace();
+            trace.start("doc>pdf");
+            trace.add(Phase.STORE, TimeUnit.MILLISECONDS.toNanos(i < 500 ? 1000 : 10));
+            statistics.record(trace);
+        }
+        // the slow conversions fell out of the last 1000
+        assertEquals(statistics.getPercentile("doc>pdf", Phase.STORE, 100, TimeUnit.MILLISECONDS), 10L);
+        assertEquals(statistics.getCount("doc>pdf"), 1500);
+    }
+
+}
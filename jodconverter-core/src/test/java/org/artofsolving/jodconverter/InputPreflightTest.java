@@ -0,0 +1,154 @@
+//
+// JODConverter - Java OpenDocument Converter
+// Copyright 2004-2012 Mirko Nasato and contributors
+//
+// JODConverter is Open Source software, you can redistribute it and/or
+// modify it under either (at your option) of the following licenses
+//
+// 1. The GNU Lesser General Public License v3 (or later)
+//    -> http://www.gnu.org/licenses/lgpl-3.0.txt
+// 2. The Apache License, Version 2.0
+//    -> http://www.apache.org/licenses/LICENSE-2.0.txt
+//
+package org.artofsolving.jodconverter;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.artofsolving.jodconverter.document.DefaultDocumentFormatRegistry;
+import org.artofsolving.jodconverter.document.DocumentFormat;
+import org.artofsolving.jodconverter.document.DocumentFormatRegistry;
+import org.testng.annotations.Test;
+
+@Test
+public class InputPreflightTest {
+
+    private final DocumentFormatRegistry registry = new DefaultDocumentFormatRegistry();
+    private final InputPreflight preflight = new InputPreflight(registry);
+
+    public void acceptTestDocuments() {
+        for (String name : new String[] { "test.doc", "test.xls", "test.ppt", "test.odt", "test.ods", "test.odp", "test.odg",
+                "test.sxw", "test.sxc", "test.sxi", "test.rtf", "test.html", "test.txt", "test.csv" }) {
+            DocumentFormat format = registry.getFormatByExtension(FilenameUtils.getExtension(name));
+            assertEquals(preflight.check(new File("src/test/resources/documents", name), format), format, name);
+        }
+    }
+
+    public void rerouteMislabelledDocument() throws IOException {
+        File mislabelled = File.createTempFile("test", ".doc");
+        mislabelled.deleteOnExit();
+        FileUtils.copyFile(new File("src/test/resources/documents/test.odt"), mislabelled);
+        DocumentFormat format = preflight.check(mislabelled, registry.getFormatByExtension("doc"));
+        assertEquals(format, registry.getFormatByExtension("odt"));
+    }
+
+    public void rejectEmptyDocument() throws IOException {
+        File empty = File.createTempFile("test", ".odt");
+        empty.deleteOnExit();
+        assertRejected(empty, "odt");
+    }
+
+    public void rejectTruncatedDocument() throws IOException {
+        File truncated = File.createTempFile("test", ".odt");
+        truncated.deleteOnExit();
+        byte[] bytes = FileUtils.readFileToByteArray(new File("src/test/resources/documents/test.odt"));
+        FileOutputStream output = new FileOutputStream(truncated);
+        try {
+            output.write(bytes, 0, bytes.length / 2);
+        } finally {
+            output.close();
+        }
+        assertRejected(truncated, "odt");
+    }
+
+    public void rejectBinaryGarbage() throws IOException {
+        File garbage = File.createTempFile("test", ".xls");
+        garbage.deleteOnExit();
+        FileUtils.writeByteArrayToFile(garbage, new byte[] { 0x7F, 'E', 'L', 'F', 2, 1, 1, 0, 0, 0 });
+        assertRejected(garbage, "xls");
+    }
+
+    public void acceptLargeOleDocument() throws IOException {
+        // the directory continues in a sector whose FAT entry lies beyond the header,
+        // which the preflight does not follow, so the content cannot be identified
+        File large = File.createTempFile("test", ".doc");
+        large.deleteOnExit();
+        int farSector = 109 * 128 + 48;
+        RandomAccessFile file = new RandomAccessFile(large, "rw");
+        try {
+            byte[] header = new byte[512];
+            System.arraycopy(new byte[] { (byte) 0xD0, (byte) 0xCF, 0x11, (byte) 0xE0, (byte) 0xA1, (byte) 0xB1, 0x1A, (byte) 0xE1 }, 0, header, 0, 8);
+            writeInt(header, 0x1C, 0x9FFFE);  // byte order mark, sector shift 9
+            writeInt(header, 0x30, 0);  // first directory sector
+            writeInt(header, 0x4C, 1);  // first FAT sector
+            file.write(header);
+            byte[] directory = new byte[512];
+            byte[] name = "Root Entry".getBytes("UTF-16LE");
+            System.arraycopy(name, 0, directory, 0, name.length);
+            directory[0x40] = (byte) (name.length + 2);
+            file.write(directory);
+            byte[] fat = new byte[512];
+            writeInt(fat, 0, farSector);
+            file.write(fat);
+            file.setLength((farSector + 2L) << 9);
+        } finally {
+            file.close();
+        }
+        DocumentFormat doc = registry.getFormatByExtension("doc");
+        assertEquals(preflight.check(large, doc), doc);
+    }
+
+    public void acceptUnregisteredZipPackage() throws IOException {
+        File unknown = File.createTempFile("test", ".odt");
+        unknown.deleteOnExit();
+        ZipOutputStream output = new ZipOutputStream(new FileOutputStream(unknown));
+        try {
+            output.putNextEntry(new ZipEntry("mimetype"));
+            output.write("application/vnd.oasis.opendocument.text-master".getBytes("US-ASCII"));
+            output.closeEntry();
+            output.putNextEntry(new ZipEntry("content.xml"));
+            output.write("<office:document-content/>".getBytes("US-ASCII"));
+            output.closeEntry();
+        } finally {
+            output.close();
+        }
+        DocumentFormat odt = registry.getFormatByExtension("odt");
+        assertEquals(preflight.check(unknown, odt), odt);
+        // but a ZIP is never a legacy binary document
+        assertRejected(unknown, "doc");
+    }
+
+    public void acceptPdfDocument() throws IOException {
+        // office imports PDF through Draw even though the format has no input family
+        File pdf = File.createTempFile("test", ".pdf");
+        pdf.deleteOnExit();
+        FileUtils.writeStringToFile(pdf, "%PDF-1.4\n%%EOF\n", "US-ASCII");
+        DocumentFormat format = registry.getFormatByExtension("pdf");
+        assertEquals(preflight.check(pdf, format), format);
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        for (int i = 0; i < 4; i++) {
+            bytes[offset + i] = (byte) (value >>> (8 * i));
+        }
+    }
+
+    private void assertRejected(File file, String extension) {
+        try {
+            preflight.check(file, registry.getFormatByExtension(extension));
+            fail("preflight should reject " + file.getName());
+        } catch (InvalidInputException invalidInputException) {
+            // expected
+        }
+    }
+
+}
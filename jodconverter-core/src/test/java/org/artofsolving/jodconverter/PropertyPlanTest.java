@@ -0,0 +1,44 @@
+//
+// JODConverter - Java OpenDocument Converter
+// Copyright 2004-2012 Mirko Nasato and contributors
+//
+// JODConverter is Open Source software, you can redistribute it and/or
+// modify it under either (at your option) of the following licenses
+//
+// 1. The GNU Lesser General Public License v3 (or later)
+//    -> http://www.gnu.org/licenses/lgpl-3.0.txt
+// 2. The Apache License, Version 2.0
+//    -> http://www.apache.org/licenses/LICENSE-2.0.txt
+//
+package org.artofsolving.jodconverter;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Collections;
+
+import org.artofsolving.jodconverter.document.DefaultDocumentFormatRegistry;
+import org.artofsolving.jodconverter.document.DocumentFamily;
+import org.artofsolving.jodconverter.document.DocumentFormat;
+import org.testng.annotations.Test;
+
+@Test
+public class PropertyPlanTest {
+
+    public void staleAfterFormatChange() {
+        DefaultDocumentFormatRegistry registry = new DefaultDocumentFormatRegistry();
+        DocumentFormat inputFormat = registry.getFormatByExtension("odt");
+        DocumentFormat outputFormat = registry.getFormatByExtension("pdf");
+        PropertyPlan plan = new PropertyPlan(null, inputFormat, outputFormat);
+        assertTrue(plan.isCurrent(inputFormat, outputFormat));
+
+        outputFormat.setStoreProperties(DocumentFamily.TEXT, Collections.singletonMap("FilterName", "custom_pdf_Export"));
+        assertFalse(plan.isCurrent(inputFormat, outputFormat));
+
+        PropertyPlan newPlan = new PropertyPlan(null, inputFormat, outputFormat);
+        assertTrue(newPlan.isCurrent(inputFormat, outputFormat));
+        assertEquals(newPlan.getStoreProperties(DocumentFamily.TEXT)[0].Value, "custom_pdf_Export");
+    }
+
+}
@@ -0,0 +1,111 @@
+//
+// JODConverter - Java OpenDocument Converter
+// Copyright 2004-2012 Mirko Nasato and contributors
+//
+// JODConverter is Open Source software, you can redistribute it and/or
+// modify it under either (at your option) of the following licenses
+//
+// 1. The GNU Lesser General Public License v3 (or later)
+//    -> http://www.gnu.org/licenses/lgpl-3.0.txt
+// 2. The Apache License, Version 2.0
+//    -> http://www.apache.org/licenses/LICENSE-2.0.txt
+//
+package org.artofsolving.jodconverter.cli;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.artofsolving.jodconverter.cli.BatchConversion.Item;
+import org.artofsolving.jodconverter.cli.BatchConversion.Status;
+import org.artofsolving.jodconverter.document.DefaultDocumentFormatRegistry;
+import org.testng.annotations.Test;
+
+@Test
+public class BatchConversionTest {
+
+    public void listDirectoryTree() throws IOException {
+        File inputDir = createTempDir();
+        try {
+            FileUtils.touch(new File(inputDir, "a.doc"));
+            FileUtils.touch(new File(inputDir, "b.pdf"));
+            FileUtils.touch(new File(inputDir, "c.unknown"));
+            FileUtils.touch(new File(inputDir, "sub/d.odt"));
+            File outputDir = new File("out");
+            List<Item> items = BatchConversion.fromDirectory(inputDir, outputDir, "pdf", new DefaultDocumentFormatRegistry());
+            assertEquals(items.size(), 2);
+            assertEquals(items.get(0).getOutputFile(), new File(outputDir, "a.pdf"));
+            assertEquals(items.get(1).getOutputFile(), new File(outputDir, "sub/d.pdf"));
+        } finally {
+            FileUtils.deleteDirectory(inputDir);
+        }
+    }
+
+    public void readManifest() throws IOException {
+        File manifest = File.createTempFile("manifest", ".txt");
+        try {
+            FileUtils.writeStringToFile(manifest, "# comment\n/in/a.doc\n\n/in/b.doc\t/out/b.odt\n", "UTF-8");
+            List<Item> items = BatchConversion.fromManifest(manifest, "pdf");
+            assertEquals(items.size(), 2);
+            assertEquals(items.get(0).getOutputFile(), new File("/in/a.pdf"));
+            assertEquals(items.get(1).getOutputFile(), new File("/out/b.odt"));
+        } finally {
+            manifest.delete();
+        }
+    }
+
+    public void skipUpToDateOutput() throws IOException {
+        File dir = createTempDir();
+        try {
+            File inputFile = new File(dir, "a.doc");
+            File outputFile = new File(dir, "a.pdf");
+            FileUtils.touch(inputFile);
+            FileUtils.touch(outputFile);
+            outputFile.setLastModified(inputFile.lastModified() + 1000);
+            // no converter needed, as nothing is converted
+            BatchConversion batchConversion = new BatchConversion(null, 1, System.out);
+            assertEquals(batchConversion.convert(new Item(inputFile, outputFile)), Status.SKIPPED);
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    public void failCollidingOutputs() throws Exception {
+        File dir = createTempDir();
+        try {
+            FileUtils.touch(new File(dir, "a.doc"));
+            FileUtils.touch(new File(dir, "a.docx"));
+            List<Item> items = BatchConversion.fromDirectory(dir, dir, "pdf", new DefaultDocumentFormatRegistry());
+            assertEquals(items.size(), 2);
+
+            // neither is converted, so no converter is needed
+            StringWriter report = new StringWriter();
+            BatchConversion batchConversion = new BatchConversion(null, 1, System.out);
+            assertFalse(batchConversion.run(items, new PrintWriter(report)));
+            String[] lines = report.toString().split("\r?\n");
+            assertEquals(lines.length, 2);
+            for (String line : lines) {
+                assertTrue(line.startsWith("FAILED\t"), line);
+            }
+            assertEquals(Arrays.asList(dir.list()).size(), 2);
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    private File createTempDir() throws IOException {
+        File dir = File.createTempFile("batch", "");
+        dir.delete();
+        dir.mkdir();
+        return dir;
+    }
+
+}
@@ -0,0 +1,132 @@
+//
+// JODConverter - Java OpenDocument Converter
+// Copyright 2004-2012 Mirko Nasato and contributors
+//
+// JODConverter is Open Source software, you can redistribute it and/or
+// modify it under either (at your option) of the following licenses
+//
+// 1. The GNU Lesser General Public License v3 (or later)
+//    -> http://www.gnu.org/licenses/lgpl-3.0.txt
+// 2. The Apache License, Version 2.0
+//    -> http://www.apache.org/licenses/LICENSE-2.0.txt
+//
+package org.artofsolving.jodconverter.cli;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.artofsolving.jodconverter.OfficeDocumentConverter;
+import org.artofsolving.jodconverter.office.DocumentTask;
+import org.artofsolving.jodconverter.office.OfficeException;
+import org.artofsolving.jodconverter.office.OfficeManager;
+import org.artofsolving.jodconverter.office.OfficeTask;
+import org.testng.annotations.Test;
+
+/**
+ * Exercises the daemon protocol with an office manager that does not need office.
+ */
+@Test
+public class ConversionDaemonTest {
+
+    private static class StubOfficeManager implements OfficeManager {
+
+        public void execute(OfficeTask task) throws OfficeException {
+            execute(task, Long.MAX_VALUE);
+        }
+
+        public void execute(OfficeTask task, long deadline) throws OfficeException {
+            if (((DocumentTask) task).getInputFile().getName().startsWith("broken")) {
+                throw new OfficeException("could not load document");
+            }
+        }
+
+        public void start() throws OfficeException {
+            // nothing to do
+        }
+
+        public void stop() throws OfficeException {
+            // nothing to do
+        }
+
+        public boolean isRunning() {
+            return true;
+        }
+
+    }
+
+    public void handshakeAndCommands() throws Exception {
+        File dir = File.createTempFile("daemon", "");
+        dir.delete();
+        dir.mkdir();
+        File daemonFile = new File(dir, "daemon");
+        final ConversionDaemon daemon = new ConversionDaemon(new OfficeDocumentConverter(new StubOfficeManager()), daemonFile);
+        Thread daemonThread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    daemon.run();
+                } catch (IOException ioException) {
+                    throw new RuntimeException(ioException);
+                }
+            }
+        });
+        daemonThread.start();
+        try {
+            for (int i = 0; i < 100 && !daemonFile.isFile(); i++) {
+                Thread.sleep(50);
+            }
+            File inputFile = new File(dir, "a.doc");
+            File brokenFile = new File(dir, "broken.doc");
+            FileUtils.writeStringToFile(inputFile, "text", "UTF-8");
+            FileUtils.writeStringToFile(brokenFile, "text", "UTF-8");
+
+            // a client with the wrong token is disconnected before any command is run
+            @SuppressWarnings("unchecked")
+            List<String> lines = FileUtils.readLines(daemonFile, "UTF-8");
+            File forgedFile = new File(dir, "forged");
+            FileUtils.writeStringToFile(forgedFile, lines.get(0) + "\n" + "0123456789abcdef0123456789abcdef\n", "UTF-8");
+            DaemonClient forgedClient = DaemonClient.connect(forgedFile);
+            assertNotNull(forgedClient);
+            try {
+                forgedClient.convert(inputFile, new File(dir, "a.pdf"));
+                fail("converted with an invalid token");
+            } catch (IOException ioException) {
+                // expected
+            } finally {
+                forgedClient.close();
+            }
+
+            DaemonClient client = DaemonClient.connect(daemonFile);
+            assertNotNull(client);
+            try {
+                client.convert(inputFile, new File(dir, "a.pdf"));
+                try {
+                    client.convert(brokenFile, new File(dir, "broken.pdf"));
+                    fail("conversion did not fail");
+                } catch (OfficeException officeException) {
+                    assertEquals(officeException.getMessage(), "could not load document");
+                }
+                // the connection is still usable after a failed conversion
+                client.convert(inputFile, new File(dir, "b.pdf"));
+                client.stopDaemon();
+            } finally {
+                client.close();
+            }
+            daemonThread.join(5000);
+            assertFalse(daemonThread.isAlive());
+            assertFalse(daemonFile.exists());
+            assertNull(DaemonClient.connect(daemonFile));
+        } finally {
+            daemon.stop();
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+}
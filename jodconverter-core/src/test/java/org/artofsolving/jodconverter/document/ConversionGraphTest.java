@@ -0,0 +1,97 @@
+//
+// JODConverter - Java OpenDocument Converter
+// Copyright 2004-2012 Mirko Nasato and contributors
+//
+// JODConverter is Open Source software, you can redistribute it and/or
+// modify it under either (at your option) of the following licenses
+//
+// 1. The GNU Lesser General Public License v3 (or later)
+//    -> http://www.gnu.org/licenses/lgpl-3.0.txt
+// 2. The Apache License, Version 2.0
+//    -> http://www.apache.org/licenses/LICENSE-2.0.txt
+//
+package org.artofsolving.jodconverter.document;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+@Test
+public class ConversionGraphTest {
+
+    private final DocumentFormat text = format("text", DocumentFamily.TEXT, DocumentFamily.TEXT);
+    private final DocumentFormat sheet = format("sheet", DocumentFamily.SPREADSHEET, DocumentFamily.TEXT, DocumentFamily.SPREADSHEET);
+    private final DocumentFormat chart = format("chart", null, DocumentFamily.SPREADSHEET);
+    private final DocumentFormat print = format("print", null, DocumentFamily.TEXT, DocumentFamily.SPREADSHEET);
+
+    public void directRouteByDefault() {
+        ConversionGraph graph = new ConversionGraph(Arrays.asList(text, sheet, chart, print));
+        assertEquals(graph.findRoute(text, print), Arrays.asList(text, print));
+        assertEquals(graph.getDirectOutputFormats(text), Arrays.asList(sheet, print));
+        assertTrue(graph.hasDirectRoute(text, print));
+        assertFalse(graph.hasDirectRoute(text, chart));
+    }
+
+    public void multiHopWhenNoDirectRoute() {
+        ConversionGraph graph = new ConversionGraph(Arrays.asList(text, sheet, chart, print));
+        assertEquals(graph.findRoute(text, chart), Arrays.asList(text, sheet, chart));
+        assertTrue(graph.getReachableFormats(text).contains(chart));
+        assertNull(graph.findRoute(chart, text));
+
+        graph.setMaxHops(1);
+        assertNull(graph.findRoute(text, chart));
+        assertEquals(graph.getReachableFormats(text), new LinkedHashSet<DocumentFormat>(Arrays.asList(sheet, print)));
+    }
+
+    public void cheapestRouteByMeasuredCost() {
+        ConversionGraph graph = new ConversionGraph(Arrays.asList(text, sheet, chart, print));
+        graph.recordCost(text, print, 5000);
+        graph.recordCost(text, sheet, 200);
+        graph.recordCost(sheet, print, 300);
+        List<DocumentFormat> route = graph.findRoute(text, print);
+        assertEquals(route, Arrays.asList(text, sheet, print));
+
+        // the moving average follows faster conversions within a few measurements
+        for (int i = 0; i < 20; i++) {
+            graph.recordCost(text, print, 100);
+        }
+        assertTrue(graph.getCost(text, print) < 500);
+        assertEquals(graph.findRoute(text, print), Arrays.asList(text, print));
+    }
+
+    public void routeFromTheRoundThatSetTheCost() {
+        DocumentFormat s = format("s", DocumentFamily.TEXT);
+        DocumentFormat a = format("a", DocumentFamily.TEXT, DocumentFamily.TEXT);
+        DocumentFormat b = format("b", DocumentFamily.TEXT, DocumentFamily.TEXT);
+        DocumentFormat t = format("t", null, DocumentFamily.TEXT);
+        ConversionGraph graph = new ConversionGraph(Arrays.asList(s, a, b, t));
+        graph.recordCost(s, a, 1000);
+        graph.recordCost(s, b, 1);
+        graph.recordCost(b, a, 1);
+        graph.recordCost(a, t, 1);
+        graph.recordCost(b, t, 5000);
+        graph.recordCost(s, t, 5000);
+        // s>b>a>t would be cheaper, but takes three hops
+        assertEquals(graph.findRoute(s, t), Arrays.asList(s, a, t));
+        graph.setMaxHops(3);
+        assertEquals(graph.findRoute(s, t), Arrays.asList(s, b, a, t));
+    }
+
+    private static DocumentFormat format(String extension, DocumentFamily inputFamily, DocumentFamily... storeFamilies) {
+        DocumentFormat format = new DocumentFormat(extension, extension, "application/x-" + extension);
+        format.setInputFamily(inputFamily);
+        for (DocumentFamily family : storeFamilies) {
+            format.setStoreProperties(family, Collections.singletonMap("FilterName", extension));
+        }
+        return format;
+    }
+
+}
@@ -0,0 +1,108 @@
+//
+// JODConverter - Java OpenDocument Converter
+// Copyright 2004-2012 Mirko Nasato and contributors
+//
+// JODConverter is Open Source software, you can redistribute it and/or
+// modify it under either (at your option) of the following licenses
+//
+// 1. The GNU Lesser General Public License v3 (or later)
+//    -> http://www.gnu.org/licenses/lgpl-3.0.txt
+// 2. The Apache License, Version 2.0
+//    -> http://www.apache.org/licenses/LICENSE-2.0.txt
+//
+package org.artofsolving.jodconverter.document;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+import org.json.JSONException;
+import org.testng.annotations.Test;
+
+@Test
+public class DocumentFormatRegistrySnapshotTest {
+
+    public void sharedDefaultInstance() {
+        DocumentFormatRegistrySnapshot registry = DefaultDocumentFormatRegistry.getInstance();
+        assertSame(DefaultDocumentFormatRegistry.getInstance(), registry);
+        assertEquals(registry.getFormatByExtension("PDF").getMediaType(), "application/pdf");
+        assertEquals(registry.getFormatByMediaType("application/msword").getExtension(), "doc");
+        assertEquals(registry.getOutputFormats(DocumentFamily.TEXT).size(), new DefaultDocumentFormatRegistry().getOutputFormats(DocumentFamily.TEXT).size());
+    }
+
+    public void formatsCannotBeModified() {
+        DocumentFormat txt = DefaultDocumentFormatRegistry.getInstance().getFormatByExtension("txt");
+        try {
+            txt.setExtension("text");
+            fail("format modified");
+        } catch (UnsupportedOperationException unsupportedOperationException) {
+            // expected
+        }
+        try {
+            @SuppressWarnings("unchecked")
+            Map<String,Object> loadProperties = (Map<String,Object>) txt.getLoadProperties();
+            loadProperties.put("FilterOptions", "latin1");
+            fail("properties modified");
+        } catch (UnsupportedOperationException unsupportedOperationException) {
+            // expected
+        }
+    }
+
+    public void binaryRoundTrip() throws IOException, JSONException {
+        DocumentFormatRegistrySnapshot original = DocumentFormatRegistrySnapshot.of(readJsonRegistry());
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        original.writeTo(output);
+        DocumentFormatRegistrySnapshot copy = DocumentFormatRegistrySnapshot.readFrom(new ByteArrayInputStream(output.toByteArray()));
+        assertEquals(copy.getFormats().size(), original.getFormats().size());
+        assertFormatsEqual(copy, original);
+    }
+
+    public void formatsWithMissingFields() throws IOException {
+        SimpleDocumentFormatRegistry registry = new SimpleDocumentFormatRegistry();
+        registry.addFormat(new DocumentFormat("Custom", "CUS", null));
+        registry.addFormat(new DocumentFormat(null, null, "application/x-custom"));
+        DocumentFormatRegistrySnapshot original = DocumentFormatRegistrySnapshot.of(registry);
+        assertEquals(original.getFormatByExtension("cus").getName(), "Custom");
+        assertEquals(original.getFormatByExtension("CUS").getName(), "Custom");
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        original.writeTo(output);
+        DocumentFormatRegistrySnapshot copy = DocumentFormatRegistrySnapshot.readFrom(new ByteArrayInputStream(output.toByteArray()));
+        assertEquals(copy.getFormatByExtension("cus").getMediaType(), null);
+        assertEquals(copy.getFormatByMediaType("application/x-custom").getExtension(), null);
+    }
+
+    /**
+     * The JSON registry is a superset of the default one
+     */
+    public void jsonMatchesDefaults() throws IOException, JSONException {
+        assertFormatsEqual(DocumentFormatRegistrySnapshot.of(readJsonRegistry()), DefaultDocumentFormatRegistry.getInstance());
+    }
+
+    private JsonDocumentFormatRegistry readJsonRegistry() throws IOException, JSONException {
+        InputStream input = getClass().getResourceAsStream("/document-formats.js");
+        try {
+            return new JsonDocumentFormatRegistry(input);
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+    }
+
+    private void assertFormatsEqual(DocumentFormatRegistrySnapshot actual, DocumentFormatRegistrySnapshot expected) {
+        for (DocumentFormat expectedFormat : expected.getFormats()) {
+            DocumentFormat actualFormat = actual.getFormatByExtension(expectedFormat.getExtension());
+            assertEquals(actualFormat.getName(), expectedFormat.getName());
+            assertEquals(actualFormat.getMediaType(), expectedFormat.getMediaType());
+            assertEquals(actualFormat.getInputFamily(), expectedFormat.getInputFamily());
+            assertEquals(actualFormat.getLoadProperties(), expectedFormat.getLoadProperties());
+            assertEquals(actualFormat.getStorePropertiesByFamily(), expectedFormat.getStorePropertiesByFamily());
+        }
+    }
+
+}
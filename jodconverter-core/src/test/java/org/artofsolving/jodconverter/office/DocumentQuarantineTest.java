@@ -0,0 +1,85 @@
+//
+// JODConverter - Java OpenDocument Converter
+// Copyright 2004-2012 Mirko Nasato and contributors
+//
+// JODConverter is Open Source software, you can redistribute it and/or
+// modify it under either (at your option) of the following licenses
+//
+// 1. The GNU Lesser General Public License v3 (or later)
+//    -> http://www.gnu.org/licenses/lgpl-3.0.txt
+// 2. The Apache License, Version 2.0
+//    -> http://www.apache.org/licenses/LICENSE-2.0.txt
+//
+package org.artofsolving.jodconverter.office;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.Test;
+
+@Test
+public class DocumentQuarantineTest {
+
+    private static class TestQuarantine extends DocumentQuarantine {
+        long now;
+        TestQuarantine(int maxStrikes, int maxDocuments, long expiry) {
+            super(maxStrikes, maxDocuments, expiry);
+        }
+        @Override
+        long currentTimeMillis() {
+            return now;
+        }
+    }
+
+    public void quarantineAfterMaxStrikes() {
+        DocumentQuarantine quarantine = new TestQuarantine(2, 10, 1000L);
+        quarantine.checkAdmitted("doc");
+        assertFalse(quarantine.recordStrike("doc"));
+        quarantine.checkAdmitted("doc");
+        assertTrue(quarantine.recordStrike("doc"));
+        try {
+            quarantine.checkAdmitted("doc");
+            fail("quarantined document admitted");
+        } catch (OfficeException officeException) {
+            // expected
+        }
+        quarantine.checkAdmitted("other");
+    }
+
+    public void strikesExpire() {
+        TestQuarantine quarantine = new TestQuarantine(1, 10, 1000L);
+        assertTrue(quarantine.recordStrike("doc"));
+        quarantine.now = 1001L;
+        quarantine.checkAdmitted("doc");
+        assertEquals(quarantine.size(), 0);
+    }
+
+    public void boundedSize() {
+        DocumentQuarantine quarantine = new TestQuarantine(1, 2, 1000L);
+        quarantine.recordStrike("a");
+        quarantine.recordStrike("b");
+        quarantine.recordStrike("c");
+        assertEquals(quarantine.size(), 2);
+        quarantine.checkAdmitted("a");
+    }
+
+    public void fingerprintByContent() throws Exception {
+        File file = File.createTempFile("quarantine", ".odt");
+        try {
+            FileUtils.writeStringToFile(file, "first");
+            String first = DocumentQuarantine.fingerprint(file);
+            FileUtils.writeStringToFile(file, "other");
+            assertFalse(DocumentQuarantine.fingerprint(file).equals(first));
+            FileUtils.writeStringToFile(file, "first");
+            assertEquals(DocumentQuarantine.fingerprint(file), first);
+        } finally {
+            file.delete();
+        }
+    }
+
+}
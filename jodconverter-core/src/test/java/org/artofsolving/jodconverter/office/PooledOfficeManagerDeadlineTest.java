@@ -0,0 +1,129 @@
+//
+// JODConverter - Java OpenDocument Converter
+// Copyright 2004-2012 Mirko Nasato and contributors
+//
+// JODConverter is Open Source software, you can redistribute it and/or
+// modify it under either (at your option) of the following licenses
+//
+// 1. The GNU Lesser General Public License v3 (or later)
+//    -> http://www.gnu.org/licenses/lgpl-3.0.txt
+// 2. The Apache License, Version 2.0
+//    -> http://www.apache.org/licenses/LICENSE-2.0.txt
+//
+package org.artofsolving.jodconverter.office;
+
+import static org.artofsolving.jodconverter.ReflectionUtils.getPrivateField;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.testng.annotations.Test;
+
+/**
+ * Deadlines given by callers, with a manager that is never connected to office:
+ * tasks stay queued unless the manager is made available by hand.
+ */
+@Test
+public class PooledOfficeManagerDeadlineTest {
+
+    private static class SleepingTask implements OfficeTask {
+
+        private final long sleepTime;
+        private volatile boolean completed = false;
+
+        public SleepingTask(long sleepTime) {
+            this.sleepTime = sleepTime;
+        }
+
+        public void execute(OfficeContext context) throws OfficeException {
+            try {
+                Thread.sleep(sleepTime);
+            } catch (InterruptedException interruptedException) {
+                throw new OfficeException("interrupted", interruptedException);
+            }
+            completed = true;
+        }
+
+        public boolean isCompleted() {
+            return completed;
+        }
+
+    }
+
+    public void deadlineExpiresWhileQueued() throws Exception {
+        PooledOfficeManager manager = new PooledOfficeManager(UnoUrl.pipe("deadline"));
+        SleepingTask task = new SleepingTask(0L);
+        try {
+            manager.execute(task, System.currentTimeMillis() + 100L);
+            fail("deadline ignored");
+        } catch (DeadlineExceededException deadlineExceededException) {
+            // expected
+        } finally {
+            shutdown(manager);
+        }
+        assertFalse(task.isCompleted());
+    }
+
+    public void executionTimeoutExpiresWhileQueued() throws Exception {
+        PooledOfficeManagerSettings settings = new PooledOfficeManagerSettings(UnoUrl.pipe("deadline"));
+        settings.setTaskExecutionTimeout(100L);
+        PooledOfficeManager manager = new PooledOfficeManager(settings);
+        try {
+            manager.execute(new SleepingTask(0L), Long.MAX_VALUE);
+            fail("task executed without office");
+        } catch (DeadlineExceededException deadlineExceededException) {
+            fail("no deadline given");
+        } catch (OfficeException officeException) {
+            // retried on another process rather than held against the task
+            assertTrue(officeException.getCause() instanceof TaskNotStartedException);
+        } finally {
+            shutdown(manager);
+        }
+    }
+
+    public void deadlineExpiresWhileExecuting() throws Exception {
+        PooledOfficeManager manager = new PooledOfficeManager(UnoUrl.pipe("deadline"));
+        makeAvailable(manager);
+        SleepingTask task = new SleepingTask(500L);
+        try {
+            manager.execute(task, System.currentTimeMillis() + 100L);
+            fail("deadline ignored");
+        } catch (DeadlineExceededException deadlineExceededException) {
+            // expected
+        }
+        try {
+            // not restarted: the task is left to complete
+            assertEquals(getState(manager), "AVAILABLE");
+            for (int i = 0; i < 50 && !task.isCompleted(); i++) {
+                Thread.sleep(100L);
+            }
+            assertTrue(task.isCompleted());
+        } finally {
+            shutdown(manager);
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private void makeAvailable(PooledOfficeManager manager) throws Exception {
+        AtomicReference state = (AtomicReference) getPrivateField(manager, "state");
+        state.set(Enum.valueOf(((Enum) state.get()).getDeclaringClass(), "AVAILABLE"));
+        ((SuspendableThreadPoolExecutor) getPrivateField(manager, "taskExecutor")).setAvailable(true);
+    }
+
+    private String getState(PooledOfficeManager manager) throws Exception {
+        return ((AtomicReference<?>) getPrivateField(manager, "state")).get().toString();
+    }
+
+    /**
+     * Rather than stop(), which would try to stop an office process that never started
+     */
+    private void shutdown(PooledOfficeManager manager) throws Exception {
+        ((ExecutorService) getPrivateField(manager, "taskExecutor")).shutdownNow();
+        ((ExecutorService) getPrivateField(manager, "watchdog")).shutdownNow();
+    }
+
+}
@@ -20,6 +20,7 @@ import static org.testng.Assert.fail;
 
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 import org.artofsolving.jodconverter.ReflectionUtils;
@@ -154,15 +155,15 @@ public class PooledOfficeManagerTest {
             MockOfficeTask task = new MockOfficeTask();
             officeManager.execute(task);
             assertTrue(task.isCompleted());
-            int taskCount = (Integer) ReflectionUtils.getPrivateField(officeManager, "taskCount");
-            assertEquals(taskCount, i + 1);
+            AtomicInteger taskCount = (AtomicInteger) ReflectionUtils.getPrivateField(officeManager, "taskCount");
+            assertEquals(taskCount.get(), i + 1);
         }
 
         MockOfficeTask task = new MockOfficeTask();
         officeManager.execute(task);
         assertTrue(task.isCompleted());
-        int taskCount = (Integer) ReflectionUtils.getPrivateField(officeManager, "taskCount");
-        assertEquals(taskCount, 0);  //FIXME should be 1 to be precise
+        AtomicInteger taskCount = (AtomicInteger) ReflectionUtils.getPrivateField(officeManager, "taskCount");
+        assertEquals(taskCount.get(), 1);
 
         officeManager.stop();
         assertFalse(connection.isConnected());
@@ -0,0 +1,234 @@
+//
+// JODConverter - Java OpenDocument Converter
+// Copyright 2004-2012 Mirko Nasato and contributors
+//
+// JODConverter is Open Source software, you can redistribute it and/or
+// modify it under either (at your option) of the following licenses
+//
+// 1. The GNU Lesser General Public License v3 (or later)
+//    -> http://www.gnu.org/licenses/lgpl-3.0.txt
+// 2. The Apache License, Version 2.0
+//    -> http://www.apache.org/licenses/LICENSE-2.0.txt
+//
+package org.artofsolving.jodconverter.office;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.Test;
+
+/**
+ * Exercises the pool with stub managers in place of office processes.
+ */
+@Test
+public class ProcessPoolOfficeManagerTest {
+
+    private static class StubPooledOfficeManager extends PooledOfficeManager {
+
+        private final OfficeException failure;
+        private final CountDownLatch release;
+        private final AtomicInteger taskCount = new AtomicInteger();
+        private volatile boolean stopped = false;
+
+        /**
+         * @param failure thrown by every task, or <code>null</code> for tasks to succeed
+         */
+        public StubPooledOfficeManager(OfficeException failure) {
+            this(failure, new CountDownLatch(0));
+        }
+
+        /**
+         * @param release tasks do not complete until this is counted down
+         */
+        public StubPooledOfficeManager(OfficeException failure, CountDownLatch release) {
+            super(UnoUrl.pipe("stub"));
+            this.failure = failure;
+            this.release = release;
+        }
+
+        @Override
+        public void start() {
+            // nothing to start
+        }
+
+        @Override
+        public void stop() {
+            stopped = true;
+        }
+
+        @Override
+        public void execute(OfficeTask task, long deadline) {
+            taskCount.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException interruptedException) {
+                throw new OfficeException("interrupted", interruptedException);
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        public int getTaskCount() {
+            return taskCount.get();
+        }
+
+        public boolean isStopped() {
+            return stopped;
+        }
+
+    }
+
+    private static class StubDocumentTask implements DocumentTask {
+
+        private final File inputFile;
+
+        public StubDocumentTask(File inputFile) {
+            this.inputFile = inputFile;
+        }
+
+        public void execute(OfficeContext context) {
+            // executed by the stub managers, if at all
+        }
+
+        public File getInputFile() {
+            return inputFile;
+        }
+
+        public boolean isRetryable() {
+            return true;
+        }
+
+        public String getConversionType() {
+            return "odt>pdf";
+        }
+
+    }
+
+    public void retryOnOtherProcessAfterLostConnection() throws IOException {
+        StubPooledOfficeManager failingManager = new StubPooledOfficeManager(new OfficeException("task failed", new CancellationException()));
+        StubPooledOfficeManager otherManager = new StubPooledOfficeManager(null);
+        ProcessPoolOfficeManager officeManager = new ProcessPoolOfficeManager(new PooledOfficeManager[] { failingManager, otherManager },
+                1000L, new DocumentQuarantine(3, 10, 60000L), 2, 10L, false);
+        File inputFile = createInputFile();
+        try {
+            officeManager.start();
+            officeManager.execute(new StubDocumentTask(inputFile));
+            assertEquals(failingManager.getTaskCount(), 1);
+            assertEquals(otherManager.getTaskCount(), 1);
+        } finally {
+            officeManager.stop();
+            inputFile.delete();
+        }
+    }
+
+    public void noStrikeForTaskThatNeverStarted() throws IOException {
+        // a single strike would be enough to quarantine the document
+        DocumentQuarantine quarantine = new DocumentQuarantine(1, 10, 60000L);
+        StubPooledOfficeManager unavailableManager = new StubPooledOfficeManager(new OfficeException("task did not start within timeout", new TaskNotStartedException(100L)));
+        StubPooledOfficeManager otherManager = new StubPooledOfficeManager(null);
+        ProcessPoolOfficeManager officeManager = new ProcessPoolOfficeManager(new PooledOfficeManager[] { unavailableManager, otherManager },
+                1000L, quarantine, 2, 10L, false);
+        File inputFile = createInputFile();
+        try {
+            officeManager.start();
+            officeManager.execute(new StubDocumentTask(inputFile));
+            assertEquals(otherManager.getTaskCount(), 1);
+            assertEquals(quarantine.size(), 0);
+        } finally {
+            officeManager.stop();
+            inputFile.delete();
+        }
+    }
+
+    public void strikeForTaskThatTimedOut() throws IOException {
+        DocumentQuarantine quarantine = new DocumentQuarantine(1, 10, 60000L);
+        StubPooledOfficeManager timingOutManager = new StubPooledOfficeManager(new OfficeException("task did not complete within timeout", new TimeoutException()));
+        StubPooledOfficeManager otherManager = new StubPooledOfficeManager(null);
+        ProcessPoolOfficeManager officeManager = new ProcessPoolOfficeManager(new PooledOfficeManager[] { timingOutManager, otherManager },
+                1000L, quarantine, 2, 10L, false);
+        File inputFile = createInputFile();
+        try {
+            officeManager.start();
+            try {
+                officeManager.execute(new StubDocumentTask(inputFile));
+                fail("task that timed out retried");
+            } catch (OfficeException officeException) {
+                assertTrue(officeException.getCause() instanceof TimeoutException);
+            }
+            assertEquals(otherManager.getTaskCount(), 0);
+            assertEquals(quarantine.size(), 1);
+        } finally {
+            officeManager.stop();
+            inputFile.delete();
+        }
+    }
+
+    public void drainWaitsForQueuedTasks() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        StubPooledOfficeManager manager = new StubPooledOfficeManager(null, release);
+        final ProcessPoolOfficeManager officeManager = new ProcessPoolOfficeManager(new PooledOfficeManager[] { manager },
+                10000L, null, 0, 10L, false);
+        officeManager.start();
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            // one task executing and one queued behind it
+            for (int i = 0; i < 2; i++) {
+                executor.submit(new Runnable() {
+                    public void run() {
+                        officeManager.execute(new StubDocumentTask(null));
+                    }
+                });
+            }
+            while (officeManager.getPendingTaskCount() < 2) {
+                Thread.sleep(10L);
+            }
+            Future<Boolean> drained = executor.submit(new Callable<Boolean>() {
+                public Boolean call() {
+                    return officeManager.drain(10000L);
+                }
+            });
+            while (!officeManager.isDraining()) {
+                Thread.sleep(10L);
+            }
+            try {
+                officeManager.execute(new StubDocumentTask(null));
+                fail("task accepted while draining");
+            } catch (IllegalStateException illegalStateException) {
+                // expected
+            }
+            assertFalse(manager.isStopped());
+
+            release.countDown();
+            assertTrue(drained.get(5, TimeUnit.SECONDS));
+            assertEquals(manager.getTaskCount(), 2);
+            assertEquals(officeManager.getPendingTaskCount(), 0);
+            assertTrue(manager.isStopped());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private File createInputFile() throws IOException {
+        File inputFile = File.createTempFile("pool", ".odt");
+        FileUtils.writeStringToFile(inputFile, "content");
+        return inputFile;
+    }
+
+}
@@ -0,0 +1,113 @@
+//
+// JODConverter - Java OpenDocument Converter
+// Copyright 2004-2012 Mirko Nasato and contributors
+//
+// JODConverter is Open Source software, you can redistribute it and/or
+// modify it under either (at your option) of the following licenses
+//
+// 1. The GNU Lesser General Public License v3 (or later)
+//    -> http://www.gnu.org/licenses/lgpl-3.0.txt
+// 2. The Apache License, Version 2.0
+//    -> http://www.apache.org/licenses/LICENSE-2.0.txt
+//
+package org.artofsolving.jodconverter.office;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.artofsolving.jodconverter.ReflectionUtils;
+import org.artofsolving.jodconverter.process.PureJavaProcessManager;
+import org.testng.annotations.Test;
+
+/**
+ * Offices on several local ports stand in for offices on several hosts.
+ */
+@Test(groups="integration")
+public class RemoteOfficeManagerTest {
+
+    private static final int[] PORTS = { 2002, 2003 };
+
+    public void spreadTasksAndSurviveLostOffice() throws Exception {
+        OfficeProcess[] officeProcesses = new OfficeProcess[PORTS.length];
+        RemoteOfficeManagerConfiguration configuration = new RemoteOfficeManagerConfiguration()
+            .setHealthCheckInterval(500L)
+            .setReconnectDelay(200L, 1000L);
+        for (int i = 0; i < PORTS.length; i++) {
+            officeProcesses[i] = startOfficeProcess(PORTS[i]);
+            configuration.addOffice("127.0.0.1", PORTS[i]);
+        }
+        final OfficeManager manager = configuration.buildOfficeManager();
+        manager.start();
+        try {
+            assertEquals(runTasks(manager, 8), 8);
+
+            // tasks keep running on the remaining office
+            killOfficeProcess(officeProcesses[0]);
+            Thread.sleep(1000);
+            assertEquals(runTasks(manager, 4), 4);
+
+            // and go back to the first one once it is reachable again
+            officeProcesses[0] = startOfficeProcess(PORTS[0]);
+            Thread.sleep(3000);
+            RemoteOfficeConnection[] connections = (RemoteOfficeConnection[]) ReflectionUtils.getPrivateField(manager, "connections");
+            assertTrue(connections[0].isConnected());
+        } finally {
+            manager.stop();
+            for (OfficeProcess officeProcess : officeProcesses) {
+                killOfficeProcess(officeProcess);
+            }
+        }
+    }
+
+    private int runTasks(final OfficeManager manager, int taskCount) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(PORTS.length);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+            for (int i = 0; i < taskCount; i++) {
+                futures.add(executor.submit(new Callable<Boolean>() {
+                    public Boolean call() throws Exception {
+                        MockOfficeTask task = new MockOfficeTask(200L);
+                        manager.execute(task);
+                        return task.isCompleted();
+                    }
+                }));
+            }
+            int completedCount = 0;
+            for (Future<Boolean> future : futures) {
+                if (future.get()) {
+                    completedCount++;
+                }
+            }
+            return completedCount;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private OfficeProcess startOfficeProcess(int port) throws Exception {
+        OfficeProcess officeProcess = new OfficeProcess(OfficeUtils.getDefaultOfficeHome(), UnoUrl.socket(port),
+            null, null, new File(System.getProperty("java.io.tmpdir")), new PureJavaProcessManager());
+        officeProcess.start();
+        Thread.sleep(2000);
+        Integer exitCode = officeProcess.getExitCode();
+        if (exitCode != null && exitCode.equals(Integer.valueOf(81))) {
+            officeProcess.start(true);
+            Thread.sleep(2000);
+        }
+        return officeProcess;
+    }
+
+    private void killOfficeProcess(OfficeProcess officeProcess) throws Exception {
+        Process process = (Process) ReflectionUtils.getPrivateField(officeProcess, "process");
+        process.destroy();
+    }
+
+}
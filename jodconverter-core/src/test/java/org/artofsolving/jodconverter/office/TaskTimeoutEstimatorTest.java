@@ -0,0 +1,78 @@
+//
+// JODConverter - Java OpenDocument Converter
+// Copyright 2004-2012 Mirko Nasato and contributors
+//
+// JODConverter is Open Source software, you can redistribute it and/or
+// modify it under either (at your option) of the following licenses
+//
+// 1. The GNU Lesser General Public License v3 (or later)
+//    -> http://www.gnu.org/licenses/lgpl-3.0.txt
+// 2. The Apache License, Version 2.0
+//    -> http://www.apache.org/licenses/LICENSE-2.0.txt
+//
+package org.artofsolving.jodconverter.office;
+
+import static org.testng.Assert.assertEquals;
+
+import org.testng.annotations.Test;
+
+@Test
+public class TaskTimeoutEstimatorTest {
+
+    private static final long MB = TaskTimeoutEstimator.SIZE_FLOOR;
+
+    public void maxTimeoutUntilEnoughHistory() {
+        TaskTimeoutEstimator estimator = new TaskTimeoutEstimator(1000L, 120000L);
+        assertEquals(estimator.getTimeout("doc>pdf", 1000L), 120000L);
+        assertEquals(estimator.getTimeout(null, 1000L), 120000L);
+        for (int i = 0; i < TaskTimeoutEstimator.MIN_SAMPLES - 1; i++) {
+            estimator.recordDuration("doc>pdf", 1000L, 2000L);
+        }
+        assertEquals(estimator.getTimeout("doc>pdf", 1000L), 120000L);
+        estimator.recordDuration("doc>pdf", 1000L, 2000L);
+        assertEquals(estimator.getTimeout("doc>pdf", 1000L), 6000L);
+        assertEquals(estimator.getTimeout("xls>pdf", 1000L), 120000L);
+    }
+
+    public void scaleWithInputSize() {
+        TaskTimeoutEstimator estimator = new TaskTimeoutEstimator(1000L, 120000L);
+        for (int i = 0; i < TaskTimeoutEstimator.MIN_SAMPLES; i++) {
+            estimator.recordDuration("doc>pdf", 4 * MB, 8000L);
+        }
+        assertEquals(estimator.getTimeout("doc>pdf", 10L), 6000L);
+        assertEquals(estimator.getTimeout("doc>pdf", 2 * MB), 12000L);
+        assertEquals(estimator.getTimeout("doc>pdf", 100 * MB), 120000L);
+    }
+
+    public void percentileWithinBounds() {
+        TaskTimeoutEstimator estimator = new TaskTimeoutEstimator(5000L, 120000L);
+        for (int i = 0; i < 95; i++) {
+            estimator.recordDuration("doc>pdf", 1000L, 100L);
+        }
+        for (int i = 0; i < 5; i++) {
+            estimator.recordDuration("doc>pdf", 1000L, 60000L);
+        }
+        assertEquals(estimator.getTimeout("doc>pdf", 1000L), 5000L);
+        estimator.recordDuration("doc>pdf", 1000L, 60000L);
+        assertEquals(estimator.getTimeout("doc>pdf", 1000L), 120000L);
+    }
+
+    public void boundedConversionTypes() {
+        TaskTimeoutEstimator estimator = new TaskTimeoutEstimator(1000L, 120000L);
+        for (int i = 0; i < TaskTimeoutEstimator.MIN_SAMPLES; i++) {
+            estimator.recordDuration("doc>pdf", 1000L, 2000L);
+        }
+        for (int i = 0; i < TaskTimeoutEstimator.MAX_CONVERSION_TYPES - 1; i++) {
+            estimator.recordDuration("x" + i + ">pdf", 1000L, 2000L);
+        }
+        // the least recently used type goes first, so one still in use is kept
+        assertEquals(estimator.getTimeout("doc>pdf", 1000L), 6000L);
+        estimator.recordDuration("junk>pdf", 1000L, 2000L);
+        assertEquals(estimator.getTimeout("doc>pdf", 1000L), 6000L);
+        for (int i = 0; i < TaskTimeoutEstimator.MAX_CONVERSION_TYPES; i++) {
+            estimator.recordDuration("y" + i + ">pdf", 1000L, 2000L);
+        }
+        assertEquals(estimator.getTimeout("doc>pdf", 1000L), 120000L);
+    }
+
+}
@@ -0,0 +1,104 @@
+package org.artofsolving.jodconverter.sample.web;
+
+import java.io.IOException;
+import java.util.logging.Logger;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.artofsolving.jodconverter.office.OfficeManager;
+import org.artofsolving.jodconverter.office.ProcessPoolOfficeManager;
+
+/**
+ * Turns conversion requests away while the office pool is saturated, before their
+ * upload is read, rather than letting them wait for the taskQueueTimeout and fail.
+ * <p>
+ * A request is rejected with 429 when there are already more than
+ * <code>maxPendingTasks</code> tasks pending, and with 503 when the estimated wait for
+ * an office process exceeds <code>maxEstimatedWait</code> milliseconds or the pool is
+ * shutting down. Either way a Retry-After header tells the client when to try again.
+ * Pending tasks include the requests held by the conversion threads and their queue,
+ * most of which have not reached the office pool yet, e.g. while their upload is read.
+ * Only POST requests are checked. The filter is meant for synchronous conversions
+ * only; job submissions are limited by <code>job.maxCount</code> instead, as a job is
+ * expected to wait in the queue.
+ */
+public class AdmissionControlFilter implements Filter {
+
+	public static final String PARAMETER_MAX_PENDING_TASKS = "maxPendingTasks";
+	public static final String PARAMETER_MAX_ESTIMATED_WAIT = "maxEstimatedWait";
+
+	private static final int SC_TOO_MANY_REQUESTS = 429;
+	private static final long MIN_RETRY_AFTER = 1000L;
+
+	private final Logger logger = Logger.getLogger(getClass().getName());
+
+	private int maxPendingTasks;
+	private long maxEstimatedWait;
+	private ProcessPoolOfficeManager officeManager;
+	private WebappContext webappContext;
+
+	public void init(FilterConfig filterConfig) throws ServletException {
+		webappContext = WebappContext.get(filterConfig.getServletContext());
+		OfficeManager manager = webappContext.getOfficeManager();
+		if (!(manager instanceof ProcessPoolOfficeManager)) {
+			logger.warning("admission control disabled: no queue depth available from " + manager.getClass().getSimpleName());
+			return;
+		}
+		officeManager = (ProcessPoolOfficeManager) manager;
+		String maxPendingTasksParam = filterConfig.getInitParameter(PARAMETER_MAX_PENDING_TASKS);
+		maxPendingTasks = maxPendingTasksParam != null ? Integer.parseInt(maxPendingTasksParam) : 4 * officeManager.getPoolSize();
+		String maxEstimatedWaitParam = filterConfig.getInitParameter(PARAMETER_MAX_ESTIMATED_WAIT);
+		maxEstimatedWait = maxEstimatedWaitParam != null ? Long.parseLong(maxEstimatedWaitParam) : 20000L;
+		logger.info(String.format("admission control: at most %d pending tasks and %dms estimated wait", maxPendingTasks, maxEstimatedWait));
+	}
+
+	public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+		HttpServletRequest httpRequest = (HttpServletRequest) request;
+		if (officeManager == null || !"POST".equals(httpRequest.getMethod())) {
+			chain.doFilter(request, response);
+			return;
+		}
+		HttpServletResponse httpResponse = (HttpServletResponse) response;
+		int pendingTaskCount = getPendingTaskCount();
+		long estimatedWait = officeManager.getEstimatedWaitTime(pendingTaskCount);
+		if (officeManager.isDraining() || !officeManager.isRunning()) {
+			reject(httpResponse, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "converter shutting down", maxEstimatedWait);
+		} else if (pendingTaskCount >= maxPendingTasks) {
+			reject(httpResponse, SC_TOO_MANY_REQUESTS, "too many conversions in progress", estimatedWait);
+		} else if (estimatedWait > maxEstimatedWait) {
+			reject(httpResponse, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "converter overloaded", estimatedWait);
+		} else {
+			chain.doFilter(request, response);
+		}
+	}
+
+	public void destroy() {
+		// nothing to do
+	}
+
+	/**
+	 * Every office task comes from a conversion thread, so the office pool's count only
+	 * matters if something else submits tasks too.
+	 */
+	private int getPendingTaskCount() {
+		return Math.max(officeManager.getPendingTaskCount(), webappContext.getPendingConversionCount());
+	}
+
+	private void reject(HttpServletResponse response, int status, String message, long retryAfter) throws IOException {
+		logger.warning(String.format("rejected request: %s; %d pending tasks, %dms estimated wait",
+				message, getPendingTaskCount(), officeManager.getEstimatedWaitTime(getPendingTaskCount())));
+		long retryAfterSeconds = (Math.max(retryAfter, MIN_RETRY_AFTER) + 999) / 1000;
+		response.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+		// the body has not been read, and is not going to be
+		response.setHeader("Connection", "close");
+		response.sendError(status, message);
+	}
+
+}
@@ -0,0 +1,132 @@
+package org.artofsolving.jodconverter.sample.web;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.artofsolving.jodconverter.document.DocumentFormat;
+
+/**
+ * A conversion submitted to the {@link ConversionJobService}, whose result can be
+ * fetched once it has completed.
+ */
+public class ConversionJob {
+
+	public enum Status { QUEUED, RUNNING, SUCCEEDED, FAILED }
+
+	private final String id;
+	private final String baseName;
+	private final DocumentFormat outputFormat;
+	private final long submittedTime = System.currentTimeMillis();
+
+	private Status status = Status.QUEUED;
+	private File outputFile;
+	private String errorMessage;
+	private long completedTime;
+	private final List<Runnable> completionListeners = new ArrayList<Runnable>();
+
+	public ConversionJob(String id, String baseName, DocumentFormat outputFormat) {
+		this.id = id;
+		this.baseName = baseName;
+		this.outputFormat = outputFormat;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public DocumentFormat getOutputFormat() {
+		return outputFormat;
+	}
+
+	/**
+	 * @return the file name the result should be downloaded as
+	 */
+	public String getOutputFileName() {
+		return baseName + "." + outputFormat.getExtension();
+	}
+
+	public long getSubmittedTime() {
+		return submittedTime;
+	}
+
+	public synchronized Status getStatus() {
+		return status;
+	}
+
+	public synchronized boolean isDone() {
+		return status == Status.SUCCEEDED || status == Status.FAILED;
+	}
+
+	/**
+	 * @return the converted file, or <code>null</code> unless the job has succeeded
+	 */
+	public synchronized File getOutputFile() {
+		return outputFile;
+	}
+
+	public synchronized String getErrorMessage() {
+		return errorMessage;
+	}
+
+	/**
+	 * @return when the job completed, or 0 if it has not completed yet
+	 */
+	public synchronized long getCompletedTime() {
+		return completedTime;
+	}
+
+	/**
+	 * Runs the given listener once the job has completed, on the thread that completes
+	 * it, or right away if the job is already done.
+	 */
+	public void addCompletionListener(Runnable listener) {
+		synchronized (this) {
+			if (!isDone()) {
+				completionListeners.add(listener);
+				return;
+			}
+		}
+		listener.run();
+	}
+
+	/**
+	 * Discards a listener that is no longer interested, e.g. because the request it
+	 * would answer has timed out.
+	 */
+	public synchronized void removeCompletionListener(Runnable listener) {
+		completionListeners.remove(listener);
+	}
+
+	synchronized void started() {
+		status = Status.RUNNING;
+	}
+
+	void succeeded(File outputFile) {
+		synchronized (this) {
+			this.outputFile = outputFile;
+		}
+		complete(Status.SUCCEEDED);
+	}
+
+	void failed(String errorMessage) {
+		synchronized (this) {
+			this.errorMessage = errorMessage;
+		}
+		complete(Status.FAILED);
+	}
+
+	private void complete(Status finalStatus) {
+		List<Runnable> listeners;
+		synchronized (this) {
+			status = finalStatus;
+			completedTime = System.currentTimeMillis();
+			listeners = new ArrayList<Runnable>(completionListeners);
+			completionListeners.clear();
+		}
+		for (Runnable listener : listeners) {
+			listener.run();
+		}
+	}
+
+}
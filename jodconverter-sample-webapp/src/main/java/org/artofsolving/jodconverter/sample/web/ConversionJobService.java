@@ -0,0 +1,152 @@
+package org.artofsolving.jodconverter.sample.web;
+
+import java.io.File;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.artofsolving.jodconverter.InvalidInputException;
+import org.artofsolving.jodconverter.OfficeDocumentConverter;
+import org.artofsolving.jodconverter.document.DocumentFormat;
+
+/**
+ * Runs conversions as jobs that outlive the request submitting them, so that a
+ * long conversion does not depend on an HTTP connection staying open.
+ * <p>
+ * Jobs are kept in a bounded in-memory index and their results in the
+ * {@link FileSpool}. Completed jobs are evicted, and their results deleted, once
+ * they are older than the configured time to live.
+ */
+public class ConversionJobService {
+
+	private static final long MAX_EVICTION_INTERVAL = 60000L;
+
+	private final Logger logger = Logger.getLogger(getClass().getName());
+
+	private final OfficeDocumentConverter converter;
+	private final Executor executor;
+	private final FileSpool fileSpool;
+	private final int maxJobs;
+	private final long timeToLive;
+
+	private final ConcurrentMap<String,ConversionJob> jobs = new ConcurrentHashMap<String,ConversionJob>();
+	private final ScheduledExecutorService evictionExecutor;
+
+	public ConversionJobService(OfficeDocumentConverter converter, Executor executor, FileSpool fileSpool, int maxJobs, long timeToLive) {
+		this.converter = converter;
+		this.executor = executor;
+		this.fileSpool = fileSpool;
+		this.maxJobs = maxJobs;
+		this.timeToLive = timeToLive;
+		evictionExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "JobEvictionThread");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		long evictionInterval = Math.min(timeToLive, MAX_EVICTION_INTERVAL);
+		evictionExecutor.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				evictExpired();
+			}
+		}, evictionInterval, evictionInterval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Queues the conversion of a spooled input file. If the job is accepted, the
+	 * service takes over the input file and releases it once converted.
+	 *
+	 * @throws RejectedExecutionException if there are already too many jobs
+	 */
+	public ConversionJob submit(final File inputFile, String baseName, DocumentFormat outputFormat) throws RejectedExecutionException {
+		final ConversionJob job = new ConversionJob(UUID.randomUUID().toString(), baseName, outputFormat);
+		synchronized (jobs) {
+			if (jobs.size() >= maxJobs) {
+				evictExpired();
+				if (jobs.size() >= maxJobs) {
+					throw new RejectedExecutionException("too many jobs");
+				}
+			}
+			jobs.put(job.getId(), job);
+		}
+		try {
+			executor.execute(new Runnable() {
+				public void run() {
+					runJob(job, inputFile);
+				}
+			});
+		} catch (RejectedExecutionException rejectedExecutionException) {
+			jobs.remove(job.getId());
+			throw rejectedExecutionException;
+		}
+		return job;
+	}
+
+	/**
+	 * @return the job, or <code>null</code> if there is no such job or it has been evicted
+	 */
+	public ConversionJob getJob(String id) {
+		return jobs.get(id);
+	}
+
+	/**
+	 * Forgets a job, deleting its result. A job still running is converted anyway, but
+	 * its result is discarded.
+	 */
+	public boolean remove(String id) {
+		ConversionJob job = jobs.remove(id);
+		if (job == null) {
+			return false;
+		}
+		fileSpool.release(job.getOutputFile());
+		return true;
+	}
+
+	public void destroy() {
+		evictionExecutor.shutdownNow();
+	}
+
+	private void runJob(ConversionJob job, File inputFile) {
+		job.started();
+		File outputFile = null;
+		try {
+			long startTime = System.currentTimeMillis();
+			outputFile = fileSpool.create(job.getId(), job.getOutputFormat().getExtension());
+			converter.convert(inputFile, outputFile, job.getOutputFormat());
+			logger.info(String.format("successful conversion job %s: [%db] to %s in %dms", job.getId(), inputFile.length(), job.getOutputFormat().getExtension(), System.currentTimeMillis() - startTime));
+			job.succeeded(outputFile);
+		} catch (InvalidInputException invalidInputException) {
+			logger.warning(String.format("rejected conversion job %s: %s", job.getId(), invalidInputException.getMessage()));
+			fileSpool.release(outputFile);
+			job.failed(invalidInputException.getMessage());
+		} catch (Exception exception) {
+			logger.severe(String.format("failed conversion job %s: %s", job.getId(), exception));
+			fileSpool.release(outputFile);
+			job.failed("conversion failed: " + exception.getMessage());
+		} finally {
+			fileSpool.release(inputFile);
+		}
+		if (!jobs.containsKey(job.getId())) {
+			// removed while it was running
+			fileSpool.release(job.getOutputFile());
+		}
+	}
+
+	private void evictExpired() {
+		long expiry = System.currentTimeMillis() - timeToLive;
+		for (ConversionJob job : jobs.values()) {
+			if (job.isDone() && job.getCompletedTime() < expiry && remove(job.getId())) {
+				logger.fine("evicted conversion job " + job.getId());
+			}
+		}
+	}
+
+}
@@ -1,24 +1,28 @@
 package org.artofsolving.jodconverter.sample.web;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import org.apache.commons.fileupload.FileItem;
-import org.apache.commons.fileupload.FileUploadException;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
 import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.io.IOUtils;
+import org.artofsolving.jodconverter.InvalidInputException;
 import org.artofsolving.jodconverter.OfficeDocumentConverter;
 import org.artofsolving.jodconverter.document.DocumentFormat;
+import org.artofsolving.jodconverter.office.DeadlineExceededException;
+import org.artofsolving.jodconverter.sample.web.FileTransfers.Upload;
 
 public class ConverterServlet extends HttpServlet {
 
@@ -33,74 +37,184 @@ public class ConverterServlet extends HttpServlet {
         	return;
         }
 
+        // the container thread returns as soon as the job is queued; the upload, the
+        // conversion and the response all happen on a conversion thread
+        WebappContext webappContext = WebappContext.get(getServletContext());
+        AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(webappContext.getAsyncTimeout());
+        long deadline = System.currentTimeMillis() + webappContext.getAsyncTimeout();
+        // set by whichever of the conversion and the timeout takes the request and response
+        // first; the other one must not touch them afterwards
+        AtomicBoolean claimed = new AtomicBoolean();
+        // counted down once the conversion has completed the request
+        CountDownLatch released = new CountDownLatch(1);
+        asyncContext.addListener(new TimeoutListener(claimed, released));
+        try {
+            webappContext.getConversionExecutor().execute(new ConversionRequest(asyncContext, claimed, released, deadline));
+        } catch (RejectedExecutionException rejectedExecutionException) {
+            logger.warning("rejected conversion: too many requests");
+            if (claimed.compareAndSet(false, true)) {
+                response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "too many conversions in progress");
+                asyncContext.complete();
+            }
+        }
+	}
+
+	/**
+	 * Only called once the request and response belong to the conversion, so the
+	 * timeout cannot answer the request while the upload is read or the output written.
+	 */
+	private void convert(HttpServletRequest request, HttpServletResponse response, long deadline) throws ServletException, IOException {
 		WebappContext webappContext = WebappContext.get(getServletContext());
 		ServletFileUpload fileUpload = webappContext.getFileUpload();
+		FileSpool fileSpool = webappContext.getFileSpool();
 		OfficeDocumentConverter converter = webappContext.getDocumentConverter();
 
 		String outputExtension = FilenameUtils.getExtension(request.getRequestURI());
-		        
-		FileItem uploadedFile;
-		try {
-			uploadedFile = getUploadedFile(fileUpload, request);
-		} catch (FileUploadException fileUploadException) {
-		    throw new ServletException(fileUploadException);
-		}
-		if (uploadedFile == null) {
-			throw new NullPointerException("uploaded file is null");
-		}
-        String inputExtension = FilenameUtils.getExtension(uploadedFile.getName());
+        DocumentFormat outputFormat = converter.getFormatRegistry().getFormatByExtension(outputExtension);
+        if (outputFormat == null) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "unsupported output format: " + outputExtension);
+            return;
+        }
+
+        Upload upload = FileTransfers.receiveUpload(request, response, fileUpload, fileSpool);
+        if (upload == null) {
+            return;
+        }
+        File inputFile = upload.getFile();
+        String inputExtension = upload.getExtension();
+        String baseName = upload.getBaseName();
 
-        String baseName = FilenameUtils.getBaseName(uploadedFile.getName());
-        File inputFile = File.createTempFile(baseName, "." + inputExtension);
-        writeUploadedFile(uploadedFile, inputFile);
-        File outputFile = File.createTempFile(baseName, "." + outputExtension);
+        File outputFile = null;
         try {
-            DocumentFormat outputFormat = converter.getFormatRegistry().getFormatByExtension(outputExtension);
         	long startTime = System.currentTimeMillis();
-        	converter.convert(inputFile, outputFile);
+        	if (webappContext.isOutputStreaming()) {
+        	    // no Content-Length is known up front, so the container uses chunked transfer
+        	    // and the client receives output as soon as office starts writing it
+        	    response.setContentType(outputFormat.getMediaType());
+        	    response.setHeader("Content-Disposition", "attachment; filename="+ baseName + "." + outputExtension);
+        	    converter.convert(inputFile, response.getOutputStream(), outputFormat, deadline);
+        	} else {
+        	    outputFile = fileSpool.create(baseName, outputExtension);
+        	    converter.convert(inputFile, outputFile, outputFormat, deadline);
+        	    response.setContentType(outputFormat.getMediaType());
+        	    response.setHeader("Content-Disposition", "attachment; filename="+ baseName + "." + outputExtension);
+        	    FileTransfers.sendFile(outputFile, response);
+        	}
         	long conversionTime = System.currentTimeMillis() - startTime;
         	logger.info(String.format("successful conversion: %s [%db] to %s in %dms", inputExtension, inputFile.length(), outputExtension, conversionTime));
-        	response.setContentType(outputFormat.getMediaType());
-            response.setHeader("Content-Disposition", "attachment; filename="+ baseName + "." + outputExtension);
-            sendFile(outputFile, response);
+        } catch (InvalidInputException invalidInputException) {
+            logger.warning(String.format("rejected conversion: %s [%db] to %s; %s", inputExtension, inputFile.length(), outputExtension, invalidInputException.getMessage()));
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, invalidInputException.getMessage());
+        } catch (DeadlineExceededException deadlineExceededException) {
+            logger.warning(String.format("abandoned conversion: %s [%db] to %s; request timed out", inputExtension, inputFile.length(), outputExtension));
+            if (!response.isCommitted()) {
+                response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "conversion timed out");
+            }
         } catch (Exception exception) {
             logger.severe(String.format("failed conversion: %s [%db] to %s; %s; input file: %s", inputExtension, inputFile.length(), outputExtension, exception, inputFile.getName()));
         	throw new ServletException("conversion failed", exception);
         } finally {
-        	outputFile.delete();
-        	inputFile.delete();
+        	fileSpool.release(outputFile);
+        	fileSpool.release(inputFile);
         }
 	}
 
-	private void sendFile(File file, HttpServletResponse response) throws IOException {
-		response.setContentLength((int) file.length());
-        InputStream inputStream = null;
-        try {
-        	inputStream = new FileInputStream(file);
-            IOUtils.copy(inputStream, response.getOutputStream());
-        } finally {
-        	IOUtils.closeQuietly(inputStream);
-        }
-	}
+	private class ConversionRequest implements Runnable {
 
-	private void writeUploadedFile(FileItem uploadedFile, File destinationFile) throws ServletException {
-        try {
-			uploadedFile.write(destinationFile);
-		} catch (Exception exception) {
-			throw new ServletException("error writing uploaded file", exception);
+		private final AsyncContext asyncContext;
+		private final AtomicBoolean claimed;
+		private final CountDownLatch released;
+		private final long deadline;
+
+		public ConversionRequest(AsyncContext asyncContext, AtomicBoolean claimed, CountDownLatch released, long deadline) {
+			this.asyncContext = asyncContext;
+			this.claimed = claimed;
+			this.released = released;
+			this.deadline = deadline;
 		}
-		uploadedFile.delete();
+
+		public void run() {
+			// take the request before reading the upload from it
+			if (!claimed.compareAndSet(false, true)) {
+				logger.warning("conversion request timed out while queued");
+				return;
+			}
+			try {
+				convertAndComplete();
+			} finally {
+				released.countDown();
+			}
+		}
+
+		private void convertAndComplete() {
+			HttpServletRequest request = (HttpServletRequest) asyncContext.getRequest();
+			HttpServletResponse response = (HttpServletResponse) asyncContext.getResponse();
+			try {
+				convert(request, response, deadline);
+			} catch (Exception exception) {
+				// there is no container thread to turn this into an error page for us
+				logger.log(Level.SEVERE, "conversion request failed", exception);
+				if (!response.isCommitted()) {
+					try {
+						response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, exception.getMessage());
+					} catch (IOException ioException) {
+						logger.warning("could not send error: " + ioException);
+					}
+				}
+			} finally {
+				try {
+					asyncContext.complete();
+				} catch (IllegalStateException illegalStateException) {
+					// already completed by the container, e.g. after a network error
+				}
+			}
+		}
+
 	}
 
-	private FileItem getUploadedFile(ServletFileUpload fileUpload, HttpServletRequest request) throws FileUploadException {
-		@SuppressWarnings("unchecked")
-		List<FileItem> fileItems = fileUpload.parseRequest(request);
-		for (FileItem fileItem : fileItems) {
-			if (!fileItem.isFormField()) {
-				return fileItem;
+	private class TimeoutListener implements AsyncListener {
+
+		private final AtomicBoolean claimed;
+		private final CountDownLatch released;
+
+		public TimeoutListener(AtomicBoolean claimed, CountDownLatch released) {
+			this.claimed = claimed;
+			this.released = released;
+		}
+
+		public void onTimeout(AsyncEvent event) throws IOException {
+			if (!claimed.compareAndSet(false, true)) {
+				// the conversion owns the response and completes the request itself; it
+				// gives up on office at the deadline, so this only waits for a slow client,
+				// but the container must not answer the request while it is still writing
+				try {
+					released.await();
+				} catch (InterruptedException interruptedException) {
+					Thread.currentThread().interrupt();
+				}
+				return;
 			}
+			logger.warning("conversion request timed out while queued");
+			HttpServletResponse response = (HttpServletResponse) event.getAsyncContext().getResponse();
+			if (!response.isCommitted()) {
+				response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "conversion timed out");
+			}
+			event.getAsyncContext().complete();
+		}
+
+		public void onError(AsyncEvent event) throws IOException {
+			logger.warning("conversion request failed: " + event.getThrowable());
+		}
+
+		public void onComplete(AsyncEvent event) {
+			// nothing to do
+		}
+
+		public void onStartAsync(AsyncEvent event) {
+			// nothing to do
 		}
-		return null;
+
 	}
 
 }
@@ -0,0 +1,155 @@
+package org.artofsolving.jodconverter.sample.web;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Owns the temporary files holding conversion inputs and outputs, all kept in a single
+ * directory that office reads from and writes to directly.
+ * <p>
+ * The spool directory is a new subdirectory of the configured one, so that several
+ * instances can share it and nothing else in it is ever touched. It holds a lock file
+ * for as long as the spool is in use. Every file handed out must be given back with
+ * {@link #release(File)}; whatever is left over is removed when the spool is destroyed
+ * or, e.g. after a crash, when another spool is created next to it and finds it unlocked.
+ */
+public class FileSpool {
+
+	private static final int TRANSFER_CHUNK_SIZE = 64 * 1024;
+	private static final String DIRECTORY_PREFIX = "spool-";
+	private static final String LOCK_FILE_NAME = ".lock";
+
+	private final Logger logger = Logger.getLogger(getClass().getName());
+
+	private final File directory;
+	private final RandomAccessFile lockFile;
+	private final FileLock lock;
+	private final ConcurrentMap<File,Boolean> files = new ConcurrentHashMap<File,Boolean>();
+
+	public FileSpool(File parentDirectory) throws IOException {
+		if (!parentDirectory.isDirectory() && !parentDirectory.mkdirs()) {
+			throw new IOException("could not create spool directory " + parentDirectory);
+		}
+		removeAbandonedDirectories(parentDirectory);
+		directory = File.createTempFile(DIRECTORY_PREFIX, "", parentDirectory);
+		if (!directory.delete() || !directory.mkdir()) {
+			throw new IOException("could not create spool directory " + directory);
+		}
+		lockFile = new RandomAccessFile(new File(directory, LOCK_FILE_NAME), "rw");
+		lock = lockFile.getChannel().lock();
+		logger.info("spooling files in " + directory);
+	}
+
+	/**
+	 * Removes the directories of spools that were not destroyed, e.g. because their
+	 * process was killed: those whose lock file nobody holds any more.
+	 */
+	private void removeAbandonedDirectories(File parentDirectory) {
+		File[] candidates = parentDirectory.listFiles();
+		if (candidates == null) {
+			return;
+		}
+		for (File candidate : candidates) {
+			File candidateLockFile = new File(candidate, LOCK_FILE_NAME);
+			if (!candidate.getName().startsWith(DIRECTORY_PREFIX) || !candidateLockFile.isFile()) {
+				continue;
+			}
+			try {
+				if (isAbandoned(candidateLockFile)) {
+					logger.info("removing abandoned spool directory " + candidate);
+					FileUtils.deleteDirectory(candidate);
+				}
+			} catch (IOException ioException) {
+				logger.warning("could not remove abandoned spool directory " + candidate + ": " + ioException.getMessage());
+			}
+		}
+	}
+
+	private static boolean isAbandoned(File lockFile) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(lockFile, "rw");
+		try {
+			FileLock lock = file.getChannel().tryLock();
+			if (lock == null) {
+				return false;
+			}
+			lock.release();
+			return true;
+		} catch (OverlappingFileLockException overlappingFileLockException) {
+			// held by another spool in this JVM
+			return false;
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * @return a new empty file, named after the given base name
+	 */
+	public File create(String baseName, String extension) throws IOException {
+		// createTempFile needs a prefix of at least 3 characters
+		String prefix = (baseName + "___").substring(0, Math.max(3, Math.min(baseName.length(), 40)));
+		File file = File.createTempFile(prefix, "." + extension, directory);
+		files.put(file, Boolean.TRUE);
+		return file;
+	}
+
+	/**
+	 * Writes a stream, e.g. a file being uploaded, straight into a new spool file. Bytes
+	 * go from the stream to the file channel without going through another temporary
+	 * file or an intermediate heap copy of the whole content.
+	 */
+	public File receive(InputStream inputStream, String baseName, String extension) throws IOException {
+		File file = create(baseName, extension);
+		FileOutputStream outputStream = new FileOutputStream(file);
+		boolean received = false;
+		try {
+			FileChannel fileChannel = outputStream.getChannel();
+			ReadableByteChannel inputChannel = Channels.newChannel(inputStream);
+			long position = 0;
+			long transferred;
+			while ((transferred = fileChannel.transferFrom(inputChannel, position, TRANSFER_CHUNK_SIZE)) > 0) {
+				position += transferred;
+			}
+			received = true;
+			return file;
+		} finally {
+			outputStream.close();
+			if (!received) {
+				release(file);
+			}
+		}
+	}
+
+	public void release(File file) {
+		if (file != null && files.remove(file) != null && !file.delete() && file.exists()) {
+			logger.warning("could not delete spool file " + file);
+		}
+	}
+
+	public void destroy() {
+		for (File file : files.keySet()) {
+			release(file);
+		}
+		try {
+			lock.release();
+			lockFile.close();
+			FileUtils.deleteDirectory(directory);
+		} catch (IOException ioException) {
+			logger.warning("could not remove spool directory " + directory + ": " + ioException.getMessage());
+		}
+	}
+
+}
@@ -0,0 +1,125 @@
+package org.artofsolving.jodconverter.sample.web;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUploadException;
+import org.apache.commons.fileupload.FileUploadBase.FileSizeLimitExceededException;
+import org.apache.commons.fileupload.FileUploadBase.FileUploadIOException;
+import org.apache.commons.fileupload.FileUploadBase.SizeLimitExceededException;
+import org.apache.commons.fileupload.servlet.ServletFileUpload;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Moves uploaded documents into the {@link FileSpool} and spooled results back out
+ * to the client, shared by the servlets that take and return files.
+ */
+public class FileTransfers {
+
+	private FileTransfers() {
+		throw new AssertionError("utility class must not be instantiated");
+	}
+
+	/**
+	 * Receives the first file of a multipart request into the spool. Uses the streaming
+	 * API, so that the upload is read straight into the spool rather than parsed into a
+	 * temporary file first.
+	 *
+	 * @return the received file, or <code>null</code> if the request was rejected, in
+	 *   which case an error has already been sent
+	 */
+	public static Upload receiveUpload(HttpServletRequest request, HttpServletResponse response, ServletFileUpload fileUpload, FileSpool fileSpool) throws ServletException, IOException {
+		try {
+			FileItemIterator items = fileUpload.getItemIterator(request);
+			while (items.hasNext()) {
+				FileItemStream item = items.next();
+				if (!item.isFormField()) {
+					String name = FilenameUtils.getName(item.getName());
+					InputStream inputStream = item.openStream();
+					try {
+						File file = fileSpool.receive(inputStream, FilenameUtils.getBaseName(name), FilenameUtils.getExtension(name));
+						return new Upload(file, name);
+					} finally {
+						inputStream.close();
+					}
+				}
+			}
+			response.sendError(HttpServletResponse.SC_BAD_REQUEST, "no file uploaded");
+			return null;
+		} catch (FileUploadIOException fileUploadIOException) {
+			if (fileUploadIOException.getCause() instanceof FileSizeLimitExceededException
+					|| fileUploadIOException.getCause() instanceof SizeLimitExceededException) {
+				response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, fileUploadIOException.getCause().getMessage());
+				return null;
+			}
+			throw new ServletException(fileUploadIOException.getCause());
+		} catch (FileUploadException fileUploadException) {
+			throw new ServletException(fileUploadException);
+		}
+	}
+
+	public static void sendFile(File file, HttpServletResponse response) throws IOException {
+		// setContentLength takes an int, which overflows for files over 2GB
+		response.setHeader("Content-Length", String.valueOf(file.length()));
+		FileInputStream inputStream = null;
+		try {
+			inputStream = new FileInputStream(file);
+			FileChannel fileChannel = inputStream.getChannel();
+			WritableByteChannel responseChannel = Channels.newChannel(response.getOutputStream());
+			long size = fileChannel.size();
+			long position = 0;
+			while (position < size) {
+				position += fileChannel.transferTo(position, size - position, responseChannel);
+			}
+		} finally {
+			IOUtils.closeQuietly(inputStream);
+		}
+	}
+
+	public static class Upload {
+
+		private final File file;
+		private final String name;
+
+		public Upload(File file, String name) {
+			this.file = file;
+			this.name = name;
+		}
+
+		/**
+		 * @return the spool file holding the upload
+		 */
+		public File getFile() {
+			return file;
+		}
+
+		/**
+		 * @return the file name given by the client, without any path
+		 */
+		public String getName() {
+			return name;
+		}
+
+		public String getBaseName() {
+			return FilenameUtils.getBaseName(name);
+		}
+
+		public String getExtension() {
+			return FilenameUtils.getExtension(name);
+		}
+
+	}
+
+}
@@ -0,0 +1,192 @@
+package org.artofsolving.jodconverter.sample.web;
+
+import java.io.IOException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.fileupload.servlet.ServletFileUpload;
+import org.artofsolving.jodconverter.document.DocumentFormat;
+import org.artofsolving.jodconverter.sample.web.FileTransfers.Upload;
+import org.json.JSONObject;
+
+/**
+ * Job-style access to the converter, for conversions that take longer than an HTTP
+ * connection can be relied on to stay open:
+ * <ul>
+ *   <li><code>POST /jobs/{extension}</code> submits a file for conversion to the given
+ *     format and returns the job status, with the job URL in the Location header</li>
+ *   <li><code>GET /jobs/{id}</code> returns the job status; with a <code>wait</code>
+ *     parameter, in milliseconds, it waits for the job to complete before answering</li>
+ *   <li><code>GET /jobs/{id}/result</code> returns the converted file</li>
+ *   <li><code>DELETE /jobs/{id}</code> discards the job and its result</li>
+ * </ul>
+ */
+public class JobServlet extends HttpServlet {
+
+	private static final long serialVersionUID = 2797543105924731462L;
+
+	private static final long MAX_WAIT = 60000L;
+	private static final String RESULT_SUFFIX = "/result";
+
+	private final Logger logger = Logger.getLogger(getClass().getName());
+
+	@Override
+	protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		if (!ServletFileUpload.isMultipartContent(request)) {
+			response.sendError(HttpServletResponse.SC_FORBIDDEN, "only multipart requests are allowed");
+			return;
+		}
+		WebappContext webappContext = WebappContext.get(getServletContext());
+		FileSpool fileSpool = webappContext.getFileSpool();
+
+		String outputExtension = getPath(request);
+		DocumentFormat outputFormat = webappContext.getDocumentConverter().getFormatRegistry().getFormatByExtension(outputExtension);
+		if (outputFormat == null) {
+			response.sendError(HttpServletResponse.SC_BAD_REQUEST, "unsupported output format: " + outputExtension);
+			return;
+		}
+		Upload upload = FileTransfers.receiveUpload(request, response, webappContext.getFileUpload(), fileSpool);
+		if (upload == null) {
+			return;
+		}
+		ConversionJob job;
+		try {
+			job = webappContext.getJobService().submit(upload.getFile(), upload.getBaseName(), outputFormat);
+		} catch (RejectedExecutionException rejectedExecutionException) {
+			fileSpool.release(upload.getFile());
+			logger.warning("rejected conversion job: " + rejectedExecutionException.getMessage());
+			response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "too many conversions in progress");
+			return;
+		}
+		response.setStatus(HttpServletResponse.SC_ACCEPTED);
+		response.setHeader("Location", request.getContextPath() + request.getServletPath() + "/" + job.getId());
+		sendStatus(job, response);
+	}
+
+	@Override
+	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		String path = getPath(request);
+		boolean result = path.endsWith(RESULT_SUFFIX);
+		String id = result ? path.substring(0, path.length() - RESULT_SUFFIX.length()) : path;
+		ConversionJob job = WebappContext.get(getServletContext()).getJobService().getJob(id);
+		if (job == null) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND, "no such job: " + id);
+		} else if (result) {
+			sendResult(job, response);
+		} else {
+			String waitParam = request.getParameter("wait");
+			long wait = 0L;
+			if (waitParam != null) {
+				try {
+					wait = Math.min(Long.parseLong(waitParam), MAX_WAIT);
+				} catch (NumberFormatException numberFormatException) {
+					response.sendError(HttpServletResponse.SC_BAD_REQUEST, "invalid wait: " + waitParam);
+					return;
+				}
+			}
+			if (wait > 0 && !job.isDone()) {
+				awaitStatus(job, request, wait);
+			} else {
+				sendStatus(job, response);
+			}
+		}
+	}
+
+	@Override
+	protected void doDelete(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		String id = getPath(request);
+		if (WebappContext.get(getServletContext()).getJobService().remove(id)) {
+			response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+		} else {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND, "no such job: " + id);
+		}
+	}
+
+	private String getPath(HttpServletRequest request) {
+		String pathInfo = request.getPathInfo();
+		return pathInfo != null && pathInfo.startsWith("/") ? pathInfo.substring(1) : "";
+	}
+
+	/**
+	 * Long polling: answers once the job completes or the wait is over, whichever comes
+	 * first, without holding a container thread in the meantime.
+	 */
+	private void awaitStatus(final ConversionJob job, HttpServletRequest request, long wait) {
+		final AsyncContext asyncContext = request.startAsync();
+		final AtomicBoolean answered = new AtomicBoolean(false);
+		final Runnable completionListener = new Runnable() {
+			public void run() {
+				try {
+					answer(job, asyncContext, answered);
+				} catch (IOException ioException) {
+					logger.warning("could not send job status: " + ioException);
+				}
+			}
+		};
+		asyncContext.setTimeout(wait);
+		asyncContext.addListener(new AsyncListener() {
+			public void onTimeout(AsyncEvent event) throws IOException {
+				// otherwise every poll of a long job would leave a listener behind
+				job.removeCompletionListener(completionListener);
+				answer(job, asyncContext, answered);
+			}
+			public void onError(AsyncEvent event) {
+				job.removeCompletionListener(completionListener);
+				answered.set(true);
+			}
+			public void onComplete(AsyncEvent event) {
+				// nothing to do
+			}
+			public void onStartAsync(AsyncEvent event) {
+				// nothing to do
+			}
+		});
+		job.addCompletionListener(completionListener);
+	}
+
+	private void answer(ConversionJob job, AsyncContext asyncContext, AtomicBoolean answered) throws IOException {
+		if (answered.compareAndSet(false, true)) {
+			try {
+				sendStatus(job, (HttpServletResponse) asyncContext.getResponse());
+			} finally {
+				asyncContext.complete();
+			}
+		}
+	}
+
+	private void sendStatus(ConversionJob job, HttpServletResponse response) throws IOException {
+		StringBuilder json = new StringBuilder();
+		json.append("{\"id\":").append(JSONObject.quote(job.getId()));
+		json.append(",\"status\":").append(JSONObject.quote(job.getStatus().name()));
+		if (job.getErrorMessage() != null) {
+			json.append(",\"error\":").append(JSONObject.quote(job.getErrorMessage()));
+		}
+		json.append("}");
+		response.setContentType("application/json");
+		response.setCharacterEncoding("UTF-8");
+		response.setHeader("Cache-Control", "no-cache");
+		response.getWriter().write(json.toString());
+	}
+
+	private void sendResult(ConversionJob job, HttpServletResponse response) throws IOException {
+		if (job.getStatus() == ConversionJob.Status.FAILED) {
+			response.sendError(HttpServletResponse.SC_CONFLICT, "job failed: " + job.getErrorMessage());
+		} else if (job.getStatus() != ConversionJob.Status.SUCCEEDED) {
+			response.sendError(HttpServletResponse.SC_CONFLICT, "job not completed yet");
+		} else {
+			response.setContentType(job.getOutputFormat().getMediaType());
+			response.setHeader("Content-Disposition", "attachment; filename=" + job.getOutputFileName());
+			FileTransfers.sendFile(job.getOutputFile(), response);
+		}
+	}
+
+}
@@ -1,15 +1,22 @@
 package org.artofsolving.jodconverter.sample.web;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import javax.servlet.ServletContext;
 
-import org.apache.commons.fileupload.disk.DiskFileItemFactory;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
 import org.artofsolving.jodconverter.OfficeDocumentConverter;
 import org.artofsolving.jodconverter.office.DefaultOfficeManagerConfiguration;
 import org.artofsolving.jodconverter.office.OfficeManager;
+import org.artofsolving.jodconverter.office.ProcessPoolOfficeManager;
 
 public class WebappContext {
 
@@ -17,20 +24,34 @@ public class WebappContext {
 	public static final String PARAMETER_OFFICE_HOME = "office.home";
 	public static final String PARAMETER_OFFICE_PROFILE = "office.profile";
 	public static final String PARAMETER_FILEUPLOAD_FILE_SIZE_MAX = "fileupload.fileSizeMax";
+	public static final String PARAMETER_OUTPUT_STREAMING = "output.streaming";
+	public static final String PARAMETER_OFFICE_DRAIN_TIMEOUT = "office.drainTimeout";
+	public static final String PARAMETER_SPOOL_DIR = "spool.dir";
+	public static final String PARAMETER_CONVERSION_THREADS = "conversion.threads";
+	public static final String PARAMETER_CONVERSION_QUEUE_SIZE = "conversion.queueSize";
+	public static final String PARAMETER_CONVERSION_TIMEOUT = "conversion.timeout";
+	public static final String PARAMETER_JOB_MAX_COUNT = "job.maxCount";
+	public static final String PARAMETER_JOB_TIME_TO_LIVE = "job.timeToLive";
 
 	private final Logger logger = Logger.getLogger(getClass().getName());
 
 	private static final String KEY = WebappContext.class.getName();
 
 	private final ServletFileUpload fileUpload;
+	private final FileSpool fileSpool;
 
 	private final OfficeManager officeManager;
 	private final OfficeDocumentConverter documentConverter;
+	private final boolean outputStreaming;
+	private final long drainTimeout;
+	private final ThreadPoolExecutor conversionExecutor;
+	private final long asyncTimeout;
+	private final ConversionJobService jobService;
 
 	public WebappContext(ServletContext servletContext) {
-		DiskFileItemFactory fileItemFactory = new DiskFileItemFactory();
 		String fileSizeMax = servletContext.getInitParameter(PARAMETER_FILEUPLOAD_FILE_SIZE_MAX);
-		fileUpload = new ServletFileUpload(fileItemFactory);
+		// only the streaming API is used, which needs no FileItemFactory
+		fileUpload = new ServletFileUpload();
 		if (fileSizeMax != null) {
 			fileUpload.setFileSizeMax(Integer.parseInt(fileSizeMax));
 			logger.info("max file upload size set to " + fileSizeMax);
@@ -47,13 +68,47 @@ public class WebappContext {
 		if (officeHomeParam != null) {
 		    configuration.setOfficeHome(new File(officeHomeParam));
 		}
+		String spoolDirParam = servletContext.getInitParameter(PARAMETER_SPOOL_DIR);
+		File spoolDir = spoolDirParam != null ? new File(spoolDirParam) : new File(System.getProperty("java.io.tmpdir"), "jodconverter-spool");
+		try {
+			fileSpool = new FileSpool(spoolDir);
+		} catch (IOException ioException) {
+			throw new IllegalStateException("could not initialise file spool", ioException);
+		}
+
 		String officeProfileParam = servletContext.getInitParameter(PARAMETER_OFFICE_PROFILE);
 		if (officeProfileParam != null) {
 		    configuration.setTemplateProfileDir(new File(officeProfileParam));
 		}
 
+		String outputStreamingParam = servletContext.getInitParameter(PARAMETER_OUTPUT_STREAMING);
+		outputStreaming = Boolean.parseBoolean(outputStreamingParam);
+		logger.info("output streaming " + (outputStreaming ? "enabled" : "disabled"));
+
+		String drainTimeoutParam = servletContext.getInitParameter(PARAMETER_OFFICE_DRAIN_TIMEOUT);
+		drainTimeout = drainTimeoutParam != null ? Long.parseLong(drainTimeoutParam) : 30000L;
+
+		// conversion threads mostly wait, on the upload or on office, so there can be
+		// more of them than office processes; the container threads never wait at all
+		String conversionThreadsParam = servletContext.getInitParameter(PARAMETER_CONVERSION_THREADS);
+		int conversionThreads = conversionThreadsParam != null ? Integer.parseInt(conversionThreadsParam) : 16;
+		String conversionQueueSizeParam = servletContext.getInitParameter(PARAMETER_CONVERSION_QUEUE_SIZE);
+		int conversionQueueSize = conversionQueueSizeParam != null ? Integer.parseInt(conversionQueueSizeParam) : 100;
+		conversionExecutor = new ThreadPoolExecutor(conversionThreads, conversionThreads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(conversionQueueSize), new ConversionThreadFactory());
+		logger.info(String.format("using %d conversion threads, queueing up to %d requests", conversionThreads, conversionQueueSize));
+
+		String conversionTimeoutParam = servletContext.getInitParameter(PARAMETER_CONVERSION_TIMEOUT);
+		asyncTimeout = conversionTimeoutParam != null ? Long.parseLong(conversionTimeoutParam) : 300000L;
+
 		officeManager = configuration.buildOfficeManager();
 		documentConverter = new OfficeDocumentConverter(officeManager);
+
+		String jobMaxCountParam = servletContext.getInitParameter(PARAMETER_JOB_MAX_COUNT);
+		int jobMaxCount = jobMaxCountParam != null ? Integer.parseInt(jobMaxCountParam) : 1000;
+		String jobTimeToLiveParam = servletContext.getInitParameter(PARAMETER_JOB_TIME_TO_LIVE);
+		long jobTimeToLive = jobTimeToLiveParam != null ? Long.parseLong(jobTimeToLiveParam) : 3600000L;
+		jobService = new ConversionJobService(documentConverter, conversionExecutor, fileSpool, jobMaxCount, jobTimeToLive);
 	}
 
 	protected static void init(ServletContext servletContext) {
@@ -64,7 +119,15 @@ public class WebappContext {
 
 	protected static void destroy(ServletContext servletContext) {
 		WebappContext instance = get(servletContext);
-		instance.officeManager.stop();
+		instance.conversionExecutor.shutdown();
+		if (instance.officeManager instanceof ProcessPoolOfficeManager && instance.drainTimeout > 0) {
+			// let conversions in progress complete, e.g. on redeploy
+			((ProcessPoolOfficeManager) instance.officeManager).drain(instance.drainTimeout);
+		} else {
+			instance.officeManager.stop();
+		}
+		instance.jobService.destroy();
+		instance.fileSpool.destroy();
 	}
 
 	public static WebappContext get(ServletContext servletContext) {
@@ -75,6 +138,10 @@ public class WebappContext {
 		return fileUpload;
 	}
 
+	public FileSpool getFileSpool() {
+		return fileSpool;
+	}
+
 	public OfficeManager getOfficeManager() {
         return officeManager;
     }
@@ -83,4 +150,50 @@ public class WebappContext {
         return documentConverter;
     }
 
+	public ExecutorService getConversionExecutor() {
+		return conversionExecutor;
+	}
+
+	/**
+	 * @return the number of conversion requests accepted and not done yet, whether
+	 *   queued for a conversion thread or being received, converted or sent
+	 */
+	public int getPendingConversionCount() {
+		return conversionExecutor.getActiveCount() + conversionExecutor.getQueue().size();
+	}
+
+	public ConversionJobService getJobService() {
+		return jobService;
+	}
+
+	/**
+	 * @return how long an asynchronous conversion request may take, in milliseconds,
+	 *   including the upload and download
+	 */
+	public long getAsyncTimeout() {
+		return asyncTimeout;
+	}
+
+	/**
+	 * Whether converted output is streamed to the client while office produces it,
+	 * rather than written to a temporary file and sent once the conversion is done.
+	 * Off by default: a streamed conversion that fails part way through can only be
+	 * reported by cutting the response short, and it cannot be retried.
+	 */
+	public boolean isOutputStreaming() {
+		return outputStreaming;
+	}
+
+	private static class ConversionThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger threadIndex = new AtomicInteger(0);
+
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "ConversionThread-" + threadIndex.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		}
+
+	}
+
 }